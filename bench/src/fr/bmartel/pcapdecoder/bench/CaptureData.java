@@ -0,0 +1,71 @@
+package fr.bmartel.pcapdecoder.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Build single block bodies used as parser benchmark input
+ *
+ */
+public class CaptureData {
+
+	private final static int EPB_FLAGS = 2;
+
+	private final static int OPT_COMMENT = 1;
+
+	private final static byte[] COMMENT = "benchmark packet".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Body of an enhanced packet block (from Interface ID to end of options) as given to
+	 * EnhancedPacketHeader
+	 *
+	 * @param order
+	 * @param packetSize
+	 * @param withOptions
+	 * @return
+	 */
+	public static byte[] enhancedPacketBody(ByteOrder order, int packetSize, boolean withOptions)
+	{
+		int paddedSize = (packetSize + 3) & ~3;
+		byte[] options = withOptions ? enhancedPacketOptions(order) : new byte[0];
+
+		ByteBuffer body = ByteBuffer.allocate(20 + paddedSize + options.length).order(order);
+		body.putInt(0);
+		body.putInt(0x00052A6B);
+		body.putInt(0x1C2D3E4F);
+		body.putInt(packetSize);
+		body.putInt(packetSize);
+
+		for (int i = 0; i < packetSize;i++)
+			body.put((byte) i);
+
+		body.position(20 + paddedSize);
+		body.put(options);
+
+		return body.array();
+	}
+
+	/**
+	 * Options of an enhanced packet block : epb_flags, opt_comment and opt_endofopt
+	 *
+	 * @param order
+	 * @return
+	 */
+	public static byte[] enhancedPacketOptions(ByteOrder order)
+	{
+		ByteBuffer options = ByteBuffer.allocate(8 + 4 + COMMENT.length + 4).order(order);
+
+		options.putShort((short) EPB_FLAGS);
+		options.putShort((short) 4);
+		options.putInt(0x00000001);
+
+		options.putShort((short) OPT_COMMENT);
+		options.putShort((short) COMMENT.length);
+		options.put(COMMENT);
+
+		options.putInt(0);
+
+		return options.array();
+	}
+}
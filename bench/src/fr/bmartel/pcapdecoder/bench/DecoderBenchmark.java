@@ -0,0 +1,125 @@
+package fr.bmartel.pcapdecoder.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.batch.PacketBatch;
+import fr.bmartel.pcapdecoder.generator.CaptureGenerator;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Whole capture decoding with PcapDecoder.decode() and PcapDecoder.nextPacketBatch() on captures written by CaptureGenerator
+ *
+ * Besides the score (captures decoded per second), blocks and bytes secondary results give decoding
+ * throughput in blocks/s and bytes/s.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecoderBenchmark {
+
+	private final static int PACKET_COUNT = 1000;
+
+	@Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+	public String order;
+
+	@Param({"64", "512", "1500", "9000"})
+	public int packetSize;
+
+	@Param({"false", "true"})
+	public boolean withOptions;
+
+	private byte[] capture;
+
+	private final PacketBatch batch = new PacketBatch();
+
+	/**
+	 * Throughput counters reported as secondary results
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+
+		public long blocks;
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			blocks = 0;
+			bytes = 0;
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException
+	{
+		CaptureGenerator generator = new CaptureGenerator();
+		generator.setByteOrder("BIG_ENDIAN".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		generator.setSizeDistribution(CaptureGenerator.SizeDistribution.FIXED);
+		generator.setPacketSize(packetSize, packetSize);
+		generator.setPacketCount(PACKET_COUNT);
+		generator.setOptionDensity(withOptions ? 1 : 0);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		generator.generate(Channels.newChannel(output));
+		capture = output.toByteArray();
+	}
+
+	@Benchmark
+	public PcapDecoder decode(Throughput throughput)
+	{
+		PcapDecoder decoder = new PcapDecoder(capture);
+		decoder.decode();
+
+		throughput.blocks += decoder.getSectionList().size();
+		throughput.bytes += capture.length;
+		return decoder;
+	}
+
+	/**
+	 * Columnar decoding : total captured length computed from batches
+	 */
+	@Benchmark
+	public long decodeBatch(Throughput throughput) throws DecodeException
+	{
+		PcapDecoder decoder = new PcapDecoder(capture);
+		long total = 0;
+		int count;
+
+		while ((count = decoder.nextPacketBatch(batch)) > 0)
+		{
+			int[] capturedLengths = batch.getCapturedLengths();
+
+			for (int i = 0; i < count;i++)
+				total += capturedLengths[i];
+
+			throughput.blocks += count;
+		}
+		throughput.bytes += capture.length;
+		return total;
+	}
+}
@@ -0,0 +1,52 @@
+package fr.bmartel.pcapdecoder.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.bmartel.pcapdecoder.network.NetworkUtils;
+
+/**
+ * Address formatting used by name resolution and interface description options (NetworkUtils)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkUtilsBenchmark {
+
+	private byte[] ipv4 = new byte[] { (byte) 192, (byte) 168, 1, 42 };
+
+	private byte[] ipv6 = new byte[] { 0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 };
+
+	private byte[] mac = new byte[] { 0x00, 0x24, (byte) 0xD4, 0x6B, 0x0C, 0x5D };
+
+	@Benchmark
+	public String formatIpv4Addr()
+	{
+		return NetworkUtils.formatIpv4Addr(ipv4);
+	}
+
+	@Benchmark
+	public String formatIpv6Addr()
+	{
+		return NetworkUtils.formatIpv6Addr(ipv6);
+	}
+
+	@Benchmark
+	public String formatMacAddr()
+	{
+		return NetworkUtils.formatMacAddr(mac);
+	}
+}
@@ -0,0 +1,81 @@
+package fr.bmartel.pcapdecoder.bench;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.options.OptionParser;
+import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsEnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+
+/**
+ * Single block parsing : EnhancedPacketHeader construction (with and without options) and OptionParser.decode()
+ *
+ * Scores are blocks (or option lists) parsed per second.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+	public String order;
+
+	@Param({"64", "512", "1500", "9000"})
+	public int packetSize;
+
+	private boolean isBigEndian;
+
+	private byte[] packetBody;
+
+	private byte[] options;
+
+	@Setup
+	public void setup()
+	{
+		ByteOrder byteOrder = "BIG_ENDIAN".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+		isBigEndian = (byteOrder == ByteOrder.BIG_ENDIAN);
+		packetBody = CaptureData.enhancedPacketBody(byteOrder, packetSize, true);
+		options = CaptureData.enhancedPacketOptions(byteOrder);
+	}
+
+	@Benchmark
+	public EnhancedPacketHeader enhancedPacketHeader()
+	{
+		return new EnhancedPacketHeader(packetBody, isBigEndian, BlockTypes.ENHANCES_PACKET_BLOCK);
+	}
+
+	/**
+	 * construction followed by on demand option decoding
+	 */
+	@Benchmark
+	public IOptionsEnhancedPacketHeader enhancedPacketHeaderOptions()
+	{
+		return new EnhancedPacketHeader(packetBody, isBigEndian, BlockTypes.ENHANCES_PACKET_BLOCK).getOptions();
+	}
+
+	@Benchmark
+	public OptionParser optionParser()
+	{
+		OptionParser parser = new OptionParser(options, isBigEndian, BlockTypes.ENHANCES_PACKET_BLOCK, false);
+		parser.decode();
+		return parser;
+	}
+}
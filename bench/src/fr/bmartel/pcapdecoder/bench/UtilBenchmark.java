@@ -0,0 +1,75 @@
+package fr.bmartel.pcapdecoder.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.bmartel.pcapdecoder.utils.ByteReader;
+import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+
+/**
+ * Byte array helpers from UtilFunctions compared with ByteReader field reads
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilBenchmark {
+
+	/**
+	 * length of array given to convertByteArrayToInt / convertLeToBe (2 and 4 bytes for fields, bigger
+	 * values for option values and packet data)
+	 */
+	@Param({"2", "4", "8", "64"})
+	public int length;
+
+	private byte[] array;
+
+	@Setup
+	public void setup()
+	{
+		array = new byte[length];
+		for (int i = 0; i < length;i++)
+			array[i] = (byte) (i * 31 + 7);
+	}
+
+	@Benchmark
+	public int convertByteArrayToInt()
+	{
+		return UtilFunctions.convertByteArrayToInt(array);
+	}
+
+	@Benchmark
+	public byte[] convertLeToBe()
+	{
+		return UtilFunctions.convertLeToBe(array);
+	}
+
+	/**
+	 * little endian field of the same length (only first 8 bytes for longer arrays)
+	 */
+	@Benchmark
+	public long byteReader()
+	{
+		ByteReader reader = new ByteReader(array, false);
+
+		if (length >= 8)
+			return reader.getU64(0);
+		else if (length >= 4)
+			return reader.getU32(0);
+		return reader.getU16(0);
+	}
+}
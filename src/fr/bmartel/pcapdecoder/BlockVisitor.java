@@ -0,0 +1,73 @@
+package fr.bmartel.pcapdecoder;
+
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+import fr.bmartel.pcapdecoder.structure.types.inter.INameResolutionBlock;
+import fr.bmartel.pcapdecoder.structure.types.inter.ISectionHeaderBlock;
+import fr.bmartel.pcapdecoder.structure.types.inter.IStatisticsBlock;
+
+/**
+ * Receive blocks from PcapDecoder.decode(BlockVisitor) as soon as they are decoded, in file order.
+ * Blocks are not retained by the decoder.
+ *
+ * Each callback returns true to go on decoding or false to stop. All callbacks do nothing and go on by
+ * default : override only the ones needed.
+ *
+ * Section context given with each block holds byte order and interface descriptions of the section
+ * the block belongs to. It is updated in place while decoding.
+ *
+ */
+public abstract class BlockVisitor {
+
+	public boolean onSectionHeader(ISectionHeaderBlock header, SectionContext section)
+	{
+		return true;
+	}
+
+	public boolean onInterfaceDescription(IDescriptionBlock description, SectionContext section)
+	{
+		return true;
+	}
+
+	public boolean onEnhancedPacket(IEnhancedPacketBLock packet, SectionContext section)
+	{
+		return true;
+	}
+
+	public boolean onInterfaceStatistics(IStatisticsBlock statistics, SectionContext section)
+	{
+		return true;
+	}
+
+	public boolean onNameResolution(INameResolutionBlock nameResolution, SectionContext section)
+	{
+		return true;
+	}
+
+	/**
+	 * Call callback matching block type
+	 *
+	 * @param block
+	 * 		decoded block
+	 * @param section
+	 * 		section the block belongs to
+	 * @return
+	 * 		false if decoding must stop
+	 */
+	public boolean visit(IPcapngType block, SectionContext section)
+	{
+		if (block instanceof IEnhancedPacketBLock)
+			return onEnhancedPacket((IEnhancedPacketBLock) block, section);
+		else if (block instanceof ISectionHeaderBlock)
+			return onSectionHeader((ISectionHeaderBlock) block, section);
+		else if (block instanceof IDescriptionBlock)
+			return onInterfaceDescription((IDescriptionBlock) block, section);
+		else if (block instanceof IStatisticsBlock)
+			return onInterfaceStatistics((IStatisticsBlock) block, section);
+		else if (block instanceof INameResolutionBlock)
+			return onNameResolution((INameResolutionBlock) block, section);
+		return true;
+	}
+}
@@ -24,20 +24,35 @@
  */
 package fr.bmartel.pcapdecoder;
 
-import fr.bmartel.pcapdecoder.constant.HeaderBlocks;
+import fr.bmartel.pcapdecoder.batch.PacketBatch;
 import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.index.BlockIndex;
+import fr.bmartel.pcapdecoder.index.PacketRangeReader;
+import fr.bmartel.pcapdecoder.io.MappedCaptureFile;
+import fr.bmartel.pcapdecoder.io.PcapBlockReader;
+import fr.bmartel.pcapdecoder.parallel.ParallelDecoder;
+import fr.bmartel.pcapdecoder.pipeline.PipelineDecoder;
 import fr.bmartel.pcapdecoder.structure.BlockTypes;
 import fr.bmartel.pcapdecoder.structure.PcapNgStructureParser;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
 import fr.bmartel.pcapdecoder.utils.DecodeException;
 import fr.bmartel.pcapdecoder.utils.DecoderStatus;
-import fr.bmartel.pcapdecoder.utils.Endianess;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,11 +63,9 @@ import java.util.logging.Logger;
  * @author Michal Genserek
  *
  */
-public class PcapDecoder {
+public class PcapDecoder implements Closeable {
 
     private final static Logger LOG = Logger.getLogger(PcapDecoder.class.getName());
-    private final int DEFAULT_BUFFER_LENGTH = 8192;
-    private final int BLOCK_HEADER_LENGTH = 8;
     
     /**
      * data to parse
@@ -63,7 +76,71 @@ public class PcapDecoder {
             
     private final ArrayList<IPcapngType> pcapSectionList = new ArrayList<>();
     
-    private final InputStream inputStream;
+    /**
+     * block reader used when decoding from a stream
+     */
+    private final PcapBlockReader streamReader;
+
+    /**
+     * memory mapped capture file (used instead of data when decoding from a file)
+     */
+    private final MappedCaptureFile mappedFile;
+
+    /**
+     * offset of next block to decode in mapped file or in data
+     */
+    private long blockOffset = 0;
+
+    /**
+     * data wrapped in a buffer (null when using mapped file)
+     */
+    private final ByteBuffer dataBuffer;
+
+    /**
+     * buffer containing current block (data buffer or mapped window)
+     */
+    private ByteBuffer blockBuffer = null;
+
+    /**
+     * index of current block in blockBuffer
+     */
+    private int blockIndex = 0;
+
+    /**
+     * offset of current block in mapped file or in data
+     */
+    private long currentBlockOffset = 0;
+
+    /**
+     * Block Total Length of current block
+     */
+    private int blockLength = 0;
+
+    /**
+     * block offset index used for random access (may be null)
+     */
+    private BlockIndex captureIndex = null;
+
+    /**
+     * block types added to section list, other blocks are skipped
+     */
+    private EnumSet<BlockTypes> decodedTypes = EnumSet.allOf(BlockTypes.class);
+
+    /**
+     * byte order and interfaces of section being decoded
+     */
+    private SectionContext sectionContext = new SectionContext();
+
+    /**
+     * section of block index section context has been built for by random
+     * access (-1 if section context has been built by sequential decoding)
+     */
+    private int indexedSection = -1;
+
+    /**
+     * next block of indexed section to look at for interface descriptions
+     */
+    private int indexedBlock = 0;
 
     /**
      * instantiate Pcap Decoder with a new data to parse (from Pcap Ng file)
@@ -72,7 +149,9 @@ public class PcapDecoder {
      */
     public PcapDecoder(byte[] data) {
         this.data = data;
-        inputStream = null;
+        streamReader = null;
+        mappedFile = null;
+        dataBuffer = (data != null) ? ByteBuffer.wrap(data) : null;
     }
     
     /**
@@ -81,175 +160,578 @@ public class PcapDecoder {
      * @param stream
      */
     public PcapDecoder(InputStream stream) {
-        this.data = new byte[DEFAULT_BUFFER_LENGTH];
-        inputStream = stream;
+        this(new PcapBlockReader(stream));
+    }
+
+    /**
+     * instantiate Pcap Decoder with a channel
+     *
+     * @param channel
+     */
+    public PcapDecoder(ReadableByteChannel channel) {
+        this(new PcapBlockReader(channel));
+    }
+
+    /**
+     * instantiate Pcap Decoder with a streaming block reader
+     *
+     * @param reader
+     */
+    public PcapDecoder(PcapBlockReader reader) {
+        this.data = null;
+        streamReader = reader;
+        mappedFile = null;
+        dataBuffer = null;
+    }
+
+    /**
+     * instantiate Pcap Decoder reading blocks directly from memory mapped
+     * file (no limit on file size, file is never loaded in heap)
+     *
+     * @param path
+     * @throws IOException
+     */
+    public PcapDecoder(Path path) throws IOException {
+        this(new MappedCaptureFile(path));
+    }
+
+    /**
+     * instantiate Pcap Decoder with an already mapped file
+     *
+     * @param file
+     */
+    public PcapDecoder(MappedCaptureFile file) {
+        this.data = null;
+        streamReader = null;
+        mappedFile = file;
+        dataBuffer = null;
     }
     
     /**
      * @return true if this instance is using stream to read data, false otherwise
      */
     public boolean isUsingStream() {
-        return inputStream != null;
+        return streamReader != null;
+    }
+
+    /**
+     * @return true if this instance is reading from a memory mapped file, false otherwise
+     */
+    public boolean isUsingMappedFile() {
+        return mappedFile != null;
     }
 
     /**
-     * Detect endianess with magic number in section header block : will be
-     * 0x1A2B3C4D in big endian and 0x4D3C2B1A for little endian
+     * Set current endianness from section header block magic number read as
+     * a big endian 32 bit value
      *
      * @param magicNumber
-     * @return
+     * @throws DecodeException
      */
-    private byte detectEndianness(byte[] magicNumber) {
-        
-        boolean isBigEndian = (currentEndian == ByteOrder.BIG_ENDIAN);
-        
-        if (UtilFunctions.compare32Bytes(MagicNumber.MAGIC_NUMBER_BIG_ENDIAN, magicNumber, isBigEndian)) {
-            return Endianess.BIG_ENDIAN;
-        } else if (UtilFunctions.compare32Bytes(MagicNumber.MAGIC_NUMBER_LITTLE_ENDIAN, magicNumber, isBigEndian)) {
-            return Endianess.LITTLE_ENDIAN;
+    private void updateEndianness(int magicNumber) throws DecodeException {
+        if (magicNumber == MagicNumber.MAGIC_NUMBER) {
+            currentEndian = ByteOrder.BIG_ENDIAN;
+        } else if (magicNumber == Integer.reverseBytes(MagicNumber.MAGIC_NUMBER)) {
+            currentEndian = ByteOrder.LITTLE_ENDIAN;
         } else {
-            return Endianess.NO_ENDIANESS;
+            String message = "Unable to parse ENDIANESS from SECTION_HEADER_BLOCK!";
+            LOG.severe(message);
+            throw new DecodeException(message);
         }
     }
 
-    private int parseBlockLength(byte[] length, boolean isBigEndian) {
-        if (isBigEndian) {
-            int blockLength = (((data[0] << 32) & 0xFF) + ((data[1] << 16) & 0xFF) + ((data[2] << 8) & 0xFF) + ((data[3]) & 0xFF));
-            return blockLength;
-        } else {
-            int blockLength = (((length[0]) & 0xFF) + ((length[1] << 8) & 0xFF00) + ((length[2] << 16) & 0xFF0000) + ((length[3] << 32) & 0xFF000000));
-            return blockLength;
+    /**
+     * Read header of block located at blockOffset (in data or in mapped
+     * file), make the whole block available in blockBuffer and move
+     * blockOffset to next block. Block type is resolved with a single 32 bit
+     * read.
+     *
+     * @return type of block (UNKNOWN for block types not supported) or null
+     * if there is no more block
+     * @throws DecodeException
+     */
+    private BlockTypes readNextBlock() throws DecodeException {
+        long limit = isUsingMappedFile() ? mappedFile.size() : data.length;
+
+        if (blockOffset >= limit) {
+            return null;
+        }
+        if (limit - blockOffset < 12) {
+            throw new DecodeException("File parsing error | truncated block at offset " + blockOffset);
+        }
+
+        try {
+            if (isUsingMappedFile()) {
+                blockBuffer = mappedFile.map(blockOffset, 12);
+                blockIndex = mappedFile.index(blockOffset);
+            } else {
+                blockBuffer = dataBuffer;
+                blockIndex = (int) blockOffset;
+            }
+
+            BlockTypes type = BlockTypes.fromCode(blockBuffer.order(currentEndian).getInt(blockIndex));
+
+            if (type == BlockTypes.SECTION_HEADER_BLOCK) {
+                updateEndianness(blockBuffer.order(ByteOrder.BIG_ENDIAN).getInt(blockIndex + 8));
+            }
+
+            blockLength = blockBuffer.order(currentEndian).getInt(blockIndex + 4);
+
+            if (blockLength < 12 || blockOffset + blockLength > limit) {
+                throw new DecodeException("File parsing error | invalid block length " + blockLength + " at offset " + blockOffset);
+            }
+
+            if (isUsingMappedFile()) {
+                blockBuffer = mappedFile.map(blockOffset, blockLength);
+                blockIndex = mappedFile.index(blockOffset);
+            }
+
+            currentBlockOffset = blockOffset;
+            blockOffset += blockLength;
+            return type;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("Unable to read from mapped file.");
         }
     }
 
     /**
-     * Parse data block of all type of section and return current index to be
-     * read next
+     * Decode current block. Blocks of unknown type or of a type which is not
+     * decoded are skipped. Section header and interface description blocks
+     * are always tracked in section context.
      *
-     * @param data
-     * @return
+     * @param type
+     * @return decoded block or null if block has been skipped
+     * @throws DecodeException
+     */
+    private IPcapngType decodeCurrentBlock(BlockTypes type) throws DecodeException {
+        if (type == BlockTypes.UNKNOWN) {
+            LOG.log(Level.FINE, "Skipping unknown block of {0} bytes at offset {1}", new Object[]{blockLength, currentBlockOffset});
+            return null;
+        }
+        if (type == BlockTypes.SECTION_HEADER_BLOCK) {
+            startSection();
+        }
+        if (!decodedTypes.contains(type)) {
+            if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK) {
+                addInterface((IDescriptionBlock) parseCurrentBlock(type));
+            }
+            return null;
+        }
+
+        IPcapngType block = parseCurrentBlock(type);
+
+        if (block instanceof IDescriptionBlock) {
+            addInterface((IDescriptionBlock) block);
+        } else if (block instanceof EnhancedPacketHeader) {
+            sectionContext.bindInterface((EnhancedPacketHeader) block);
+        }
+        return block;
+    }
+
+    /**
+     * Start a new section in section context (sequential decoding)
      */
-    private int parseDataBlock(BlockTypes type, byte[] data, int initIndex) {
-        
-        boolean isBigEndian = (currentEndian == ByteOrder.BIG_ENDIAN);
-        
+    private void startSection() {
+        sectionContext.startSection(currentEndian);
+        indexedSection = -1;
+    }
+
+    /**
+     * Add an interface to section context (sequential decoding). Options of
+     * the interface (if_tsresol, if_tsoffset) are parsed here.
+     *
+     * @param description
+     * @throws DecodeException
+     */
+    private void addInterface(IDescriptionBlock description) throws DecodeException {
         try {
-            int blockLength = parseBlockLength(Arrays.copyOfRange(data, initIndex + 4, initIndex + 8), isBigEndian);
-            
-            LOG.info("This Block size: " + blockLength);
-            
-            if (isUsingStream()) { // if we are using stream, load rest of the block to buffer
-                LOG.info("Lazy load " + blockLength);
-                lazyLoadBytesToBuffer(BLOCK_HEADER_LENGTH, blockLength - BLOCK_HEADER_LENGTH);
+            sectionContext.addInterface(description);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("File parsing error | invalid interface description block at offset " + currentBlockOffset);
+        }
+        indexedSection = -1;
+    }
+
+    /**
+     * Make section context match the section of the block at given offset
+     * (random access with block index) : interface description blocks of
+     * this section located before the block are decoded once.
+     *
+     * @param offset
+     *            offset of block first byte
+     * @throws DecodeException
+     */
+    private void updateSectionContext(long offset) throws DecodeException {
+        int section = captureIndex.findSection(offset);
+
+        if (section != indexedSection) {
+            sectionContext.startSection(captureIndex.getByteOrder(offset));
+            indexedSection = section;
+            indexedBlock = (section < 0) ? 0 : captureIndex.findBlock(captureIndex.getSectionOffset(section));
+        }
+
+        try {
+            while (indexedBlock < captureIndex.getBlockCount() && captureIndex.getOffset(indexedBlock) < offset) {
+                if (captureIndex.getBlockType(indexedBlock) == BlockTypes.INTERFACE_DESCRIPTION_BLOCK) {
+                    long interfaceOffset = captureIndex.getOffset(indexedBlock);
+                    int length = isUsingMappedFile() ? mappedFile.getInt(interfaceOffset + 4, sectionContext.getByteOrder())
+                            : dataBuffer.order(sectionContext.getByteOrder()).getInt((int) interfaceOffset + 4);
+                    byte[] body = new byte[length - 12];
+
+                    if (isUsingMappedFile()) {
+                        mappedFile.get(interfaceOffset + 8, body, 0, body.length);
+                    } else {
+                        System.arraycopy(data, (int) interfaceOffset + 8, body, 0, body.length);
+                    }
+                    sectionContext.addInterface((IDescriptionBlock) PcapNgStructureParser.decodeBlock(BlockTypes.INTERFACE_DESCRIPTION_BLOCK, body, sectionContext.isBigEndian()));
+                }
+                indexedBlock++;
             }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("Unable to read from mapped file.");
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("File parsing error | invalid interface description block in section " + section);
+        }
+    }
 
+    /**
+     * Decode current block
+     *
+     * @param type
+     * @return decoded block (null for block types which are not decoded)
+     * @throws DecodeException
+     */
+    private IPcapngType parseCurrentBlock(BlockTypes type) throws DecodeException {
+        try {
             // substract 4 for header and 4 for size (x2 at the end)
-            byte[] dataBlock = Arrays.copyOfRange(data, initIndex + 8, initIndex + (blockLength - 4));
+            byte[] dataBlock;
 
-            byte[] dataTemp = dataBlock;
+            if (isUsingMappedFile()) {
+                dataBlock = new byte[blockLength - 12];
+                mappedFile.get(currentBlockOffset + 8, dataBlock, 0, dataBlock.length);
+            } else {
+                dataBlock = Arrays.copyOfRange(data, blockIndex + 8, blockIndex + blockLength - 4);
+            }
 
-            if (type == BlockTypes.SECTION_HEADER_BLOCK) {
-                dataTemp = Arrays.copyOfRange(dataBlock, 4, dataBlock.length);
+            return PcapNgStructureParser.decodeBlock(type, dataBlock, currentEndian == ByteOrder.BIG_ENDIAN);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("Unable to read from mapped file.");
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            throw new DecodeException("File parsing error | invalid block at offset " + currentBlockOffset);
+        }
+    }
+
+    /**
+     * Point given view at next Enhanced Packet Block. Other blocks are skipped
+     * without being decoded (section header and interface description blocks
+     * are still tracked in section context). Nothing is allocated per packet :
+     * the view is only valid until next call.
+     *
+     * @param view
+     *            reusable view
+     * @return false if there is no more Enhanced Packet Block
+     * @throws DecodeException
+     */
+    public boolean nextEnhancedPacket(EnhancedPacketView view) throws DecodeException {
+        if (isUsingStream()) {
+            LOG.warning("This instance is using InputStream to parse data. Use decodeNext() instead.");
+            return false;
+        }
+        if (data == null && !isUsingMappedFile()) {
+            return false;
+        }
+
+        BlockTypes type;
+
+        while ((type = readNextBlock()) != null) {
+            if (type == BlockTypes.ENHANCES_PACKET_BLOCK) {
+                view.wrap(blockBuffer, blockIndex, currentEndian);
+                sectionContext.bindInterface(view);
+                return true;
+            } else if (type == BlockTypes.SECTION_HEADER_BLOCK) {
+                startSection();
+            } else if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK) {
+                addInterface((IDescriptionBlock) parseCurrentBlock(type));
             }
-            PcapNgStructureParser structure = new PcapNgStructureParser(type, dataTemp, isBigEndian);
-            structure.decode();
-            pcapSectionList.add(structure.getPcapStruct());
+        }
+        return false;
+    }
 
-            initIndex += (blockLength - 1) + 1;
-            return initIndex;
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, e, null);
-            return DecoderStatus.FAILED_STATUS;
+    /**
+     * Fill given batch with next Enhanced Packet Blocks (byte array or mapped
+     * file only). Batch is cleared first and filled until it is full or until
+     * next section starts, so that all its packets belong to the section
+     * given by getSectionContext(). Other blocks are skipped without being
+     * decoded, interface description blocks being still tracked in section
+     * context.
+     *
+     * @param batch
+     *            reusable batch
+     * @return number of packets in batch (0 if there is no more packet)
+     * @throws DecodeException
+     */
+    public int nextPacketBatch(PacketBatch batch) throws DecodeException {
+        batch.clear();
+
+        if (isUsingStream()) {
+            LOG.warning("This instance is using InputStream to parse data. Use decodeNext() instead.");
+            return 0;
+        }
+        if (data == null && !isUsingMappedFile()) {
+            return 0;
+        }
+
+        BlockTypes type;
+
+        while ((type = readNextBlock()) != null) {
+            if (type == BlockTypes.ENHANCES_PACKET_BLOCK) {
+                boolean added;
+
+                try {
+                    added = batch.add(blockBuffer, blockIndex, currentEndian, sectionContext);
+                } catch (IllegalArgumentException e) {
+                    throw new DecodeException("File parsing error | " + e.getMessage() + " at offset " + currentBlockOffset);
+                }
+                if (!added) {
+                    // keep packet for next batch
+                    blockOffset = currentBlockOffset;
+                    break;
+                }
+            } else if (type == BlockTypes.SECTION_HEADER_BLOCK) {
+                if (!batch.isEmpty()) {
+                    // section context must stay valid for packets already in batch
+                    blockOffset = currentBlockOffset;
+                    break;
+                }
+                startSection();
+            } else if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK) {
+                addInterface((IDescriptionBlock) parseCurrentBlock(type));
+            }
         }
+        return batch.size();
     }
 
     /**
-     * Decode a specific section type from HeaderBLocks class
+     * Decode block located at initIndex if it is of given type and add it to
+     * section list (byte array or mapped file)
      *
      * @param type
      * @param initIndex
-     * @return 
-     * @throws fr.bmartel.pcapdecoder.utils.DecodeException
+     * @return offset of next block or initIndex if block is of another type
+     * @throws DecodeException
+     * @deprecated blocks are now dispatched on their type, use decode() or
+     * decodeNext() instead
      */
+    @Deprecated
     public int processSectionType(BlockTypes type, int initIndex) throws DecodeException {
-        
-        boolean isBigEndian = (currentEndian == ByteOrder.BIG_ENDIAN);
-        
-        if (UtilFunctions.compare32Bytes(HeaderBlocks.SECTION_TYPE_LIST.get(type.toString()), Arrays.copyOfRange(data, initIndex, initIndex + 4), isBigEndian)) {
-            if (type == BlockTypes.SECTION_HEADER_BLOCK) {
-                byte endianess = detectEndianness(Arrays.copyOfRange(Arrays.copyOfRange(data, initIndex + 8, initIndex + 12), 0, 4));
+        if (isUsingStream()) {
+            throw new DecodeException("processSectionType() is not supported with InputStream.");
+        }
 
-                switch (endianess) {
-                    case Endianess.BIG_ENDIAN:
-                        currentEndian = ByteOrder.BIG_ENDIAN;
-                        LOG.info("BIG_ENDIAN detected in current data.");
-                        break;
-                    case Endianess.LITTLE_ENDIAN:
-                        currentEndian = ByteOrder.LITTLE_ENDIAN;
-                        LOG.info("LITTLE_ENDIAN detected in current data.");
-                        break;
-                    default:
-                        String message = "Unable to parse ENDIANESS from SECTION_HEADER_BLOCK!";
-                        LOG.severe(message);
-                        throw new DecodeException(message);
-                }
-            }
+        long formerOffset = blockOffset;
 
-            initIndex = parseDataBlock(type, data, initIndex);
+        blockOffset = initIndex;
 
-            if (initIndex == -1) {
-                throw new DecodeException();
-            }
+        BlockTypes blockType = readNextBlock();
+
+        if (blockType != type) {
+            blockOffset = formerOffset;
             return initIndex;
         }
-        return initIndex;
-    }
-    
-    private int lazyLoadBytesToBuffer(int off, int len) {
-        try {
-            return inputStream.read(data, off, len);
-        } catch (IOException ex) {
-            LOG.log(Level.SEVERE, ex, null);
-            return -2;
+
+        IPcapngType block = decodeCurrentBlock(blockType);
+
+        if (block != null) {
+            pcapSectionList.add(block);
         }
+        return (int) blockOffset;
     }
 
+    /**
+     * Decode next block (stream or mapped file). Only the returned block is
+     * kept in section list.
+     *
+     * @return next block or null when there is no more block
+     * @throws DecodeException
+     */
     public IPcapngType decodeNext() throws DecodeException {
+        if (isUsingMappedFile()) {
+            pcapSectionList.clear();
+
+            BlockTypes type;
+
+            while ((type = readNextBlock()) != null) {
+                IPcapngType block = decodeCurrentBlock(type);
+
+                if (block != null) {
+                    pcapSectionList.add(block);
+                    return block;
+                }
+            }
+            return null;
+        }
         if (!isUsingStream()) {
             LOG.warning("This instance is not using InputStream to parse data. Use decode() instead.");
             return null;
         }
 
         pcapSectionList.clear(); // clear previous entry
-        int initIndex = 0; // we always start from beggining of buffer
-        
-        int br = lazyLoadBytesToBuffer(0, BLOCK_HEADER_LENGTH);
-        
-        if (br == -2) { // I/O Exception
+
+        try {
+            IPcapngType block = streamReader.nextBlock();
+
+            if (block != null) {
+                pcapSectionList.add(block);
+            }
+            return block;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, e.getMessage(), e);
             throw new DecodeException("Unable to read from InputStream.");
         }
-        else if (br == -1) { // End of stream
+    }
+
+    /**
+     * Set block offset index of the capture (see BlockIndexBuilder) used by
+     * seekToPacket() and readBlockAt()
+     *
+     * @param index
+     */
+    public void setBlockIndex(BlockIndex index) {
+        this.captureIndex = index;
+    }
+
+    public BlockIndex getBlockIndex() {
+        return captureIndex;
+    }
+
+    /**
+     * Decode block located at given offset (byte array or mapped file only).
+     * Byte order of the block section is taken from block index if set,
+     * otherwise byte order of last section read is used. Next call to
+     * decodeNext() or nextEnhancedPacket() continues after this block.
+     *
+     * @param offset
+     *            offset of block first byte
+     * @return decoded block (null for block types which are not decoded)
+     * @throws DecodeException
+     */
+    public IPcapngType readBlockAt(long offset) throws DecodeException {
+        if (isUsingStream()) {
+            throw new DecodeException("Random access is not available when using InputStream.");
+        }
+        if (data == null && !isUsingMappedFile()) {
+            throw new DecodeException("Error input data format error");
+        }
+        if (captureIndex != null) {
+            currentEndian = captureIndex.getByteOrder(offset);
+            updateSectionContext(offset);
+        }
+
+        blockOffset = offset;
+
+        BlockTypes type = readNextBlock();
+
+        if (type == null) {
+            throw new DecodeException("No block at offset " + offset);
+        }
+        if (type == BlockTypes.UNKNOWN) {
             return null;
         }
-        
-        for (BlockTypes blockType: BlockTypes.values()) {
-            int iValue = processSectionType(BlockTypes.SECTION_HEADER_BLOCK, initIndex);
-            
-            if (iValue != initIndex) {
-                //initIndex = iValue;
-                LOG.log(Level.INFO, "Found BLOCK of type: {0}", blockType.toString());
-                break;
-            }
+
+        IPcapngType block = parseCurrentBlock(type);
+
+        if (block instanceof EnhancedPacketHeader) {
+            sectionContext.bindInterface((EnhancedPacketHeader) block);
         }
-        
-        if (pcapSectionList.isEmpty()) { // unknown block
-            LOG.warning("Error input data format error");
-            throw new DecodeException("File parsing error | format not recognized");
+        return block;
+    }
+
+    /**
+     * Decode packet number n using block index. Next call to decodeNext() or
+     * nextEnhancedPacket() continues after this packet.
+     *
+     * @param n
+     *            packet number (starting from 0)
+     * @return packet block or null if capture has less than n+1 packets or
+     *         if packet is an obsolete packet block (not decoded)
+     * @throws DecodeException
+     */
+    public IPcapngType seekToPacket(int n) throws DecodeException {
+        if (captureIndex == null) {
+            throw new DecodeException("No block index set. Use setBlockIndex() first.");
+        }
+        if (n < 0 || n >= captureIndex.getPacketCount()) {
+            return null;
         }
+        return readBlockAt(captureIndex.getPacketOffset(n));
+    }
 
-        return pcapSectionList.get(0);
+    /**
+     * Read packets captured in [startNanos, endNanos[ using block index.
+     * Packets are decoded lazily while iterating, packets out of range are
+     * never decoded.
+     *
+     * @param startNanos
+     *            range start in nanoseconds since epoch (inclusive)
+     * @param endNanos
+     *            range end in nanoseconds since epoch (exclusive)
+     * @return packets in range
+     * @throws DecodeException
+     */
+    public PacketRangeReader readRange(long startNanos, long endNanos) throws DecodeException {
+        if (captureIndex == null) {
+            throw new DecodeException("No block index set. Use setBlockIndex() first.");
+        }
+        return new PacketRangeReader(this, captureIndex, startNanos, endNanos);
     }
-    
+
+    /**
+     * Select block types to decode. Other blocks are skipped using their
+     * Block Total Length only : they are neither decoded nor added to section
+     * list. Byte order of sections and interface description blocks are still
+     * tracked (see getSectionContext()). All types are decoded by default.
+     * Also applies to decodeNext() and decodeParallel().
+     *
+     * @param types
+     *            block types to decode
+     */
+    public void setDecodedBlockTypes(Set<BlockTypes> types) {
+        decodedTypes = EnumSet.noneOf(BlockTypes.class);
+        decodedTypes.addAll(types);
+
+        if (streamReader != null) {
+            streamReader.setDecodedBlockTypes(types);
+        }
+    }
+
+    public Set<BlockTypes> getDecodedBlockTypes() {
+        return decodedTypes;
+    }
+
+    /**
+     * @return byte order and interfaces of section being decoded (last
+     * section once whole capture is decoded)
+     */
+    public SectionContext getSectionContext() {
+        if (streamReader != null) {
+            return streamReader.getSectionContext();
+        }
+        return sectionContext;
+    }
+
+    /**
+     * @return reader used to decode stream (null if not using stream)
+     */
+    public PcapBlockReader getStreamReader() {
+        return streamReader;
+    }
+
     /**
      * Decode
      *
@@ -260,33 +742,140 @@ public class PcapDecoder {
             LOG.warning("This instance is using InputStream to parse data. Use decodeNext() instead.");
             return DecoderStatus.FAILED_STATUS;
         }
-        
-        if (data == null || data.length < 4) {
+
+        if (isUsingMappedFile() ? mappedFile.size() < 4 : (data == null || data.length < 4)) {
             LOG.warning("Error input data format error");
             return DecoderStatus.FAILED_STATUS;
         }
 
-        int initIndex = 0;
+        try {
+            BlockTypes type;
+
+            blockOffset = 0;
+            while ((type = readNextBlock()) != null) {
+                IPcapngType block = decodeCurrentBlock(type);
+
+                if (block != null) {
+                    pcapSectionList.add(block);
+                }
+            }
+        } catch (DecodeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            return DecoderStatus.FAILED_STATUS;
+        }
+        return DecoderStatus.SUCCESS_STATUS;
+    }
 
+    /**
+     * Decode all blocks and give them to visitor in file order as they are
+     * decoded. Blocks are not added to section list, so memory used doesn't
+     * depend on capture size. Works with all sources (byte array, mapped file
+     * or stream) and follows setDecodedBlockTypes().
+     *
+     * @param visitor
+     *            visitor receiving blocks, decoding stops as soon as one of its
+     *            callbacks returns false
+     * @return
+     */
+    public byte decode(BlockVisitor visitor) {
         try {
-            int formerIndex = 0;
-
-            while (initIndex != data.length) {
-                initIndex = processSectionType(BlockTypes.SECTION_HEADER_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.INTERFACE_DESCRIPTION_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.ENHANCES_PACKET_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.SIMPLE_PACKET_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.NAME_RESOLUTION_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.INTERFACE_STATISTICS_BLOCK, initIndex);
-                initIndex = processSectionType(BlockTypes.PACKET_BLOCK, initIndex);
-
-                if (formerIndex == initIndex && formerIndex != 0) {
-                    throw new DecodeException("File parsing error | format not recognized");
+            if (isUsingStream()) {
+                IPcapngType block;
+
+                while ((block = streamReader.nextBlock()) != null) {
+                    if (!visitor.visit(block, streamReader.getSectionContext())) {
+                        break;
+                    }
+                }
+                return DecoderStatus.SUCCESS_STATUS;
+            }
+
+            if (isUsingMappedFile() ? mappedFile.size() < 4 : (data == null || data.length < 4)) {
+                LOG.warning("Error input data format error");
+                return DecoderStatus.FAILED_STATUS;
+            }
+
+            BlockTypes type;
+
+            blockOffset = 0;
+            while ((type = readNextBlock()) != null) {
+                IPcapngType block = decodeCurrentBlock(type);
+
+                if (block != null && !visitor.visit(block, sectionContext)) {
+                    break;
                 }
-                formerIndex = initIndex;
             }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, e.getMessage(), e);
+            return DecoderStatus.FAILED_STATUS;
         } catch (DecodeException e) {
-            LOG.log(Level.WARNING, e.getCause(), null);
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            return DecoderStatus.FAILED_STATUS;
+        }
+        return DecoderStatus.SUCCESS_STATUS;
+    }
+
+    /**
+     * Decode all blocks on several cores (byte array or mapped file only).
+     * Section list is filled in file order and section context is left on
+     * last section like with decode().
+     *
+     * @param pool
+     *            pool used to decode blocks
+     * @return
+     */
+    public byte decodeParallel(ForkJoinPool pool) {
+        if (isUsingStream()) {
+            LOG.warning("This instance is using InputStream to parse data. Use decodeNext() instead.");
+            return DecoderStatus.FAILED_STATUS;
+        }
+
+        if (isUsingMappedFile() ? mappedFile.size() < 4 : (data == null || data.length < 4)) {
+            LOG.warning("Error input data format error");
+            return DecoderStatus.FAILED_STATUS;
+        }
+
+        ParallelDecoder decoder = isUsingMappedFile() ? new ParallelDecoder(mappedFile) : new ParallelDecoder(data);
+        decoder.setPool(pool);
+        decoder.setDecodedBlockTypes(decodedTypes);
+
+        try {
+            pcapSectionList.addAll(decoder.decode());
+            sectionContext = decoder.getSectionContext();
+            indexedSection = -1;
+        } catch (DecodeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+            return DecoderStatus.FAILED_STATUS;
+        }
+        return DecoderStatus.SUCCESS_STATUS;
+    }
+
+    /**
+     * Decode all blocks with framing, decoding and visiting running concurrently (byte array or mapped file only,
+     * use PipelineDecoder directly for streams). Visitor is called from calling thread in file order.
+     *
+     * @param visitor
+     *            visitor called for each decoded block
+     * @return
+     */
+    public byte decodePipelined(BlockVisitor visitor) {
+        if (isUsingStream()) {
+            LOG.warning("This instance is using InputStream to parse data. Use PipelineDecoder instead.");
+            return DecoderStatus.FAILED_STATUS;
+        }
+
+        if (isUsingMappedFile() ? mappedFile.size() < 4 : (data == null || data.length < 4)) {
+            LOG.warning("Error input data format error");
+            return DecoderStatus.FAILED_STATUS;
+        }
+
+        PipelineDecoder decoder = isUsingMappedFile() ? new PipelineDecoder(mappedFile) : new PipelineDecoder(data);
+        decoder.setDecodedBlockTypes(decodedTypes);
+
+        try {
+            decoder.decode(visitor);
+        } catch (DecodeException e) {
+            LOG.log(Level.WARNING, e.getMessage(), e);
             return DecoderStatus.FAILED_STATUS;
         }
         return DecoderStatus.SUCCESS_STATUS;
@@ -295,4 +884,23 @@ public class PcapDecoder {
     public ArrayList<IPcapngType> getSectionList() {
         return pcapSectionList;
     }
+
+    /**
+     * Release the source of this decoder : drop the reference to the mapped
+     * window and close the file channel if it has been opened by the decoder,
+     * or close the stream or channel read by the stream reader. Nothing to
+     * release for a byte array. The mapped region itself is freed by garbage
+     * collection, so the file may stay locked on Windows until then.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (mappedFile != null) {
+            mappedFile.close();
+        }
+        if (streamReader != null) {
+            streamReader.close();
+        }
+    }
 }
@@ -0,0 +1,254 @@
+package fr.bmartel.pcapdecoder.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+
+/**
+ * Columnar batch of Enhanced Packet Blocks filled by PcapDecoder.nextPacketBatch()
+ *
+ * Packet i of the batch is described by timestamps[i], timestampsNanos[i], interfaceIds[i],
+ * capturedLengths[i], packetLengths[i] and payloadOffsets[i], its data being stored in the shared payload
+ * array from payloadOffsets[i] to payloadOffsets[i] + capturedLengths[i]. Arrays are allocated once and reused by
+ * each fill, so decoding a capture batch by batch doesn't allocate anything per packet. Content is only
+ * valid until next fill.
+ *
+ * A batch is full when it holds capacity() packets or when next packet data doesn't fit in payload
+ * array. Payload array only grows when a single packet is bigger than the whole array.
+ *
+ * All packets of a batch belong to the same section : interface ids refer to the section context of the
+ * decoder once the batch has been filled.
+ *
+ */
+public class PacketBatch {
+
+	public final static int DEFAULT_CAPACITY = 1024;
+
+	public final static int DEFAULT_PAYLOAD_CAPACITY = 1024 * 1024;
+
+	private final static int INTERFACE_ID_OFFSET = 8;
+
+	private final static int TIMESTAMP_HIGH_OFFSET = 12;
+
+	private final static int TIMESTAMP_LOW_OFFSET = 16;
+
+	private final static int CAPTURED_LENGTH_OFFSET = 20;
+
+	private final static int PACKET_LENGTH_OFFSET = 24;
+
+	private final static int PACKET_DATA_OFFSET = 28;
+
+	/**
+	 * fixed fields and trailing Block Total Length
+	 */
+	private final static int MIN_BLOCK_LENGTH = PACKET_DATA_OFFSET + 4;
+
+	private final long[] timestamps;
+
+	private final long[] timestampsNanos;
+
+	private final int[] interfaceIds;
+
+	private final int[] capturedLengths;
+
+	private final int[] packetLengths;
+
+	private final int[] payloadOffsets;
+
+	private byte[] payload;
+
+	/**
+	 * number of packets in batch
+	 */
+	private int size = 0;
+
+	/**
+	 * number of payload bytes used
+	 */
+	private int payloadLength = 0;
+
+	/**
+	 * last buffer packets have been copied from and its private copy used for bulk reads (off heap buffers)
+	 */
+	private ByteBuffer source = null;
+
+	private ByteBuffer sourceCopy = null;
+
+	public PacketBatch()
+	{
+		this(DEFAULT_CAPACITY,DEFAULT_PAYLOAD_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 * 		maximum number of packets in batch
+	 * @param payloadCapacity
+	 * 		initial size of shared payload array
+	 */
+	public PacketBatch(int capacity,int payloadCapacity)
+	{
+		if (capacity <= 0 || payloadCapacity < 0)
+			throw new IllegalArgumentException("invalid batch capacity");
+
+		timestamps = new long[capacity];
+		timestampsNanos = new long[capacity];
+		interfaceIds = new int[capacity];
+		capturedLengths = new int[capacity];
+		packetLengths = new int[capacity];
+		payloadOffsets = new int[capacity];
+		payload = new byte[payloadCapacity];
+	}
+
+	/**
+	 * Empty the batch (arrays are kept)
+	 */
+	public void clear()
+	{
+		size = 0;
+		payloadLength = 0;
+	}
+
+	/**
+	 * Append an enhanced packet block
+	 *
+	 * @param buffer
+	 * 		buffer containing the block
+	 * @param offset
+	 * 		index of block first byte (Block Type field) in buffer
+	 * @param order
+	 * 		byte order of the section the block belongs to
+	 * @param section
+	 * 		context of the section the block belongs to (timestamp conversion)
+	 * @return
+	 * 		false if batch is full (packet has not been added)
+	 * @throws IllegalArgumentException
+	 * 		if block is too short for enhanced packet block fields, doesn't fit in buffer or if captured
+	 * 		length doesn't fit in block
+	 */
+	public boolean add(ByteBuffer buffer,int offset,ByteOrder order,SectionContext section)
+	{
+		if (size == timestamps.length)
+			return false;
+
+		ByteBuffer block = buffer.order(order);
+
+		if (offset < 0 || block.limit() - offset < MIN_BLOCK_LENGTH)
+			throw new IllegalArgumentException("truncated enhanced packet block");
+
+		int blockLength = block.getInt(offset + 4);
+
+		if (blockLength < MIN_BLOCK_LENGTH || blockLength > block.limit() - offset)
+			throw new IllegalArgumentException("invalid enhanced packet block length " + blockLength);
+
+		int capturedLength = block.getInt(offset + CAPTURED_LENGTH_OFFSET);
+
+		if (capturedLength < 0 || capturedLength > blockLength - MIN_BLOCK_LENGTH)
+			throw new IllegalArgumentException("invalid captured length " + capturedLength);
+
+		if (payloadLength + capturedLength > payload.length)
+		{
+			if (size > 0)
+				return false;
+
+			payload = new byte[capturedLength];
+		}
+
+		int interfaceId = block.getInt(offset + INTERFACE_ID_OFFSET);
+		long timestamp = (((long) block.getInt(offset + TIMESTAMP_HIGH_OFFSET)) << 32) | (block.getInt(offset + TIMESTAMP_LOW_OFFSET) & 0xFFFFFFFFL);
+
+		timestamps[size] = timestamp;
+		timestampsNanos[size] = section.toNanos(interfaceId, timestamp);
+		interfaceIds[size] = interfaceId;
+		capturedLengths[size] = capturedLength;
+		packetLengths[size] = block.getInt(offset + PACKET_LENGTH_OFFSET);
+		payloadOffsets[size] = payloadLength;
+
+		copy(block, offset + PACKET_DATA_OFFSET, capturedLength);
+
+		payloadLength += capturedLength;
+		size++;
+		return true;
+	}
+
+	private void copy(ByteBuffer buffer,int index,int length)
+	{
+		if (buffer.hasArray())
+		{
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + index, payload, payloadLength, length);
+			return;
+		}
+		if (buffer != source)
+		{
+			source = buffer;
+			sourceCopy = buffer.duplicate();
+		}
+		sourceCopy.limit(index + length).position(index);
+		sourceCopy.get(payload, payloadLength, length);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return timestamps.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return
+	 * 		raw timestamps in interface resolution unit (first size() values are valid)
+	 */
+	public long[] getTimestamps() {
+		return timestamps;
+	}
+
+	/**
+	 * @return
+	 * 		timestamps in nanoseconds since epoch, converted with if_tsresol / if_tsoffset of each packet
+	 * 		interface (first size() values are valid)
+	 */
+	public long[] getTimestampsNanos() {
+		return timestampsNanos;
+	}
+
+	public int[] getInterfaceIds() {
+		return interfaceIds;
+	}
+
+	public int[] getCapturedLengths() {
+		return capturedLengths;
+	}
+
+	public int[] getPacketLengths() {
+		return packetLengths;
+	}
+
+	/**
+	 * @return
+	 * 		index of each packet data in getPayload()
+	 */
+	public int[] getPayloadOffsets() {
+		return payloadOffsets;
+	}
+
+	/**
+	 * @return
+	 * 		shared payload array (may be replaced by a bigger one during a fill)
+	 */
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	/**
+	 * @return
+	 * 		number of bytes used in payload array
+	 */
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+}
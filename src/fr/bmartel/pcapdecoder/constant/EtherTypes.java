@@ -0,0 +1,41 @@
+package fr.bmartel.pcapdecoder.constant;
+
+/**
+ * EtherType values of protocols recognized by link layer dissectors
+ *
+ */
+public class EtherTypes {
+
+	/**
+	 * protocol is not known (802.3 frame without SNAP header, unknown address family...)
+	 */
+	public final static int UNKNOWN = -1;
+
+	public final static int IPV4 = 0x0800;
+
+	public final static int ARP = 0x0806;
+
+	/**
+	 * 802.1Q customer VLAN tag
+	 */
+	public final static int VLAN = 0x8100;
+
+	public final static int IPV6 = 0x86DD;
+
+	/**
+	 * 802.1ad service VLAN tag (QinQ outer tag)
+	 */
+	public final static int QINQ = 0x88A8;
+
+	/**
+	 * pre-standard QinQ outer tags
+	 */
+	public final static int QINQ_OLD = 0x9100;
+
+	public final static int QINQ_OLD2 = 0x9200;
+
+	/**
+	 * largest value of an 802.3 length field (smaller type fields are lengths, not EtherTypes)
+	 */
+	public final static int MAX_8023_LENGTH = 1500;
+}
@@ -0,0 +1,49 @@
+package fr.bmartel.pcapdecoder.constant;
+
+/**
+ * IP protocol numbers (IPv4 Protocol / IPv6 Next Header field) used by network and transport layer
+ * dissectors
+ *
+ */
+public class IpProtocols {
+
+	/**
+	 * IPv6 hop-by-hop options header
+	 */
+	public final static int HOPOPT = 0;
+
+	public final static int ICMP = 1;
+
+	public final static int TCP = 6;
+
+	public final static int UDP = 17;
+
+	/**
+	 * IPv6 routing header
+	 */
+	public final static int IPV6_ROUTE = 43;
+
+	/**
+	 * IPv6 fragment header
+	 */
+	public final static int IPV6_FRAG = 44;
+
+	public final static int ESP = 50;
+
+	/**
+	 * authentication header (IPv6 extension header)
+	 */
+	public final static int AH = 51;
+
+	public final static int ICMPV6 = 58;
+
+	/**
+	 * no next header
+	 */
+	public final static int IPV6_NONXT = 59;
+
+	/**
+	 * IPv6 destination options header
+	 */
+	public final static int IPV6_DSTOPTS = 60;
+}
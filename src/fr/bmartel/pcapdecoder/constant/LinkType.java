@@ -0,0 +1,147 @@
+package fr.bmartel.pcapdecoder.constant;
+
+/**
+ * Link types of interface description blocks (LINKTYPE_* values)
+ *
+ * Link type of a packet is resolved from its 16 bit code with a single array access (fromCode()), so
+ * dispatching packets on link type doesn't box nor hash anything.
+ *
+ */
+public enum LinkType {
+
+	NULL(0),
+	ETHERNET(1),
+	EXP_ETHERNET(2),
+	AX25(3),
+	PRONET(4),
+	CHAOS(5),
+	TOKEN_RING(6),
+	ARCNET(7),
+	SLIP(8),
+	PPP(9),
+	FDDI(10),
+	PPP_HDLC(50),
+	PPP_ETHER(51),
+	SYMANTEC_FIREWALL(99),
+	ATM_RFC1483(100),
+	RAW(101),
+	SLIP_BSDOS(102),
+	PPP_BSDOS(103),
+	C_HDLC(104),
+	IEEE802_11(105),
+	ATM_CLIP(106),
+	FRELAY(107),
+	LOOP(108),
+	ENC(109),
+	LANE8023(110),
+	HIPPI(111),
+	HDLC(112),
+	LINUX_SLL(113),
+	LTALK(114),
+	ECONET(115),
+	IPFILTER(116),
+	PFLOG(117),
+	CISCO_IOS(118),
+	PRISM_HEADER(119),
+	AIRONET_HEADER(120),
+	HHDLC(121),
+	IP_OVER_FC(122),
+	SUNATM(123),
+	RIO(124),
+	PCI_EXP(125),
+	AURORA(126),
+	IEEE802_11_RADIOTAP(127),
+	TZSP(128),
+	ARCNET_LINUX(129),
+	JUNIPER_MLPPP(130),
+	JUNIPER_MLFR(131),
+	JUNIPER_ES(132),
+	JUNIPER_GGSN(133),
+	JUNIPER_MFR(134),
+	JUNIPER_ATM2(135),
+	JUNIPER_SERVICES(136),
+	JUNIPER_ATM1(137),
+	APPLE_IP_OVER_IEEE1394(138),
+	MTP2_WITH_PHDR(139),
+	MTP2(140),
+	MTP3(141),
+	SCCP(142),
+	DOCSIS(143),
+	LINUX_IRDA(144),
+	IBM_SP(145),
+	IBM_SN(146),
+	BLUETOOTH_HCI_H4(187),
+	USB_LINUX(189),
+	PPI(192),
+	IEEE802_15_4_WITHFCS(195),
+	USB_LINUX_MMAPPED(220),
+	IPV4(228),
+	IPV6(229),
+	NFLOG(239),
+	NETLINK(253),
+	LINUX_SLL2(276),
+
+	UNKNOWN(-1);
+
+	/**
+	 * link types indexed by code
+	 */
+	private final static LinkType[] BY_CODE;
+
+	static
+	{
+		int maxCode = 0;
+
+		for (LinkType type : values())
+			maxCode = Math.max(maxCode, type.code);
+
+		BY_CODE = new LinkType[maxCode + 1];
+
+		for (LinkType type : values())
+		{
+			if (type.code >= 0)
+				BY_CODE[type.code] = type;
+		}
+	}
+
+	private final int code;
+
+	/**
+	 * LINKTYPE_* name
+	 */
+	private final String linkTypeName;
+
+	private LinkType(int code)
+	{
+		this.code=code;
+		this.linkTypeName=(code >= 0) ? "LINKTYPE_" + name() : "";
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * @return
+	 * 		LINKTYPE_* name (empty for UNKNOWN)
+	 */
+	public String getLinkTypeName() {
+		return linkTypeName;
+	}
+
+	/**
+	 * Retrieve link type from LinkType field of interface description block
+	 *
+	 * @param code
+	 * 		link type code
+	 * @return
+	 * 		link type or UNKNOWN
+	 */
+	public static LinkType fromCode(int code)
+	{
+		if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null)
+			return UNKNOWN;
+
+		return BY_CODE[code];
+	}
+}
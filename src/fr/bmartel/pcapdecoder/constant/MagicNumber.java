@@ -12,4 +12,9 @@ public class MagicNumber {
 	
 	public final static byte[] MAGIC_NUMBER_LITTLE_ENDIAN=new byte[]{ 0x4D,0x3C,0x2B,0x1A};
 	
+	/**
+	 * magic number as read with a big endian 32 bit read (0x4D3C2B1A is read in little endian sections)
+	 */
+	public final static int MAGIC_NUMBER=0x1A2B3C4D;
+	
 }
@@ -0,0 +1,80 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+
+/**
+ * Ethernet II frames (LINKTYPE_ETHERNET), with any number of 802.1Q / 802.1ad (QinQ) tags and 802.3
+ * frames carrying a SNAP header
+ *
+ */
+public class EthernetDissector implements ILinkLayerDissector {
+
+	private final static int ADDRESS_LENGTH = 6;
+
+	private final static int HEADER_LENGTH = 14;
+
+	private final static int VLAN_TAG_LENGTH = 4;
+
+	/**
+	 * 802.2 LLC header (DSAP, SSAP, control) followed by SNAP OUI and EtherType
+	 */
+	private final static int LLC_SNAP_LENGTH = 8;
+
+	private final static int LLC_SAP_SNAP = 0xAA;
+
+	private final static int LLC_CONTROL_UI = 0x03;
+
+	@Override
+	public boolean dissect(LinkLayer layer)
+	{
+		ByteBuffer buffer = layer.getBuffer();
+		int start = layer.getOffset();
+		int end = start + layer.getLength();
+
+		if (layer.getLength() < HEADER_LENGTH)
+			return false;
+
+		layer.setDestinationOffset(start);
+		layer.setSource(start + ADDRESS_LENGTH, ADDRESS_LENGTH);
+
+		int index = start + 2 * ADDRESS_LENGTH;
+		int type = PacketBytes.getUnsignedShort(buffer, index);
+		index += 2;
+
+		while (isVlanTag(type))
+		{
+			if (index + VLAN_TAG_LENGTH > end)
+				return false;
+
+			layer.addVlanTag(PacketBytes.getUnsignedShort(buffer, index));
+			type = PacketBytes.getUnsignedShort(buffer, index + 2);
+			index += VLAN_TAG_LENGTH;
+		}
+
+		if (type <= EtherTypes.MAX_8023_LENGTH)
+		{
+			// 802.3 length field : only SNAP encapsulation gives an EtherType
+			if (index + LLC_SNAP_LENGTH > end
+					|| PacketBytes.getUnsignedByte(buffer, index) != LLC_SAP_SNAP
+					|| PacketBytes.getUnsignedByte(buffer, index + 1) != LLC_SAP_SNAP
+					|| PacketBytes.getUnsignedByte(buffer, index + 2) != LLC_CONTROL_UI)
+			{
+				layer.setNetworkOffset(index);
+				return false;
+			}
+			type = PacketBytes.getUnsignedShort(buffer, index + 6);
+			index += LLC_SNAP_LENGTH;
+		}
+
+		layer.setEtherType(type);
+		layer.setNetworkOffset(index);
+		return true;
+	}
+
+	private static boolean isVlanTag(int type)
+	{
+		return type == EtherTypes.VLAN || type == EtherTypes.QINQ || type == EtherTypes.QINQ_OLD || type == EtherTypes.QINQ_OLD2;
+	}
+}
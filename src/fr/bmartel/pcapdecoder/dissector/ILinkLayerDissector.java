@@ -0,0 +1,22 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+/**
+ * Decode link layer of packets captured on one link type
+ *
+ * Dissectors are flyweights registered once in PacketDissector and called for every packet : they must
+ * not keep any state nor allocate anything.
+ *
+ */
+public interface ILinkLayerDissector {
+
+	/**
+	 * Decode link layer header of a packet
+	 *
+	 * @param layer
+	 * 		link layer reset with packet buffer, offset and length, to fill with header offsets, EtherType
+	 * 		and network layer offset
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(LinkLayer layer);
+}
@@ -0,0 +1,108 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over an ICMP or ICMPv6 header (both share type, code, checksum and a 4 byte rest of
+ * header). ICMPv6 checksum covers the IPv6 pseudo header, ICMP checksum doesn't.
+ *
+ */
+public class IcmpHeader {
+
+	public final static int HEADER_LENGTH = 8;
+
+	private ByteBuffer buffer = null;
+
+	private int offset = 0;
+
+	private int length = 0;
+
+	/**
+	 * Point this view at an ICMP header
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param offset
+	 * 		index of first ICMP header byte
+	 * @param length
+	 * 		number of captured bytes of the message
+	 * @return
+	 * 		false if this is not a complete ICMP header
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+
+		return length >= HEADER_LENGTH;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getType() {
+		return PacketBytes.getUnsignedByte(buffer, offset);
+	}
+
+	public int getCode() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 1);
+	}
+
+	public int getChecksum() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 2);
+	}
+
+	/**
+	 * @return
+	 * 		4 bytes following checksum (identifier and sequence number of echo messages, MTU...)
+	 */
+	public int getRestOfHeader() {
+		return PacketBytes.getInt(buffer, offset + 4);
+	}
+
+	/**
+	 * @return
+	 * 		identifier of echo request / reply
+	 */
+	public int getIdentifier() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 4);
+	}
+
+	/**
+	 * @return
+	 * 		sequence number of echo request / reply
+	 */
+	public int getSequenceNumber() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 6);
+	}
+
+	/**
+	 * @return
+	 * 		index of first byte after header in buffer (echo data, or invoking packet of error messages)
+	 */
+	public int getPayloadOffset() {
+		return offset + HEADER_LENGTH;
+	}
+
+	public int getPayloadLength() {
+		return length - HEADER_LENGTH;
+	}
+
+	/**
+	 * Message must have been fully captured
+	 *
+	 * @param pseudoHeaderSum
+	 * 		0 for ICMP, sum of IPv6 pseudo header for ICMPv6
+	 * @return
+	 * 		true if checksum is correct
+	 */
+	public boolean verifyChecksum(long pseudoHeaderSum) {
+		return InternetChecksum.isValid(pseudoHeaderSum + InternetChecksum.sum(buffer, offset, length));
+	}
+}
@@ -0,0 +1,110 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Internet checksum (RFC 1071) computed a word at a time
+ *
+ * Data is read with 64 bit loads and both 32 bit halves are added to a long accumulator : since 2^16 is
+ * 1 modulo 2^16 - 1, summing 32 bit words gives the same one's complement sum as summing 16 bit words,
+ * carries being folded once at the end. Partial sums (pseudo header, header, payload) can be added
+ * together before folding.
+ *
+ */
+public class InternetChecksum {
+
+	private final static long LOW_32_BITS = 0xFFFFFFFFL;
+
+	/**
+	 * @param buffer
+	 * 		buffer containing data (its byte order is ignored)
+	 * @param offset
+	 * 		index of first byte (data is summed as 16 bit words from this index)
+	 * @param length
+	 * 		number of bytes (odd last byte is padded with zero)
+	 * @return
+	 * 		unfolded sum of data
+	 */
+	public static long sum(ByteBuffer buffer, int offset, int length)
+	{
+		long sum = 0;
+		int index = offset;
+		int end = offset + length;
+
+		for (; index + 8 <= end;index += 8)
+		{
+			long value = PacketBytes.getLong(buffer, index);
+			sum += (value >>> 32) + (value & LOW_32_BITS);
+		}
+		if (index + 4 <= end)
+		{
+			sum += PacketBytes.getInt(buffer, index) & LOW_32_BITS;
+			index += 4;
+		}
+		if (index + 2 <= end)
+		{
+			sum += PacketBytes.getUnsignedShort(buffer, index);
+			index += 2;
+		}
+		if (index < end)
+			sum += PacketBytes.getUnsignedByte(buffer, index) << 8;
+
+		return sum;
+	}
+
+	/**
+	 * @param sum
+	 * 		unfolded sum
+	 * @return
+	 * 		16 bit one's complement sum
+	 */
+	public static int fold(long sum)
+	{
+		while ((sum >>> 16) != 0)
+			sum = (sum & 0xFFFF) + (sum >>> 16);
+
+		return (int) sum;
+	}
+
+	/**
+	 * @param sum
+	 * 		unfolded sum of all checksummed data, including checksum field
+	 * @return
+	 * 		true if checksum is correct
+	 */
+	public static boolean isValid(long sum)
+	{
+		return fold(sum) == 0xFFFF;
+	}
+
+	/**
+	 * @param sum
+	 * 		unfolded sum of all checksummed data, with checksum field set to zero
+	 * @return
+	 * 		value of checksum field
+	 */
+	public static int checksum(long sum)
+	{
+		return ~fold(sum) & 0xFFFF;
+	}
+
+	/**
+	 * @return
+	 * 		unfolded sum of IPv4 pseudo header
+	 */
+	public static long ipv4PseudoHeaderSum(int source, int destination, int protocol, int length)
+	{
+		return (source & LOW_32_BITS) + (destination & LOW_32_BITS) + protocol + length;
+	}
+
+	/**
+	 * @return
+	 * 		unfolded sum of IPv6 pseudo header
+	 */
+	public static long ipv6PseudoHeaderSum(long sourceHigh, long sourceLow, long destinationHigh, long destinationLow, int nextHeader, long length)
+	{
+		return (sourceHigh >>> 32) + (sourceHigh & LOW_32_BITS) + (sourceLow >>> 32) + (sourceLow & LOW_32_BITS)
+				+ (destinationHigh >>> 32) + (destinationHigh & LOW_32_BITS) + (destinationLow >>> 32) + (destinationLow & LOW_32_BITS)
+				+ nextHeader + length;
+	}
+}
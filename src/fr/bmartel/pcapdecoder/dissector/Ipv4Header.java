@@ -0,0 +1,191 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over an IPv4 header : fields are read on demand at offsets into the packet buffer.
+ * Addresses are ints in network byte order (first byte is most significant).
+ *
+ */
+public class Ipv4Header {
+
+	public final static int MIN_HEADER_LENGTH = 20;
+
+	private final static int FLAG_DONT_FRAGMENT = 0x4000;
+
+	private final static int FLAG_MORE_FRAGMENTS = 0x2000;
+
+	private final static int FRAGMENT_OFFSET_MASK = 0x1FFF;
+
+	private ByteBuffer buffer = null;
+
+	private int offset = 0;
+
+	private int headerLength = 0;
+
+	/**
+	 * number of bytes of the datagram present in buffer (total length, or less if packet is truncated)
+	 */
+	private int capturedLength = 0;
+
+	/**
+	 * Point this view at an IPv4 header
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param offset
+	 * 		index of first IPv4 header byte
+	 * @param length
+	 * 		number of captured bytes from offset (Ethernet padding beyond total length is ignored)
+	 * @return
+	 * 		false if this is not a complete IPv4 header
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+
+		if (length < MIN_HEADER_LENGTH || (PacketBytes.getUnsignedByte(buffer, offset) >>> 4) != 4)
+			return false;
+
+		headerLength = (PacketBytes.getUnsignedByte(buffer, offset) & 0x0F) * 4;
+
+		int totalLength = getTotalLength();
+
+		// total length is 0 in packets captured before TCP segmentation offload
+		if (totalLength == 0)
+			totalLength = length;
+
+		if (headerLength < MIN_HEADER_LENGTH || headerLength > length || totalLength < headerLength)
+			return false;
+
+		capturedLength = Math.min(totalLength, length);
+		return true;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return
+	 * 		header length in bytes (IHL * 4)
+	 */
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	public int getTypeOfService() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 1);
+	}
+
+	public int getTotalLength() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 2);
+	}
+
+	public int getIdentification() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 4);
+	}
+
+	public boolean isDontFragment() {
+		return (PacketBytes.getUnsignedShort(buffer, offset + 6) & FLAG_DONT_FRAGMENT) != 0;
+	}
+
+	public boolean isMoreFragments() {
+		return (PacketBytes.getUnsignedShort(buffer, offset + 6) & FLAG_MORE_FRAGMENTS) != 0;
+	}
+
+	/**
+	 * @return
+	 * 		fragment offset in bytes
+	 */
+	public int getFragmentOffset() {
+		return (PacketBytes.getUnsignedShort(buffer, offset + 6) & FRAGMENT_OFFSET_MASK) * 8;
+	}
+
+	/**
+	 * @return
+	 * 		true if this datagram is a fragment (more fragments flag or non zero fragment offset)
+	 */
+	public boolean isFragment() {
+		return (PacketBytes.getUnsignedShort(buffer, offset + 6) & (FLAG_MORE_FRAGMENTS | FRAGMENT_OFFSET_MASK)) != 0;
+	}
+
+	public int getTimeToLive() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 8);
+	}
+
+	public int getProtocol() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 9);
+	}
+
+	public int getHeaderChecksum() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 10);
+	}
+
+	public int getSourceAddress() {
+		return PacketBytes.getInt(buffer, offset + 12);
+	}
+
+	public int getDestinationAddress() {
+		return PacketBytes.getInt(buffer, offset + 16);
+	}
+
+	/**
+	 * @return
+	 * 		index of options in buffer (options are getOptionsLength() bytes long)
+	 */
+	public int getOptionsOffset() {
+		return offset + MIN_HEADER_LENGTH;
+	}
+
+	public int getOptionsLength() {
+		return headerLength - MIN_HEADER_LENGTH;
+	}
+
+	/**
+	 * @return
+	 * 		index of first payload byte in buffer
+	 */
+	public int getPayloadOffset() {
+		return offset + headerLength;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured payload bytes
+	 */
+	public int getPayloadLength() {
+		return capturedLength - headerLength;
+	}
+
+	/**
+	 * @return
+	 * 		true if part of the datagram has not been captured
+	 */
+	public boolean isTruncated() {
+		return capturedLength < getTotalLength();
+	}
+
+	/**
+	 * @return
+	 * 		true if header checksum is correct
+	 */
+	public boolean verifyChecksum() {
+		return InternetChecksum.isValid(InternetChecksum.sum(buffer, offset, headerLength));
+	}
+
+	/**
+	 * @param length
+	 * 		transport layer length (header and payload)
+	 * @return
+	 * 		unfolded sum of the pseudo header used by transport layer checksums
+	 */
+	public long pseudoHeaderSum(int length) {
+		return InternetChecksum.ipv4PseudoHeaderSum(getSourceAddress(), getDestinationAddress(), getProtocol(), length);
+	}
+}
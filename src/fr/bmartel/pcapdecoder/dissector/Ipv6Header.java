@@ -0,0 +1,265 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.pcapdecoder.constant.IpProtocols;
+
+/**
+ * Flyweight view over an IPv6 header and its extension headers
+ *
+ * Hop-by-hop options, routing, fragment, destination options and authentication headers are walked when
+ * the view is wrapped, so getProtocol() and getPayloadOffset() give the upper layer protocol and its
+ * offset. Walking stops after the fragment header of a fragment other than the first one, whose payload
+ * is fragment data. Addresses are two longs in network byte order (high and low 64 bits).
+ *
+ */
+public class Ipv6Header {
+
+	public final static int HEADER_LENGTH = 40;
+
+	private final static int FRAGMENT_HEADER_LENGTH = 8;
+
+	private final static int MORE_FRAGMENTS = 0x0001;
+
+	private final static int FRAGMENT_OFFSET_MASK = 0xFFF8;
+
+	private ByteBuffer buffer = null;
+
+	private int offset = 0;
+
+	/**
+	 * number of bytes of the packet present in buffer (header and payload length, or less if truncated)
+	 */
+	private int capturedLength = 0;
+
+	private int protocol = -1;
+
+	private int payloadOffset = 0;
+
+	private int extensionCount = 0;
+
+	private int fragmentHeaderOffset = -1;
+
+	/**
+	 * Point this view at an IPv6 header and walk its extension headers
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param offset
+	 * 		index of first IPv6 header byte
+	 * @param length
+	 * 		number of captured bytes from offset (Ethernet padding beyond payload length is ignored)
+	 * @return
+	 * 		false if this is not a complete IPv6 header
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+		protocol = -1;
+		extensionCount = 0;
+		fragmentHeaderOffset = -1;
+
+		if (length < HEADER_LENGTH || (PacketBytes.getUnsignedByte(buffer, offset) >>> 4) != 6)
+			return false;
+
+		int payloadLength = getPayloadLengthField();
+
+		// payload length is 0 for jumbograms and in packets captured before segmentation offload
+		capturedLength = (payloadLength == 0) ? length : Math.min(HEADER_LENGTH + payloadLength, length);
+
+		int end = offset + capturedLength;
+		int next = getNextHeader();
+		int index = offset + HEADER_LENGTH;
+
+		while (isExtensionHeader(next))
+		{
+			if (index + 8 > end)
+			{
+				// extension header not captured : upper layer is unknown
+				payloadOffset = end;
+				return true;
+			}
+
+			int headerLength;
+
+			if (next == IpProtocols.IPV6_FRAG)
+			{
+				fragmentHeaderOffset = index;
+				headerLength = FRAGMENT_HEADER_LENGTH;
+			}
+			else if (next == IpProtocols.AH)
+				headerLength = (PacketBytes.getUnsignedByte(buffer, index + 1) + 2) * 4;
+			else
+				headerLength = (PacketBytes.getUnsignedByte(buffer, index + 1) + 1) * 8;
+
+			next = PacketBytes.getUnsignedByte(buffer, index);
+			index += headerLength;
+			extensionCount++;
+
+			if (fragmentHeaderOffset >= 0 && getFragmentOffset() != 0)
+				break;
+		}
+
+		if (index > end)
+		{
+			payloadOffset = end;
+			return true;
+		}
+		protocol = next;
+		payloadOffset = index;
+		return true;
+	}
+
+	private static boolean isExtensionHeader(int nextHeader)
+	{
+		return nextHeader == IpProtocols.HOPOPT || nextHeader == IpProtocols.IPV6_ROUTE || nextHeader == IpProtocols.IPV6_FRAG
+				|| nextHeader == IpProtocols.IPV6_DSTOPTS || nextHeader == IpProtocols.AH;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getTrafficClass() {
+		return (PacketBytes.getUnsignedShort(buffer, offset) >>> 4) & 0xFF;
+	}
+
+	public int getFlowLabel() {
+		return PacketBytes.getInt(buffer, offset) & 0xFFFFF;
+	}
+
+	/**
+	 * @return
+	 * 		Payload Length field (extension headers and upper layer)
+	 */
+	public int getPayloadLengthField() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 4);
+	}
+
+	/**
+	 * @return
+	 * 		Next Header field of the fixed header
+	 */
+	public int getNextHeader() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 6);
+	}
+
+	public int getHopLimit() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 7);
+	}
+
+	public long getSourceHigh() {
+		return PacketBytes.getLong(buffer, offset + 8);
+	}
+
+	public long getSourceLow() {
+		return PacketBytes.getLong(buffer, offset + 16);
+	}
+
+	public long getDestinationHigh() {
+		return PacketBytes.getLong(buffer, offset + 24);
+	}
+
+	public long getDestinationLow() {
+		return PacketBytes.getLong(buffer, offset + 32);
+	}
+
+	/**
+	 * @return
+	 * 		upper layer protocol after extension headers (-1 if extension headers are truncated)
+	 */
+	public int getProtocol() {
+		return protocol;
+	}
+
+	/**
+	 * @return
+	 * 		number of extension headers walked
+	 */
+	public int getExtensionHeaderCount() {
+		return extensionCount;
+	}
+
+	/**
+	 * @return
+	 * 		index of upper layer in buffer
+	 */
+	public int getPayloadOffset() {
+		return payloadOffset;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured upper layer bytes
+	 */
+	public int getPayloadLength() {
+		return offset + capturedLength - payloadOffset;
+	}
+
+	/**
+	 * @return
+	 * 		upper layer length used in pseudo header (Payload Length minus extension headers)
+	 */
+	public int getUpperLayerLength() {
+		return getPayloadLengthField() - (payloadOffset - offset - HEADER_LENGTH);
+	}
+
+	/**
+	 * @return
+	 * 		true if part of the packet has not been captured
+	 */
+	public boolean isTruncated() {
+		return capturedLength < HEADER_LENGTH + getPayloadLengthField();
+	}
+
+	/**
+	 * @return
+	 * 		true if packet has a fragment header
+	 */
+	public boolean isFragment() {
+		return fragmentHeaderOffset >= 0;
+	}
+
+	/**
+	 * @return
+	 * 		index of fragment header in buffer (-1 if there is none)
+	 */
+	public int getFragmentHeaderOffset() {
+		return fragmentHeaderOffset;
+	}
+
+	/**
+	 * @return
+	 * 		fragment offset in bytes (0 if there is no fragment header)
+	 */
+	public int getFragmentOffset() {
+		return (fragmentHeaderOffset < 0) ? 0 : PacketBytes.getUnsignedShort(buffer, fragmentHeaderOffset + 2) & FRAGMENT_OFFSET_MASK;
+	}
+
+	public boolean isMoreFragments() {
+		return fragmentHeaderOffset >= 0 && (PacketBytes.getUnsignedShort(buffer, fragmentHeaderOffset + 2) & MORE_FRAGMENTS) != 0;
+	}
+
+	/**
+	 * @return
+	 * 		fragment header identification (0 if there is no fragment header)
+	 */
+	public int getFragmentIdentification() {
+		return (fragmentHeaderOffset < 0) ? 0 : PacketBytes.getInt(buffer, fragmentHeaderOffset + 4);
+	}
+
+	/**
+	 * @param length
+	 * 		upper layer length (header and payload)
+	 * @return
+	 * 		unfolded sum of the pseudo header used by upper layer checksums
+	 */
+	public long pseudoHeaderSum(int length) {
+		return InternetChecksum.ipv6PseudoHeaderSum(getSourceHigh(), getSourceLow(), getDestinationHigh(), getDestinationLow(), protocol, length);
+	}
+}
@@ -0,0 +1,234 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+
+/**
+ * Link layer of the packet last dissected : offsets of link layer fields and of network layer payload
+ * in the packet buffer, nothing is copied
+ *
+ * A single instance is reused by PacketDissector for all packets, so content is only valid until next
+ * dissection. Fields that don't exist for a link type are -1.
+ *
+ */
+public class LinkLayer {
+
+	/**
+	 * number of VLAN identifiers kept (outer and inner tag of QinQ), other tags are only counted
+	 */
+	public final static int MAX_VLAN_TAGS = 2;
+
+	private ByteBuffer buffer = null;
+
+	private int linkType = -1;
+
+	/**
+	 * index of first link layer byte in buffer and number of captured bytes from there
+	 */
+	private int offset = 0;
+
+	private int length = 0;
+
+	private int destinationOffset = -1;
+
+	private int sourceOffset = -1;
+
+	private int sourceLength = 0;
+
+	private final int[] vlanIds = new int[MAX_VLAN_TAGS];
+
+	private int vlanCount = 0;
+
+	private int packetType = -1;
+
+	private int interfaceIndex = -1;
+
+	private int etherType = EtherTypes.UNKNOWN;
+
+	private int networkOffset = -1;
+
+	/**
+	 * Clear all fields before dissecting a packet
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param linkType
+	 * 		link type code of packet interface
+	 * @param offset
+	 * 		index of first packet byte in buffer
+	 * @param length
+	 * 		captured length of packet
+	 */
+	public void reset(ByteBuffer buffer, int linkType, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.linkType = linkType;
+		this.offset = offset;
+		this.length = length;
+		destinationOffset = -1;
+		sourceOffset = -1;
+		sourceLength = 0;
+		vlanCount = 0;
+		packetType = -1;
+		interfaceIndex = -1;
+		etherType = EtherTypes.UNKNOWN;
+		networkOffset = -1;
+	}
+
+	/**
+	 * Record a VLAN tag, from outer to inner tag
+	 *
+	 * @param tci
+	 * 		Tag Control Information field (priority, drop eligible indicator and VLAN identifier)
+	 */
+	public void addVlanTag(int tci)
+	{
+		if (vlanCount < MAX_VLAN_TAGS)
+			vlanIds[vlanCount] = tci & 0x0FFF;
+
+		vlanCount++;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getLinkType() {
+		return linkType;
+	}
+
+	/**
+	 * @return
+	 * 		index of first link layer byte in getBuffer()
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return
+	 * 		captured length of the whole packet
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return
+	 * 		index of destination MAC address in getBuffer() (-1 if link layer has no destination address)
+	 */
+	public int getDestinationOffset() {
+		return destinationOffset;
+	}
+
+	public void setDestinationOffset(int destinationOffset) {
+		this.destinationOffset = destinationOffset;
+	}
+
+	/**
+	 * @return
+	 * 		index of source link layer address in getBuffer() (-1 if link layer has no source address)
+	 */
+	public int getSourceOffset() {
+		return sourceOffset;
+	}
+
+	/**
+	 * @return
+	 * 		length of source link layer address (6 for a MAC address)
+	 */
+	public int getSourceLength() {
+		return sourceLength;
+	}
+
+	public void setSource(int sourceOffset, int sourceLength) {
+		this.sourceOffset = sourceOffset;
+		this.sourceLength = sourceLength;
+	}
+
+	/**
+	 * @return
+	 * 		number of VLAN tags (0 for an untagged frame, 2 for QinQ)
+	 */
+	public int getVlanCount() {
+		return vlanCount;
+	}
+
+	/**
+	 * @param index
+	 * 		0 for outer tag
+	 * @return
+	 * 		VLAN identifier or -1 if there is no such tag
+	 */
+	public int getVlanId(int index) {
+		if (index < 0 || index >= Math.min(vlanCount, MAX_VLAN_TAGS))
+			return -1;
+
+		return vlanIds[index];
+	}
+
+	/**
+	 * @return
+	 * 		Linux cooked capture packet type (0 to host, 4 sent by host...) or -1
+	 */
+	public int getPacketType() {
+		return packetType;
+	}
+
+	public void setPacketType(int packetType) {
+		this.packetType = packetType;
+	}
+
+	/**
+	 * @return
+	 * 		Linux cooked capture v2 interface index or -1
+	 */
+	public int getInterfaceIndex() {
+		return interfaceIndex;
+	}
+
+	public void setInterfaceIndex(int interfaceIndex) {
+		this.interfaceIndex = interfaceIndex;
+	}
+
+	/**
+	 * @return
+	 * 		EtherType of network layer protocol (EtherTypes.UNKNOWN if not known)
+	 */
+	public int getEtherType() {
+		return etherType;
+	}
+
+	public void setEtherType(int etherType) {
+		this.etherType = etherType;
+	}
+
+	/**
+	 * @return
+	 * 		index of first network layer byte in getBuffer() (-1 if link layer couldn't be decoded)
+	 */
+	public int getNetworkOffset() {
+		return networkOffset;
+	}
+
+	public void setNetworkOffset(int networkOffset) {
+		this.networkOffset = networkOffset;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured bytes from network layer to end of packet (including Ethernet padding)
+	 */
+	public int getNetworkLength() {
+		return (networkOffset < 0) ? 0 : offset + length - networkOffset;
+	}
+
+	/**
+	 * @return
+	 * 		true if network layer has been found and its protocol is known
+	 */
+	public boolean hasNetworkLayer() {
+		return networkOffset >= 0 && etherType != EtherTypes.UNKNOWN;
+	}
+}
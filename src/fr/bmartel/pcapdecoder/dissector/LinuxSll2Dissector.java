@@ -0,0 +1,52 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Linux cooked capture v2 (LINKTYPE_LINUX_SLL2) : protocol type, reserved, interface index, ARPHRD type,
+ * packet type, link layer address length and 8 bytes of link layer address, 20 bytes in network byte
+ * order
+ *
+ */
+public class LinuxSll2Dissector implements ILinkLayerDissector {
+
+	private final static int HEADER_LENGTH = 20;
+
+	private final static int INTERFACE_INDEX_OFFSET = 4;
+
+	private final static int PACKET_TYPE_OFFSET = 10;
+
+	private final static int ADDRESS_LENGTH_OFFSET = 11;
+
+	private final static int ADDRESS_OFFSET = 12;
+
+	private final static int MAX_ADDRESS_LENGTH = 8;
+
+	/**
+	 * protocol type values below this one are not EtherTypes (802.3 frames, 802.2 LLC frames...)
+	 */
+	private final static int MIN_ETHER_TYPE = 0x0600;
+
+	@Override
+	public boolean dissect(LinkLayer layer)
+	{
+		ByteBuffer buffer = layer.getBuffer();
+		int start = layer.getOffset();
+
+		if (layer.getLength() < HEADER_LENGTH)
+			return false;
+
+		layer.setInterfaceIndex(PacketBytes.getInt(buffer, start + INTERFACE_INDEX_OFFSET));
+		layer.setPacketType(PacketBytes.getUnsignedByte(buffer, start + PACKET_TYPE_OFFSET));
+		layer.setSource(start + ADDRESS_OFFSET, Math.min(PacketBytes.getUnsignedByte(buffer, start + ADDRESS_LENGTH_OFFSET), MAX_ADDRESS_LENGTH));
+		layer.setNetworkOffset(start + HEADER_LENGTH);
+
+		int protocol = PacketBytes.getUnsignedShort(buffer, start);
+
+		if (protocol < MIN_ETHER_TYPE)
+			return false;
+
+		layer.setEtherType(protocol);
+		return true;
+	}
+}
@@ -0,0 +1,46 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Linux cooked capture v1 (LINKTYPE_LINUX_SLL) : packet type, ARPHRD type, link layer address length,
+ * 8 bytes of link layer address and protocol type, 16 bytes in network byte order
+ *
+ */
+public class LinuxSllDissector implements ILinkLayerDissector {
+
+	private final static int HEADER_LENGTH = 16;
+
+	private final static int ADDRESS_OFFSET = 6;
+
+	private final static int MAX_ADDRESS_LENGTH = 8;
+
+	private final static int PROTOCOL_OFFSET = 14;
+
+	/**
+	 * protocol type values below this one are not EtherTypes (802.3 frames, 802.2 LLC frames...)
+	 */
+	private final static int MIN_ETHER_TYPE = 0x0600;
+
+	@Override
+	public boolean dissect(LinkLayer layer)
+	{
+		ByteBuffer buffer = layer.getBuffer();
+		int start = layer.getOffset();
+
+		if (layer.getLength() < HEADER_LENGTH)
+			return false;
+
+		layer.setPacketType(PacketBytes.getUnsignedShort(buffer, start));
+		layer.setSource(start + ADDRESS_OFFSET, Math.min(PacketBytes.getUnsignedShort(buffer, start + 4), MAX_ADDRESS_LENGTH));
+		layer.setNetworkOffset(start + HEADER_LENGTH);
+
+		int protocol = PacketBytes.getUnsignedShort(buffer, start + PROTOCOL_OFFSET);
+
+		if (protocol < MIN_ETHER_TYPE)
+			return false;
+
+		layer.setEtherType(protocol);
+		return true;
+	}
+}
@@ -0,0 +1,74 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+
+/**
+ * BSD loopback encapsulation : 4 byte address family followed by network layer packet
+ *
+ * Address family is in byte order of the capturing host for LINKTYPE_NULL (guessed from the position of
+ * the non zero bytes, families being small values) and in network byte order for LINKTYPE_LOOP.
+ *
+ */
+public class NullDissector implements ILinkLayerDissector {
+
+	private final static int HEADER_LENGTH = 4;
+
+	private final static int AF_INET = 2;
+
+	/**
+	 * AF_INET6 values of Linux, NetBSD / OpenBSD / BSD/OS, FreeBSD / DragonFly and Darwin
+	 */
+	private final static int AF_INET6_LINUX = 10;
+
+	private final static int AF_INET6_BSD = 24;
+
+	private final static int AF_INET6_FREEBSD = 28;
+
+	private final static int AF_INET6_DARWIN = 30;
+
+	private final boolean networkByteOrder;
+
+	/**
+	 * @param networkByteOrder
+	 * 		true for LINKTYPE_LOOP (family in network byte order), false for LINKTYPE_NULL (family in host
+	 * 		byte order)
+	 */
+	public NullDissector(boolean networkByteOrder)
+	{
+		this.networkByteOrder = networkByteOrder;
+	}
+
+	@Override
+	public boolean dissect(LinkLayer layer)
+	{
+		ByteBuffer buffer = layer.getBuffer();
+		int start = layer.getOffset();
+
+		if (layer.getLength() < HEADER_LENGTH)
+			return false;
+
+		int family = PacketBytes.getInt(buffer, start);
+
+		if (!networkByteOrder && (family & 0xFFFF0000) != 0)
+			family = Integer.reverseBytes(family);
+
+		layer.setNetworkOffset(start + HEADER_LENGTH);
+
+		switch (family)
+		{
+			case AF_INET:
+				layer.setEtherType(EtherTypes.IPV4);
+				return true;
+			case AF_INET6_LINUX:
+			case AF_INET6_BSD:
+			case AF_INET6_FREEBSD:
+			case AF_INET6_DARWIN:
+				layer.setEtherType(EtherTypes.IPV6);
+				return true;
+			default:
+				return false;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Absolute reads of network byte order fields, whatever the byte order set on the buffer (packet data
+ * lives in buffers set to the byte order of the capture section)
+ *
+ */
+public class PacketBytes {
+
+	public static int getUnsignedByte(ByteBuffer buffer, int index)
+	{
+		return buffer.get(index) & 0xFF;
+	}
+
+	public static int getUnsignedShort(ByteBuffer buffer, int index)
+	{
+		return ((buffer.get(index) & 0xFF) << 8) | (buffer.get(index + 1) & 0xFF);
+	}
+
+	public static int getInt(ByteBuffer buffer, int index)
+	{
+		int value = buffer.getInt(index);
+
+		return (buffer.order() == ByteOrder.BIG_ENDIAN) ? value : Integer.reverseBytes(value);
+	}
+
+	public static long getLong(ByteBuffer buffer, int index)
+	{
+		long value = buffer.getLong(index);
+
+		return (buffer.order() == ByteOrder.BIG_ENDIAN) ? value : Long.reverseBytes(value);
+	}
+}
@@ -0,0 +1,476 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+import fr.bmartel.pcapdecoder.constant.IpProtocols;
+import fr.bmartel.pcapdecoder.constant.LinkType;
+import fr.bmartel.pcapdecoder.reassembly.IpDefragmenter;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+
+/**
+ * Decode link, network and transport layers of packets, dispatching on link type of their interface
+ *
+ * Dissectors are kept in an array indexed by link type code and write offsets into a single LinkLayer
+ * instance, then IPv4 / IPv6 and TCP / UDP / ICMP / ICMPv6 headers are read by flyweight views pointed
+ * at the same buffer, so demultiplexing a packet read with an EnhancedPacketView (or any ByteBuffer)
+ * doesn't allocate anything. A dissector is used by one thread at a time.
+ *
+ * Ethernet (with 802.1Q / QinQ tags), Linux cooked capture v1 and v2, BSD loopback and raw IP link
+ * types are registered by default, other link types can be added with register().
+ *
+ * With a defragmenter, IP fragments are kept until their datagram is complete : IP and transport views then
+ * point at the whole datagram in defragmenter buffer instead of the packet, and getPacketCount() and
+ * getPacketBytes() give the packets carrying all its fragments. Other fragments are reported as held.
+ *
+ */
+public class PacketDissector {
+
+	private ILinkLayerDissector[] dissectors = new ILinkLayerDissector[LinkType.LINUX_SLL2.getCode() + 1];
+
+	private final LinkLayer linkLayer = new LinkLayer();
+
+	private final Ipv4Header ipv4 = new Ipv4Header();
+
+	private final Ipv6Header ipv6 = new Ipv6Header();
+
+	private final TcpHeader tcp = new TcpHeader();
+
+	private final UdpHeader udp = new UdpHeader();
+
+	private final IcmpHeader icmp = new IcmpHeader();
+
+	/**
+	 * EtherType of decoded IP header (EtherTypes.UNKNOWN if none)
+	 */
+	private int networkProtocol = EtherTypes.UNKNOWN;
+
+	/**
+	 * IP protocol of decoded transport header (-1 if none)
+	 */
+	private int transportProtocol = -1;
+
+	private boolean verifyChecksums = false;
+
+	private boolean checksumValid = true;
+
+	private IpDefragmenter defragmenter = null;
+
+	/**
+	 * true if last packet completed a fragmented datagram
+	 */
+	private boolean reassembled = false;
+
+	/**
+	 * true if last packet was a fragment taken by defragmenter without completing its datagram
+	 */
+	private boolean fragmentHeld = false;
+
+	/**
+	 * original length of packet being dissected (given to defragmenter)
+	 */
+	private long packetLength = 0;
+
+	/**
+	 * time of packet being dissected (given to defragmenter)
+	 */
+	private long timestamp = IpDefragmenter.NO_TIMESTAMP;
+
+	/**
+	 * buffer wrapping last packet data array given to dissect(IEnhancedPacketBLock)
+	 */
+	private ByteBuffer arrayBuffer = null;
+
+	public PacketDissector()
+	{
+		register(LinkType.ETHERNET.getCode(), new EthernetDissector());
+		register(LinkType.LINUX_SLL.getCode(), new LinuxSllDissector());
+		register(LinkType.LINUX_SLL2.getCode(), new LinuxSll2Dissector());
+		register(LinkType.NULL.getCode(), new NullDissector(false));
+		register(LinkType.LOOP.getCode(), new NullDissector(true));
+		register(LinkType.RAW.getCode(), new RawIpDissector(EtherTypes.UNKNOWN));
+		register(LinkType.IPV4.getCode(), new RawIpDissector(EtherTypes.IPV4));
+		register(LinkType.IPV6.getCode(), new RawIpDissector(EtherTypes.IPV6));
+	}
+
+	/**
+	 * Set dissector of a link type (replacing default one if any)
+	 *
+	 * @param linkType
+	 * 		link type code (LinkType.getCode())
+	 * @param dissector
+	 * 		dissector or null to leave packets of this link type undecoded
+	 */
+	public void register(int linkType, ILinkLayerDissector dissector)
+	{
+		if (linkType < 0 || linkType > 0xFFFF)
+			throw new IllegalArgumentException("invalid link type " + linkType);
+
+		if (linkType >= dissectors.length)
+			dissectors = Arrays.copyOf(dissectors, linkType + 1);
+
+		dissectors[linkType] = dissector;
+	}
+
+	/**
+	 * @return
+	 * 		link layer of last dissected packet
+	 */
+	public LinkLayer getLinkLayer() {
+		return linkLayer;
+	}
+
+	/**
+	 * @return
+	 * 		EtherTypes.IPV4 or EtherTypes.IPV6 if an IP header has been decoded in last packet,
+	 * 		EtherTypes.UNKNOWN otherwise
+	 */
+	public int getNetworkProtocol() {
+		return networkProtocol;
+	}
+
+	/**
+	 * @return
+	 * 		IpProtocols.TCP, UDP, ICMP or ICMPV6 if a transport header has been decoded in last packet
+	 * 		(not for fragments other than the first one, nor for any fragment with a defragmenter), -1 otherwise
+	 */
+	public int getTransportProtocol() {
+		return transportProtocol;
+	}
+
+	public Ipv4Header getIpv4() {
+		return ipv4;
+	}
+
+	public Ipv6Header getIpv6() {
+		return ipv6;
+	}
+
+	public TcpHeader getTcp() {
+		return tcp;
+	}
+
+	public UdpHeader getUdp() {
+		return udp;
+	}
+
+	/**
+	 * @return
+	 * 		ICMP or ICMPv6 header, depending on getTransportProtocol()
+	 */
+	public IcmpHeader getIcmp() {
+		return icmp;
+	}
+
+	/**
+	 * @param defragmenter
+	 * 		defragmenter receiving fully captured IP fragments (null to decode fragments one by one, which is the
+	 * 		default)
+	 */
+	public void setDefragmenter(IpDefragmenter defragmenter) {
+		this.defragmenter = defragmenter;
+	}
+
+	public IpDefragmenter getDefragmenter() {
+		return defragmenter;
+	}
+
+	/**
+	 * @return
+	 * 		true if last packet was the fragment completing a datagram (IP and transport views point at the
+	 * 		whole datagram)
+	 */
+	public boolean isReassembled() {
+		return reassembled;
+	}
+
+	/**
+	 * @return
+	 * 		true if last packet was an IP fragment taken by defragmenter without completing its datagram : no
+	 * 		transport header is decoded and the packet is accounted with the fragment completing the datagram
+	 * 		(fragments of datagrams dropped on timeout or to free memory are never accounted)
+	 */
+	public boolean isFragmentHeld() {
+		return fragmentHeld;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured packets carrying last dissected datagram : number of fragments for a reassembled
+	 * 		datagram, 1 otherwise
+	 */
+	public int getPacketCount() {
+		return reassembled ? defragmenter.getFragmentCount() : 1;
+	}
+
+	/**
+	 * @return
+	 * 		original length of last packet, or sum of original lengths of all fragments for a reassembled
+	 * 		datagram (captured length for packets given as a buffer)
+	 */
+	public long getPacketBytes() {
+		return reassembled ? defragmenter.getFragmentBytes() : packetLength;
+	}
+
+	/**
+	 * Verify IPv4 header checksum and transport checksums of fully captured, unfragmented packets
+	 * (disabled by default)
+	 *
+	 * @param verifyChecksums
+	 */
+	public void setVerifyChecksums(boolean verifyChecksums) {
+		this.verifyChecksums = verifyChecksums;
+	}
+
+	public boolean isVerifyChecksums() {
+		return verifyChecksums;
+	}
+
+	/**
+	 * @return
+	 * 		false if a checksum of last packet has been verified and is wrong
+	 */
+	public boolean isChecksumValid() {
+		return checksumValid;
+	}
+
+	/**
+	 * Decode a packet bound to its interface description (see SectionContext.bindInterface())
+	 *
+	 * @param packet
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(EnhancedPacketView packet)
+	{
+		return dissect(packet, IpDefragmenter.NO_TIMESTAMP);
+	}
+
+	/**
+	 * Decode a packet bound to its interface description
+	 *
+	 * @param packet
+	 * @param timestamp
+	 * 		packet time in nanoseconds, used to drop fragments on timeout
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(EnhancedPacketView packet, long timestamp)
+	{
+		return dissect(packet.getBuffer(), packet.getPacketDataOffset(), packet.getCapturedLength(), linkTypeOf(packet), timestamp,
+				packet.getPacketLength());
+	}
+
+	/**
+	 * Dissect a decoded packet. Packets other than EnhancedPacketView are read from
+	 * getPacketData(), wrapped in a buffer once per data array.
+	 *
+	 * @param packet
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(IEnhancedPacketBLock packet)
+	{
+		return dissect(packet, IpDefragmenter.NO_TIMESTAMP);
+	}
+
+	/**
+	 * Dissect a decoded packet
+	 *
+	 * @param packet
+	 * @param timestamp
+	 * 		packet time in nanoseconds, used to drop fragments on timeout
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(IEnhancedPacketBLock packet, long timestamp)
+	{
+		if (packet instanceof EnhancedPacketView)
+			return dissect((EnhancedPacketView) packet, timestamp);
+
+		byte[] data = packet.getPacketData();
+
+		if (arrayBuffer == null || arrayBuffer.array() != data)
+			arrayBuffer = ByteBuffer.wrap(data);
+
+		return dissect(arrayBuffer, 0, data.length, linkTypeOf(packet), timestamp, packet.getPacketLength());
+	}
+
+	/**
+	 * Decode a packet
+	 *
+	 * @param buffer
+	 * 		buffer containing packet (its byte order is ignored)
+	 * @param offset
+	 * 		index of first packet byte in buffer
+	 * @param length
+	 * 		captured length of packet
+	 * @param linkType
+	 * 		link type code of packet interface
+	 * @return
+	 * 		true if network layer has been found (IP and transport headers are then decoded if present)
+	 */
+	public boolean dissect(ByteBuffer buffer, int offset, int length, int linkType)
+	{
+		return dissect(buffer, offset, length, linkType, IpDefragmenter.NO_TIMESTAMP);
+	}
+
+	/**
+	 * Decode a packet
+	 *
+	 * @param buffer
+	 * 		buffer containing packet (its byte order is ignored)
+	 * @param offset
+	 * 		index of first packet byte in buffer
+	 * @param length
+	 * 		captured length of packet
+	 * @param linkType
+	 * 		link type code of packet interface
+	 * @param timestamp
+	 * 		packet time in nanoseconds (IpDefragmenter.NO_TIMESTAMP if unknown), used to drop fragments on timeout
+	 * @return
+	 * 		true if network layer has been found
+	 */
+	public boolean dissect(ByteBuffer buffer, int offset, int length, int linkType, long timestamp)
+	{
+		return dissect(buffer, offset, length, linkType, timestamp, length);
+	}
+
+	private boolean dissect(ByteBuffer buffer, int offset, int length, int linkType, long timestamp, long packetLength)
+	{
+		linkLayer.reset(buffer, linkType, offset, length);
+		networkProtocol = EtherTypes.UNKNOWN;
+		transportProtocol = -1;
+		checksumValid = true;
+		reassembled = false;
+		fragmentHeld = false;
+		this.timestamp = timestamp;
+		this.packetLength = packetLength;
+
+		if (linkType < 0 || linkType >= dissectors.length || dissectors[linkType] == null)
+			return false;
+
+		if (!dissectors[linkType].dissect(linkLayer))
+			return false;
+
+		if (linkLayer.getEtherType() == EtherTypes.IPV4)
+			dissectIpv4();
+		else if (linkLayer.getEtherType() == EtherTypes.IPV6)
+			dissectIpv6();
+
+		return true;
+	}
+
+	private void dissectIpv4()
+	{
+		if (!ipv4.wrap(linkLayer.getBuffer(), linkLayer.getNetworkOffset(), linkLayer.getNetworkLength()))
+			return;
+
+		networkProtocol = EtherTypes.IPV4;
+
+		if (verifyChecksums && !ipv4.verifyChecksum())
+			checksumValid = false;
+
+		if (defragmenter != null && ipv4.isFragment() && !ipv4.isTruncated())
+		{
+			if (!defragmenter.addIpv4(ipv4, timestamp, packetLength))
+			{
+				fragmentHeld = true;
+				return;
+			}
+
+			ipv4.wrap(defragmenter.getBuffer(), 0, defragmenter.getLength());
+			reassembled = true;
+		}
+
+		if (ipv4.getFragmentOffset() != 0)
+			return;
+
+		boolean complete = !ipv4.isTruncated() && !ipv4.isFragment() && ipv4.getTotalLength() != 0;
+
+		dissectTransport(ipv4.getProtocol(), ipv4.getPayloadOffset(), ipv4.getPayloadLength(), complete, false);
+	}
+
+	private void dissectIpv6()
+	{
+		if (!ipv6.wrap(linkLayer.getBuffer(), linkLayer.getNetworkOffset(), linkLayer.getNetworkLength()))
+			return;
+
+		networkProtocol = EtherTypes.IPV6;
+
+		// atomic fragments (offset 0 without more fragments) are complete datagrams
+		if (defragmenter != null && (ipv6.getFragmentOffset() != 0 || ipv6.isMoreFragments()) && !ipv6.isTruncated())
+		{
+			if (!defragmenter.addIpv6(ipv6, timestamp, packetLength))
+			{
+				fragmentHeld = true;
+				return;
+			}
+
+			ipv6.wrap(defragmenter.getBuffer(), 0, defragmenter.getLength());
+			reassembled = true;
+		}
+
+		if (ipv6.getProtocol() < 0 || ipv6.getFragmentOffset() != 0)
+			return;
+
+		boolean complete = !ipv6.isTruncated() && !ipv6.isFragment() && ipv6.getPayloadLengthField() != 0;
+
+		dissectTransport(ipv6.getProtocol(), ipv6.getPayloadOffset(), ipv6.getPayloadLength(), complete, true);
+	}
+
+	/**
+	 * @param complete
+	 * 		true if transport layer has been fully captured and is not fragmented (checksum can be verified)
+	 */
+	private void dissectTransport(int protocol, int offset, int length, boolean complete, boolean overIpv6)
+	{
+		ByteBuffer buffer = overIpv6 ? ipv6.getBuffer() : ipv4.getBuffer();
+		boolean verify = verifyChecksums && complete;
+
+		switch (protocol)
+		{
+			case IpProtocols.TCP:
+				if (!tcp.wrap(buffer, offset, length))
+					return;
+
+				if (verify && !tcp.verifyChecksum(pseudoHeaderSum(length, overIpv6)))
+					checksumValid = false;
+				break;
+			case IpProtocols.UDP:
+				if (!udp.wrap(buffer, offset, length))
+					return;
+
+				// a zero UDP checksum is only allowed over IPv4
+				if (verify && ((overIpv6 && udp.getChecksum() == 0) || !udp.verifyChecksum(pseudoHeaderSum(length, overIpv6))))
+					checksumValid = false;
+				break;
+			case IpProtocols.ICMP:
+			case IpProtocols.ICMPV6:
+				if (!icmp.wrap(buffer, offset, length))
+					return;
+
+				if (verify && !icmp.verifyChecksum((protocol == IpProtocols.ICMPV6) ? pseudoHeaderSum(length, overIpv6) : 0))
+					checksumValid = false;
+				break;
+			default:
+				return;
+		}
+		transportProtocol = protocol;
+	}
+
+	private long pseudoHeaderSum(int length, boolean overIpv6)
+	{
+		return overIpv6 ? ipv6.pseudoHeaderSum(length) : ipv4.pseudoHeaderSum(length);
+	}
+
+	private static int linkTypeOf(IEnhancedPacketBLock packet)
+	{
+		IDescriptionBlock description = packet.getInterfaceDescription();
+
+		return (description != null) ? description.getLinkTypeCode() : -1;
+	}
+}
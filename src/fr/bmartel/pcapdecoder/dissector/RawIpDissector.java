@@ -0,0 +1,52 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+
+/**
+ * Packets starting directly with an IP header : LINKTYPE_RAW (IP version read from first nibble),
+ * LINKTYPE_IPV4 and LINKTYPE_IPV6
+ *
+ */
+public class RawIpDissector implements ILinkLayerDissector {
+
+	/**
+	 * EtherType of all packets of this link type, or EtherTypes.UNKNOWN to read IP version of each packet
+	 */
+	private final int etherType;
+
+	/**
+	 * @param etherType
+	 * 		EtherTypes.IPV4, EtherTypes.IPV6 or EtherTypes.UNKNOWN when IP version is given by each packet
+	 */
+	public RawIpDissector(int etherType)
+	{
+		this.etherType = etherType;
+	}
+
+	@Override
+	public boolean dissect(LinkLayer layer)
+	{
+		if (layer.getLength() < 1)
+			return false;
+
+		layer.setNetworkOffset(layer.getOffset());
+
+		if (etherType != EtherTypes.UNKNOWN)
+		{
+			layer.setEtherType(etherType);
+			return true;
+		}
+
+		switch (PacketBytes.getUnsignedByte(layer.getBuffer(), layer.getOffset()) >>> 4)
+		{
+			case 4:
+				layer.setEtherType(EtherTypes.IPV4);
+				return true;
+			case 6:
+				layer.setEtherType(EtherTypes.IPV6);
+				return true;
+			default:
+				return false;
+		}
+	}
+}
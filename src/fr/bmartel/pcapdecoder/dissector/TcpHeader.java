@@ -0,0 +1,323 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over a TCP header
+ *
+ * Options (maximum segment size, window scale, SACK, timestamps) are parsed on first access to one of
+ * them for current segment.
+ *
+ */
+public class TcpHeader {
+
+	public final static int MIN_HEADER_LENGTH = 20;
+
+	public final static int FLAG_FIN = 0x01;
+
+	public final static int FLAG_SYN = 0x02;
+
+	public final static int FLAG_RST = 0x04;
+
+	public final static int FLAG_PSH = 0x08;
+
+	public final static int FLAG_ACK = 0x10;
+
+	public final static int FLAG_URG = 0x20;
+
+	public final static int FLAG_ECE = 0x40;
+
+	public final static int FLAG_CWR = 0x80;
+
+	private final static int OPTION_END = 0;
+
+	private final static int OPTION_NOP = 1;
+
+	private final static int OPTION_MSS = 2;
+
+	private final static int OPTION_WINDOW_SCALE = 3;
+
+	private final static int OPTION_SACK_PERMITTED = 4;
+
+	private final static int OPTION_SACK = 5;
+
+	private final static int OPTION_TIMESTAMP = 8;
+
+	private ByteBuffer buffer = null;
+
+	private int offset = 0;
+
+	private int headerLength = 0;
+
+	private int length = 0;
+
+	private boolean optionsParsed = false;
+
+	private int maximumSegmentSize = -1;
+
+	private int windowScale = -1;
+
+	private boolean sackPermitted = false;
+
+	private int sackOffset = -1;
+
+	private int sackBlockCount = 0;
+
+	private int timestampOffset = -1;
+
+	/**
+	 * Point this view at a TCP header
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param offset
+	 * 		index of first TCP header byte
+	 * @param length
+	 * 		number of captured bytes of the segment (header and payload)
+	 * @return
+	 * 		false if this is not a complete TCP header
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		optionsParsed = false;
+
+		if (length < MIN_HEADER_LENGTH)
+			return false;
+
+		headerLength = (PacketBytes.getUnsignedByte(buffer, offset + 12) >>> 4) * 4;
+
+		return headerLength >= MIN_HEADER_LENGTH && headerLength <= length;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getSourcePort() {
+		return PacketBytes.getUnsignedShort(buffer, offset);
+	}
+
+	public int getDestinationPort() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 2);
+	}
+
+	/**
+	 * @return
+	 * 		sequence number as an unsigned 32 bit value
+	 */
+	public long getSequenceNumber() {
+		return PacketBytes.getInt(buffer, offset + 4) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @return
+	 * 		acknowledgment number as an unsigned 32 bit value
+	 */
+	public long getAcknowledgmentNumber() {
+		return PacketBytes.getInt(buffer, offset + 8) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @return
+	 * 		header length in bytes (data offset * 4)
+	 */
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	/**
+	 * @return
+	 * 		flags (FLAG_* bits)
+	 */
+	public int getFlags() {
+		return PacketBytes.getUnsignedByte(buffer, offset + 13);
+	}
+
+	public boolean hasFlags(int flags) {
+		return (getFlags() & flags) == flags;
+	}
+
+	public int getWindow() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 14);
+	}
+
+	public int getChecksum() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 16);
+	}
+
+	public int getUrgentPointer() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 18);
+	}
+
+	/**
+	 * @return
+	 * 		index of first payload byte in buffer
+	 */
+	public int getPayloadOffset() {
+		return offset + headerLength;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured payload bytes
+	 */
+	public int getPayloadLength() {
+		return length - headerLength;
+	}
+
+	private void parseOptions()
+	{
+		optionsParsed = true;
+		maximumSegmentSize = -1;
+		windowScale = -1;
+		sackPermitted = false;
+		sackOffset = -1;
+		sackBlockCount = 0;
+		timestampOffset = -1;
+
+		int index = offset + MIN_HEADER_LENGTH;
+		int end = offset + headerLength;
+
+		while (index < end)
+		{
+			int kind = PacketBytes.getUnsignedByte(buffer, index);
+
+			if (kind == OPTION_END)
+				break;
+
+			if (kind == OPTION_NOP)
+			{
+				index++;
+				continue;
+			}
+			if (index + 2 > end)
+				break;
+
+			int optionLength = PacketBytes.getUnsignedByte(buffer, index + 1);
+
+			if (optionLength < 2 || index + optionLength > end)
+				break;
+
+			if (kind == OPTION_MSS && optionLength == 4)
+				maximumSegmentSize = PacketBytes.getUnsignedShort(buffer, index + 2);
+			else if (kind == OPTION_WINDOW_SCALE && optionLength == 3)
+				windowScale = PacketBytes.getUnsignedByte(buffer, index + 2);
+			else if (kind == OPTION_SACK_PERMITTED && optionLength == 2)
+				sackPermitted = true;
+			else if (kind == OPTION_SACK && (optionLength - 2) % 8 == 0)
+			{
+				sackOffset = index + 2;
+				sackBlockCount = (optionLength - 2) / 8;
+			}
+			else if (kind == OPTION_TIMESTAMP && optionLength == 10)
+				timestampOffset = index + 2;
+
+			index += optionLength;
+		}
+	}
+
+	/**
+	 * @return
+	 * 		maximum segment size option or -1
+	 */
+	public int getMaximumSegmentSize() {
+		if (!optionsParsed)
+			parseOptions();
+		return maximumSegmentSize;
+	}
+
+	/**
+	 * @return
+	 * 		window scale option (shift count) or -1
+	 */
+	public int getWindowScale() {
+		if (!optionsParsed)
+			parseOptions();
+		return windowScale;
+	}
+
+	public boolean isSackPermitted() {
+		if (!optionsParsed)
+			parseOptions();
+		return sackPermitted;
+	}
+
+	/**
+	 * @return
+	 * 		number of SACK blocks
+	 */
+	public int getSackBlockCount() {
+		if (!optionsParsed)
+			parseOptions();
+		return sackBlockCount;
+	}
+
+	/**
+	 * @param index
+	 * 		SACK block index
+	 * @return
+	 * 		left edge of SACK block
+	 */
+	public long getSackLeftEdge(int index) {
+		return PacketBytes.getInt(buffer, sackOffset(index)) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @param index
+	 * 		SACK block index
+	 * @return
+	 * 		right edge of SACK block
+	 */
+	public long getSackRightEdge(int index) {
+		return PacketBytes.getInt(buffer, sackOffset(index) + 4) & 0xFFFFFFFFL;
+	}
+
+	private int sackOffset(int index)
+	{
+		if (index < 0 || index >= getSackBlockCount())
+			throw new IndexOutOfBoundsException("no SACK block " + index);
+
+		return sackOffset + index * 8;
+	}
+
+	public boolean hasTimestamp() {
+		if (!optionsParsed)
+			parseOptions();
+		return timestampOffset >= 0;
+	}
+
+	/**
+	 * @return
+	 * 		timestamp value (TSval) or -1
+	 */
+	public long getTimestampValue() {
+		return hasTimestamp() ? PacketBytes.getInt(buffer, timestampOffset) & 0xFFFFFFFFL : -1;
+	}
+
+	/**
+	 * @return
+	 * 		timestamp echo reply (TSecr) or -1
+	 */
+	public long getTimestampEchoReply() {
+		return hasTimestamp() ? PacketBytes.getInt(buffer, timestampOffset + 4) & 0xFFFFFFFFL : -1;
+	}
+
+	/**
+	 * Segment must have been fully captured
+	 *
+	 * @param pseudoHeaderSum
+	 * 		sum of IP pseudo header (Ipv4Header.pseudoHeaderSum() / Ipv6Header.pseudoHeaderSum())
+	 * @return
+	 * 		true if checksum is correct
+	 */
+	public boolean verifyChecksum(long pseudoHeaderSum) {
+		return InternetChecksum.isValid(pseudoHeaderSum + InternetChecksum.sum(buffer, offset, length));
+	}
+}
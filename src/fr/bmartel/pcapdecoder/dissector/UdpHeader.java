@@ -0,0 +1,109 @@
+package fr.bmartel.pcapdecoder.dissector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over a UDP header
+ *
+ */
+public class UdpHeader {
+
+	public final static int HEADER_LENGTH = 8;
+
+	private ByteBuffer buffer = null;
+
+	private int offset = 0;
+
+	/**
+	 * number of bytes of the datagram present in buffer (length field, or less if truncated)
+	 */
+	private int capturedLength = 0;
+
+	/**
+	 * Point this view at a UDP header
+	 *
+	 * @param buffer
+	 * 		buffer containing the packet
+	 * @param offset
+	 * 		index of first UDP header byte
+	 * @param length
+	 * 		number of captured bytes of the datagram (header and payload)
+	 * @return
+	 * 		false if this is not a complete UDP header
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+
+		if (length < HEADER_LENGTH)
+			return false;
+
+		int udpLength = getLength();
+
+		// length is 0 in jumbograms and in packets captured before segmentation offload
+		capturedLength = (udpLength == 0) ? length : Math.min(udpLength, length);
+
+		return capturedLength >= HEADER_LENGTH;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getSourcePort() {
+		return PacketBytes.getUnsignedShort(buffer, offset);
+	}
+
+	public int getDestinationPort() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 2);
+	}
+
+	/**
+	 * @return
+	 * 		Length field (header and payload)
+	 */
+	public int getLength() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 4);
+	}
+
+	public int getChecksum() {
+		return PacketBytes.getUnsignedShort(buffer, offset + 6);
+	}
+
+	/**
+	 * @return
+	 * 		index of first payload byte in buffer
+	 */
+	public int getPayloadOffset() {
+		return offset + HEADER_LENGTH;
+	}
+
+	/**
+	 * @return
+	 * 		number of captured payload bytes
+	 */
+	public int getPayloadLength() {
+		return capturedLength - HEADER_LENGTH;
+	}
+
+	/**
+	 * Datagram must have been fully captured. A zero checksum field (checksum not computed, only allowed
+	 * over IPv4) is not verified.
+	 *
+	 * @param pseudoHeaderSum
+	 * 		sum of IP pseudo header (Ipv4Header.pseudoHeaderSum() / Ipv6Header.pseudoHeaderSum())
+	 * @return
+	 * 		true if checksum is correct or not computed
+	 */
+	public boolean verifyChecksum(long pseudoHeaderSum) {
+		if (getChecksum() == 0)
+			return true;
+
+		return InternetChecksum.isValid(pseudoHeaderSum + InternetChecksum.sum(buffer, offset, capturedLength));
+	}
+}
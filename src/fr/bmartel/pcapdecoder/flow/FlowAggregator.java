@@ -0,0 +1,94 @@
+package fr.bmartel.pcapdecoder.flow;
+
+import fr.bmartel.pcapdecoder.BlockVisitor;
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.dissector.PacketDissector;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Feed a flow table with packets of a capture : each packet is dissected, its timestamp converted to
+ * nanoseconds with its interface resolution and offset, then added to the table with its original length
+ *
+ * Can be given to PcapDecoder.decode(BlockVisitor) or to any other block source. aggregate() reads packets
+ * with an EnhancedPacketView so that nothing is allocated per packet.
+ *
+ */
+public class FlowAggregator extends BlockVisitor {
+
+	private final FlowTable table;
+
+	private final PacketDissector dissector;
+
+	/**
+	 * @param table
+	 * 		table receiving packets
+	 */
+	public FlowAggregator(FlowTable table)
+	{
+		this(table, new PacketDissector());
+	}
+
+	/**
+	 * @param table
+	 * 		table receiving packets
+	 * @param dissector
+	 * 		dissector used to decode packets (to register other link types)
+	 */
+	public FlowAggregator(FlowTable table, PacketDissector dissector)
+	{
+		this.table = table;
+		this.dissector = dissector;
+	}
+
+	public FlowTable getTable() {
+		return table;
+	}
+
+	public PacketDissector getDissector() {
+		return dissector;
+	}
+
+	@Override
+	public boolean onEnhancedPacket(IEnhancedPacketBLock packet, SectionContext section)
+	{
+		add(packet, section);
+		return true;
+	}
+
+	/**
+	 * Add a packet to flow table
+	 *
+	 * @param packet
+	 * 		packet bound to its interface description
+	 * @param section
+	 * 		section of the packet
+	 * @return
+	 * 		flow id or FlowTable.NONE if packet has no IP header
+	 */
+	public int add(IEnhancedPacketBLock packet, SectionContext section)
+	{
+		long timestamp = section.toNanos(packet.getInterfaceId(), packet.getTimeStampValue());
+
+		if (!dissector.dissect(packet, timestamp))
+			return FlowTable.NONE;
+
+		return table.add(dissector, timestamp, packet.getPacketLength());
+	}
+
+	/**
+	 * Add all packets of a capture (byte array or mapped file source)
+	 *
+	 * @param decoder
+	 * @throws DecodeException
+	 */
+	public void aggregate(PcapDecoder decoder) throws DecodeException
+	{
+		EnhancedPacketView view = new EnhancedPacketView();
+
+		while (decoder.nextEnhancedPacket(view))
+			add(view, decoder.getSectionContext());
+	}
+}
@@ -0,0 +1,147 @@
+package fr.bmartel.pcapdecoder.flow;
+
+import fr.bmartel.pcapdecoder.constant.EtherTypes;
+import fr.bmartel.pcapdecoder.constant.IpProtocols;
+import fr.bmartel.pcapdecoder.dissector.Ipv4Header;
+import fr.bmartel.pcapdecoder.dissector.Ipv6Header;
+import fr.bmartel.pcapdecoder.dissector.PacketDissector;
+
+/**
+ * IP version, protocol, addresses and ports of a packet, in packet direction (reused for every packet)
+ *
+ * An IPv4 address is stored as the low 32 bits of its IPv6 address fields. Ports are 0 for protocols
+ * other than TCP and UDP, and for fragments other than the first one.
+ *
+ */
+public class FlowKey {
+
+	private int version = 0;
+
+	private int protocol = 0;
+
+	private long sourceHigh = 0;
+
+	private long sourceLow = 0;
+
+	private int sourcePort = 0;
+
+	private long destinationHigh = 0;
+
+	private long destinationLow = 0;
+
+	private int destinationPort = 0;
+
+	/**
+	 * Read key of the packet last decoded by a dissector
+	 *
+	 * @param dissector
+	 * @return
+	 * 		false if packet has no IP header or is a fragment held by defragmenter (its ports are not known yet)
+	 */
+	public boolean set(PacketDissector dissector)
+	{
+		if (dissector.isFragmentHeld())
+			return false;
+
+		if (dissector.getNetworkProtocol() == EtherTypes.IPV4)
+		{
+			Ipv4Header ipv4 = dissector.getIpv4();
+
+			version = 4;
+			protocol = ipv4.getProtocol();
+			sourceHigh = 0;
+			sourceLow = ipv4.getSourceAddress() & 0xFFFFFFFFL;
+			destinationHigh = 0;
+			destinationLow = ipv4.getDestinationAddress() & 0xFFFFFFFFL;
+		}
+		else if (dissector.getNetworkProtocol() == EtherTypes.IPV6)
+		{
+			Ipv6Header ipv6 = dissector.getIpv6();
+
+			version = 6;
+			protocol = (ipv6.getProtocol() >= 0) ? ipv6.getProtocol() : ipv6.getNextHeader();
+			sourceHigh = ipv6.getSourceHigh();
+			sourceLow = ipv6.getSourceLow();
+			destinationHigh = ipv6.getDestinationHigh();
+			destinationLow = ipv6.getDestinationLow();
+		}
+		else
+			return false;
+
+		if (dissector.getTransportProtocol() == IpProtocols.TCP)
+		{
+			sourcePort = dissector.getTcp().getSourcePort();
+			destinationPort = dissector.getTcp().getDestinationPort();
+		}
+		else if (dissector.getTransportProtocol() == IpProtocols.UDP)
+		{
+			sourcePort = dissector.getUdp().getSourcePort();
+			destinationPort = dissector.getUdp().getDestinationPort();
+		}
+		else
+		{
+			sourcePort = 0;
+			destinationPort = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Set all fields
+	 */
+	public void set(int version, int protocol, long sourceHigh, long sourceLow, int sourcePort, long destinationHigh, long destinationLow, int destinationPort)
+	{
+		this.version = version;
+		this.protocol = protocol;
+		this.sourceHigh = sourceHigh;
+		this.sourceLow = sourceLow;
+		this.sourcePort = sourcePort;
+		this.destinationHigh = destinationHigh;
+		this.destinationLow = destinationLow;
+		this.destinationPort = destinationPort;
+	}
+
+	/**
+	 * @return
+	 * 		hash equal for both directions of a flow
+	 */
+	public long symmetricHash()
+	{
+		long h = ((sourceHigh + destinationHigh) ^ Long.rotateLeft(sourceHigh ^ destinationHigh, 29)) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (sourceLow + destinationLow) ^ Long.rotateLeft(sourceLow ^ destinationLow, 23)) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ ((long) (sourcePort + destinationPort) << 24) ^ ((long) (sourcePort ^ destinationPort) << 44) ^ (protocol << 8) ^ version) * 0x165667B19E3779F9L;
+		return h ^ (h >>> 29);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public int getProtocol() {
+		return protocol;
+	}
+
+	public long getSourceHigh() {
+		return sourceHigh;
+	}
+
+	public long getSourceLow() {
+		return sourceLow;
+	}
+
+	public int getSourcePort() {
+		return sourcePort;
+	}
+
+	public long getDestinationHigh() {
+		return destinationHigh;
+	}
+
+	public long getDestinationLow() {
+		return destinationLow;
+	}
+
+	public int getDestinationPort() {
+		return destinationPort;
+	}
+}
@@ -0,0 +1,747 @@
+package fr.bmartel.pcapdecoder.flow;
+
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.dissector.PacketDissector;
+
+/**
+ * Bidirectional flows keyed by IP version, protocol, addresses and ports, with packet / byte counters
+ * of each direction and first / last packet timestamps
+ *
+ * Both directions of a conversation share one flow : endpoints of the key are ordered (endpoint 0 is the
+ * smaller address and port), counters being kept per sending endpoint. Flows are identified by an int id
+ * locating their fields in a single long array (14 longs per flow, so that a packet only touches the
+ * cache lines of its flow), looked up with an open addressing index of hashes and ids : adding a packet
+ * doesn't allocate anything and a flow takes about 140 bytes. An IPv4 address is stored as the low 32
+ * bits of its IPv6 address fields.
+ *
+ * Timeouts are driven by packet timestamps. Flows are linked in first seen order for active timeout
+ * (flow started too long ago) and in idle check order for idle timeout (no packet for a while) : packets
+ * don't move their flow in this list, a flow reaching the head of the list being either removed or
+ * checked again one idle timeout later. A packet coming after the idle timeout of its flow always starts
+ * a new flow, but an idle flow may be given to the listener up to one idle timeout late. Removed flows
+ * are given to the flow listener and their ids reused.
+ *
+ */
+public class FlowTable {
+
+	/**
+	 * removal reasons given to IFlowListener
+	 */
+	public final static int EXPIRED_IDLE = 0;
+
+	public final static int EXPIRED_ACTIVE = 1;
+
+	public final static int FLUSHED = 2;
+
+	/**
+	 * no flow
+	 */
+	public final static int NONE = -1;
+
+	/**
+	 * fields of a flow in flows array
+	 */
+	private final static int ADDRESS_HIGH_0 = 0;
+
+	private final static int ADDRESS_LOW_0 = 1;
+
+	private final static int ADDRESS_HIGH_1 = 2;
+
+	private final static int ADDRESS_LOW_1 = 3;
+
+	/**
+	 * port of endpoint 0 (bits 48-63), port of endpoint 1 (bits 32-47), initiator endpoint (bit 16),
+	 * IP version (bits 8-15), protocol (bits 0-7)
+	 */
+	private final static int KEY_INFO = 4;
+
+	private final static int PACKETS_0 = 5;
+
+	private final static int PACKETS_1 = 6;
+
+	private final static int BYTES_0 = 7;
+
+	private final static int BYTES_1 = 8;
+
+	private final static int FIRST_SEEN = 9;
+
+	private final static int LAST_SEEN = 10;
+
+	/**
+	 * previous flow (high 32 bits) and next flow (low 32 bits) in idle check order, then in first seen order
+	 */
+	private final static int IDLE_LINKS = 11;
+
+	private final static int AGE_LINKS = 12;
+
+	/**
+	 * time from which idle timeout is checked (creation or last check), increasing along idle check list
+	 */
+	private final static int IDLE_CHECK = 13;
+
+	private final static int FLOW_FIELDS = 14;
+
+	private final static int IDLE_LIST = 0;
+
+	private final static int AGE_LIST = 1;
+
+	/**
+	 * key fields compared when looking up a flow (initiator bit excluded)
+	 */
+	private final static long KEY_INFO_MASK = 0xFFFFFFFF0000FFFFL;
+
+	private final static long INITIATOR_1 = 1L << 16;
+
+	private final static int MAX_CAPACITY = 1 << 27;
+
+	private final static int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * hash index : hash (high 32 bits) and flow id + 1 (low 32 bits) of each flow, 0 for a free slot.
+	 * Length is a power of two at least twice the number of flows.
+	 */
+	private long[] index;
+
+	private int indexMask;
+
+	private long[] flows;
+
+	private final int[] listHead = new int[] { NONE, NONE };
+
+	private final int[] listTail = new int[] { NONE, NONE };
+
+	/**
+	 * free ids chained with next flow of first seen order list
+	 */
+	private int freeHead = NONE;
+
+	/**
+	 * number of ids ever used (ids below this one are either flows or free)
+	 */
+	private int allocated = 0;
+
+	private int size = 0;
+
+	private long idleTimeout = 0;
+
+	private long activeTimeout = 0;
+
+	private IFlowListener listener = null;
+
+	/**
+	 * key of packets added with a dissector
+	 */
+	private final FlowKey packetKey = new FlowKey();
+
+	public FlowTable()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 * 		number of flows allocated up front (table grows beyond if needed)
+	 */
+	public FlowTable(int capacity)
+	{
+		if (capacity <= 0 || capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+
+		flows = new long[capacity * FLOW_FIELDS];
+
+		int indexLength = Integer.highestOneBit(capacity) << 2;
+		index = new long[indexLength];
+		indexMask = indexLength - 1;
+	}
+
+	private void growFlows()
+	{
+		int capacity = Math.min(flows.length / FLOW_FIELDS * 2, MAX_CAPACITY);
+
+		flows = Arrays.copyOf(flows, capacity * FLOW_FIELDS);
+	}
+
+	/**
+	 * Double hash index length (flows are placed again using their hash in index, keys are not read)
+	 */
+	private void growIndex()
+	{
+		long[] newIndex = new long[index.length * 2];
+		int newMask = newIndex.length - 1;
+
+		for (int i = 0; i < index.length;i++)
+		{
+			if (index[i] != 0)
+			{
+				int slot = (int) (index[i] >>> 32) & newMask;
+
+				while (newIndex[slot] != 0)
+					slot = (slot + 1) & newMask;
+
+				newIndex[slot] = index[i];
+			}
+		}
+		index = newIndex;
+		indexMask = newMask;
+	}
+
+	/**
+	 * @param idleTimeout
+	 * 		flows without packet for this number of nanoseconds are removed (0 to disable)
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param activeTimeout
+	 * 		flows started this number of nanoseconds ago are removed, next packet starting a new flow (0 to
+	 * 		disable)
+	 */
+	public void setActiveTimeout(long activeTimeout) {
+		this.activeTimeout = activeTimeout;
+	}
+
+	public long getActiveTimeout() {
+		return activeTimeout;
+	}
+
+	/**
+	 * @param listener
+	 * 		listener receiving removed flows (null to drop them)
+	 */
+	public void setFlowListener(IFlowListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Add packet decoded by a dissector. Packets without IP header and fragments held by defragmenter are
+	 * ignored, a reassembled datagram counts the packets of all its fragments.
+	 *
+	 * @param dissector
+	 * 		dissector of the packet
+	 * @param timestamp
+	 * 		packet timestamp in nanoseconds
+	 * @param length
+	 * 		packet length (original length on the wire)
+	 * @return
+	 * 		flow id or NONE if packet has no IP header or is a held fragment
+	 */
+	public int add(PacketDissector dissector, long timestamp, long length)
+	{
+		if (!packetKey.set(dissector))
+			return NONE;
+
+		if (dissector.isReassembled())
+			return add(packetKey, timestamp, dissector.getPacketCount(), dissector.getPacketBytes());
+
+		return add(packetKey, timestamp, length);
+	}
+
+	/**
+	 * Add a packet
+	 *
+	 * @param key
+	 * 		key of the packet, in packet direction
+	 * @param timestamp
+	 * 		packet timestamp in nanoseconds
+	 * @param length
+	 * 		packet length
+	 * @return
+	 * 		flow id
+	 */
+	public int add(FlowKey key, long timestamp, long length)
+	{
+		return add(key, timestamp, 1, length);
+	}
+
+	/**
+	 * Add several packets at once (fragments of a reassembled datagram)
+	 *
+	 * @param key
+	 * 		key of the packets, in packet direction
+	 * @param timestamp
+	 * 		timestamp of last packet in nanoseconds
+	 * @param packets
+	 * 		number of packets
+	 * @param length
+	 * 		total length of packets
+	 * @return
+	 * 		flow id
+	 */
+	public int add(FlowKey key, long timestamp, long packets, long length)
+	{
+		return add(key.getVersion(), key.getProtocol(), key.getSourceHigh(), key.getSourceLow(), key.getSourcePort(),
+				key.getDestinationHigh(), key.getDestinationLow(), key.getDestinationPort(), timestamp, packets, length);
+	}
+
+	/**
+	 * Add a packet
+	 *
+	 * @param version
+	 * 		IP version (4 or 6)
+	 * @param protocol
+	 * 		IP protocol
+	 * @param sourceHigh
+	 * 		high 64 bits of source address (0 for IPv4)
+	 * @param sourceLow
+	 * 		low 64 bits of source address (unsigned IPv4 address)
+	 * @param sourcePort
+	 * @param destinationHigh
+	 * @param destinationLow
+	 * @param destinationPort
+	 * @param timestamp
+	 * 		packet timestamp in nanoseconds
+	 * @param length
+	 * 		packet length
+	 * @return
+	 * 		flow id
+	 */
+	public int add(int version, int protocol, long sourceHigh, long sourceLow, int sourcePort, long destinationHigh, long destinationLow, int destinationPort, long timestamp, long length)
+	{
+		return add(version, protocol, sourceHigh, sourceLow, sourcePort, destinationHigh, destinationLow, destinationPort, timestamp, 1, length);
+	}
+
+	/**
+	 * Add several packets of the same flow at once
+	 *
+	 * @param packets
+	 * 		number of packets
+	 * @param length
+	 * 		total length of packets
+	 * @return
+	 * 		flow id
+	 * @see #add(int, int, long, long, int, long, long, int, long, long)
+	 */
+	public int add(int version, int protocol, long sourceHigh, long sourceLow, int sourcePort, long destinationHigh, long destinationLow, int destinationPort, long timestamp, long packets, long length)
+	{
+		expire(timestamp);
+
+		// endpoint 0 is the smaller one
+		boolean fromEndpoint1 = compare(sourceHigh, sourceLow, sourcePort, destinationHigh, destinationLow, destinationPort) > 0;
+
+		long high0 = fromEndpoint1 ? destinationHigh : sourceHigh;
+		long low0 = fromEndpoint1 ? destinationLow : sourceLow;
+		long high1 = fromEndpoint1 ? sourceHigh : destinationHigh;
+		long low1 = fromEndpoint1 ? sourceLow : destinationLow;
+		long port0 = (fromEndpoint1 ? destinationPort : sourcePort) & 0xFFFF;
+		long port1 = (fromEndpoint1 ? sourcePort : destinationPort) & 0xFFFF;
+		long info = (port0 << 48) | (port1 << 32) | ((version & 0xFF) << 8) | (protocol & 0xFF);
+		int hash = hash(high0, low0, high1, low1, info);
+
+		int flow = lookup(high0, low0, high1, low1, info, hash);
+
+		if (flow != NONE && idleTimeout > 0 && timestamp - flows[flow * FLOW_FIELDS + LAST_SEEN] >= idleTimeout)
+		{
+			// flow has expired but has not reached head of idle check list yet
+			remove(flow, EXPIRED_IDLE);
+			flow = NONE;
+		}
+
+		int base;
+
+		if (flow == NONE)
+		{
+			flow = create(high0, low0, high1, low1, fromEndpoint1 ? info | INITIATOR_1 : info, hash);
+			base = flow * FLOW_FIELDS;
+			flows[base + FIRST_SEEN] = timestamp;
+			flows[base + LAST_SEEN] = timestamp;
+			flows[base + IDLE_CHECK] = timestamp;
+		}
+		else
+		{
+			base = flow * FLOW_FIELDS;
+
+			if (timestamp > flows[base + LAST_SEEN])
+				flows[base + LAST_SEEN] = timestamp;
+		}
+
+		if (fromEndpoint1)
+		{
+			flows[base + PACKETS_1] += packets;
+			flows[base + BYTES_1] += length;
+		}
+		else
+		{
+			flows[base + PACKETS_0] += packets;
+			flows[base + BYTES_0] += length;
+		}
+		return flow;
+	}
+
+	/**
+	 * Add a flow of another table : counters are added to the flow with the same key, first and last
+	 * timestamps are widened (timeouts are not applied)
+	 *
+	 * @param source
+	 * 		table containing the flow
+	 * @param sourceFlow
+	 * 		flow id in source table
+	 * @return
+	 * 		flow id in this table
+	 */
+	public int merge(FlowTable source, int sourceFlow)
+	{
+		long[] sourceFields = source.flows;
+		int sourceBase = sourceFlow * FLOW_FIELDS;
+
+		long high0 = sourceFields[sourceBase + ADDRESS_HIGH_0];
+		long low0 = sourceFields[sourceBase + ADDRESS_LOW_0];
+		long high1 = sourceFields[sourceBase + ADDRESS_HIGH_1];
+		long low1 = sourceFields[sourceBase + ADDRESS_LOW_1];
+		long info = sourceFields[sourceBase + KEY_INFO];
+		int hash = hash(high0, low0, high1, low1, info);
+
+		int flow = lookup(high0, low0, high1, low1, info & KEY_INFO_MASK, hash);
+		int base;
+
+		if (flow == NONE)
+		{
+			flow = create(high0, low0, high1, low1, info, hash);
+			base = flow * FLOW_FIELDS;
+			flows[base + FIRST_SEEN] = sourceFields[sourceBase + FIRST_SEEN];
+			flows[base + LAST_SEEN] = sourceFields[sourceBase + LAST_SEEN];
+			flows[base + IDLE_CHECK] = sourceFields[sourceBase + LAST_SEEN];
+		}
+		else
+		{
+			base = flow * FLOW_FIELDS;
+			flows[base + FIRST_SEEN] = Math.min(flows[base + FIRST_SEEN], sourceFields[sourceBase + FIRST_SEEN]);
+			flows[base + LAST_SEEN] = Math.max(flows[base + LAST_SEEN], sourceFields[sourceBase + LAST_SEEN]);
+		}
+
+		flows[base + PACKETS_0] += sourceFields[sourceBase + PACKETS_0];
+		flows[base + PACKETS_1] += sourceFields[sourceBase + PACKETS_1];
+		flows[base + BYTES_0] += sourceFields[sourceBase + BYTES_0];
+		flows[base + BYTES_1] += sourceFields[sourceBase + BYTES_1];
+		return flow;
+	}
+
+	private static int compare(long high0, long low0, int port0, long high1, long low1, int port1)
+	{
+		if (high0 != high1)
+			return (high0 < high1) ? -1 : 1;
+		if (low0 != low1)
+			return (low0 < low1) ? -1 : 1;
+		return (port0 < port1) ? -1 : ((port0 == port1) ? 0 : 1);
+	}
+
+	private static int hash(long high0, long low0, long high1, long low1, long info)
+	{
+		long h = (high0 ^ Long.rotateLeft(low0, 17)) * 0x9E3779B97F4A7C15L;
+		h = (h ^ high1 ^ Long.rotateLeft(low1, 31)) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ (info & KEY_INFO_MASK)) * 0x165667B19E3779F9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int lookup(long high0, long low0, long high1, long low1, long info, int hash)
+	{
+		int slot = hash & indexMask;
+		long entry;
+
+		while ((entry = index[slot]) != 0)
+		{
+			if ((int) (entry >>> 32) == hash)
+			{
+				int flow = (int) entry - 1;
+				int base = flow * FLOW_FIELDS;
+
+				if (flows[base + ADDRESS_LOW_0] == low0 && flows[base + ADDRESS_LOW_1] == low1
+						&& (flows[base + KEY_INFO] & KEY_INFO_MASK) == info
+						&& flows[base + ADDRESS_HIGH_0] == high0 && flows[base + ADDRESS_HIGH_1] == high1)
+					return flow;
+			}
+			slot = (slot + 1) & indexMask;
+		}
+		return NONE;
+	}
+
+	private int create(long high0, long low0, long high1, long low1, long info, int hash)
+	{
+		if (size == MAX_CAPACITY)
+			throw new IllegalStateException("flow table is full (" + size + " flows)");
+
+		if ((size + 1) * 2L > index.length)
+			growIndex();
+
+		int flow;
+
+		if (freeHead != NONE)
+		{
+			flow = freeHead;
+			freeHead = next(flow, AGE_LIST);
+		}
+		else
+		{
+			if (allocated * FLOW_FIELDS == flows.length)
+				growFlows();
+			flow = allocated++;
+		}
+
+		int base = flow * FLOW_FIELDS;
+
+		flows[base + ADDRESS_HIGH_0] = high0;
+		flows[base + ADDRESS_LOW_0] = low0;
+		flows[base + ADDRESS_HIGH_1] = high1;
+		flows[base + ADDRESS_LOW_1] = low1;
+		flows[base + KEY_INFO] = info;
+		flows[base + PACKETS_0] = 0;
+		flows[base + PACKETS_1] = 0;
+		flows[base + BYTES_0] = 0;
+		flows[base + BYTES_1] = 0;
+
+		int slot = hash & indexMask;
+
+		while (index[slot] != 0)
+			slot = (slot + 1) & indexMask;
+
+		index[slot] = ((long) hash << 32) | (flow + 1);
+
+		append(flow, IDLE_LIST);
+		append(flow, AGE_LIST);
+		size++;
+		return flow;
+	}
+
+	private int previous(int flow, int list)
+	{
+		return (int) (flows[flow * FLOW_FIELDS + IDLE_LINKS + list] >> 32);
+	}
+
+	private int next(int flow, int list)
+	{
+		return (int) flows[flow * FLOW_FIELDS + IDLE_LINKS + list];
+	}
+
+	private void setLinks(int flow, int list, int previous, int next)
+	{
+		flows[flow * FLOW_FIELDS + IDLE_LINKS + list] = ((long) previous << 32) | (next & 0xFFFFFFFFL);
+	}
+
+	private void setPrevious(int flow, int list, int previous)
+	{
+		setLinks(flow, list, previous, next(flow, list));
+	}
+
+	private void setNext(int flow, int list, int next)
+	{
+		setLinks(flow, list, previous(flow, list), next);
+	}
+
+	private void append(int flow, int list)
+	{
+		int tail = listTail[list];
+
+		setLinks(flow, list, tail, NONE);
+		if (tail != NONE)
+			setNext(tail, list, flow);
+		else
+			listHead[list] = flow;
+		listTail[list] = flow;
+	}
+
+	private void unlink(int flow, int list)
+	{
+		int previous = previous(flow, list);
+		int next = next(flow, list);
+
+		if (previous != NONE)
+			setNext(previous, list, next);
+		else
+			listHead[list] = next;
+
+		if (next != NONE)
+			setPrevious(next, list, previous);
+		else
+			listTail[list] = previous;
+	}
+
+	/**
+	 * Remove flows that have timed out at given time (called on each added packet)
+	 *
+	 * @param now
+	 * 		current packet time in nanoseconds
+	 */
+	public void expire(long now)
+	{
+		if (idleTimeout > 0)
+		{
+			int flow;
+
+			while ((flow = listHead[IDLE_LIST]) != NONE && now - flows[flow * FLOW_FIELDS + IDLE_CHECK] >= idleTimeout)
+			{
+				if (now - flows[flow * FLOW_FIELDS + LAST_SEEN] >= idleTimeout)
+					remove(flow, EXPIRED_IDLE);
+				else
+				{
+					// packets came since last check : check again one idle timeout later
+					flows[flow * FLOW_FIELDS + IDLE_CHECK] = now;
+					unlink(flow, IDLE_LIST);
+					append(flow, IDLE_LIST);
+				}
+			}
+		}
+		if (activeTimeout > 0)
+		{
+			int flow;
+
+			while ((flow = listHead[AGE_LIST]) != NONE && now - flows[flow * FLOW_FIELDS + FIRST_SEEN] >= activeTimeout)
+				remove(flow, EXPIRED_ACTIVE);
+		}
+	}
+
+	/**
+	 * Remove all flows, oldest first
+	 */
+	public void flush()
+	{
+		while (listHead[AGE_LIST] != NONE)
+			remove(listHead[AGE_LIST], FLUSHED);
+	}
+
+	private void remove(int flow, int reason)
+	{
+		if (listener != null)
+			listener.onFlowRemoved(this, flow, reason);
+
+		int base = flow * FLOW_FIELDS;
+		int hash = hash(flows[base + ADDRESS_HIGH_0], flows[base + ADDRESS_LOW_0], flows[base + ADDRESS_HIGH_1], flows[base + ADDRESS_LOW_1], flows[base + KEY_INFO]);
+
+		// find slot of flow then shift back following entries of the probe sequence
+		int slot = hash & indexMask;
+
+		while ((int) index[slot] != flow + 1)
+			slot = (slot + 1) & indexMask;
+
+		int next = slot;
+
+		while (true)
+		{
+			next = (next + 1) & indexMask;
+
+			long entry = index[next];
+
+			if (entry == 0)
+				break;
+
+			int home = (int) (entry >>> 32) & indexMask;
+
+			// entry stays if its home slot is cyclically in ]slot, next]
+			if ((slot <= next) ? (slot < home && home <= next) : (slot < home || home <= next))
+				continue;
+
+			index[slot] = entry;
+			slot = next;
+		}
+		index[slot] = 0;
+
+		unlink(flow, IDLE_LIST);
+		unlink(flow, AGE_LIST);
+
+		setLinks(flow, AGE_LIST, NONE, freeHead);
+		freeHead = flow;
+		size--;
+	}
+
+	/**
+	 * @return
+	 * 		number of flows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		flow seen first or NONE if table is empty (iterate with getNextFlow())
+	 */
+	public int getOldestFlow() {
+		return listHead[AGE_LIST];
+	}
+
+	/**
+	 * @param flow
+	 * @return
+	 * 		next flow in first seen order or NONE
+	 */
+	public int getNextFlow(int flow) {
+		return next(flow, AGE_LIST);
+	}
+
+	public int getVersion(int flow) {
+		return (int) (flows[flow * FLOW_FIELDS + KEY_INFO] >>> 8) & 0xFF;
+	}
+
+	public int getProtocol(int flow) {
+		return (int) flows[flow * FLOW_FIELDS + KEY_INFO] & 0xFF;
+	}
+
+	/**
+	 * @return
+	 * 		endpoint (0 or 1) which sent the first packet of the flow
+	 */
+	public int getInitiator(int flow) {
+		return ((flows[flow * FLOW_FIELDS + KEY_INFO] & INITIATOR_1) != 0) ? 1 : 0;
+	}
+
+	/**
+	 * @param endpoint
+	 * 		0 or 1
+	 * @return
+	 * 		high 64 bits of endpoint address (0 for IPv4)
+	 */
+	public long getAddressHigh(int flow, int endpoint) {
+		return flows[flow * FLOW_FIELDS + ((endpoint == 0) ? ADDRESS_HIGH_0 : ADDRESS_HIGH_1)];
+	}
+
+	/**
+	 * @param endpoint
+	 * 		0 or 1
+	 * @return
+	 * 		low 64 bits of endpoint address (unsigned IPv4 address)
+	 */
+	public long getAddressLow(int flow, int endpoint) {
+		return flows[flow * FLOW_FIELDS + ((endpoint == 0) ? ADDRESS_LOW_0 : ADDRESS_LOW_1)];
+	}
+
+	public int getPort(int flow, int endpoint) {
+		return (int) (flows[flow * FLOW_FIELDS + KEY_INFO] >>> ((endpoint == 0) ? 48 : 32)) & 0xFFFF;
+	}
+
+	/**
+	 * @return
+	 * 		number of packets sent by endpoint
+	 */
+	public long getPackets(int flow, int endpoint) {
+		return flows[flow * FLOW_FIELDS + ((endpoint == 0) ? PACKETS_0 : PACKETS_1)];
+	}
+
+	/**
+	 * @return
+	 * 		number of bytes sent by endpoint
+	 */
+	public long getBytes(int flow, int endpoint) {
+		return flows[flow * FLOW_FIELDS + ((endpoint == 0) ? BYTES_0 : BYTES_1)];
+	}
+
+	/**
+	 * @return
+	 * 		timestamp of first packet in nanoseconds
+	 */
+	public long getFirstSeen(int flow) {
+		return flows[flow * FLOW_FIELDS + FIRST_SEEN];
+	}
+
+	/**
+	 * @return
+	 * 		timestamp of last packet in nanoseconds
+	 */
+	public long getLastSeen(int flow) {
+		return flows[flow * FLOW_FIELDS + LAST_SEEN];
+	}
+}
@@ -0,0 +1,21 @@
+package fr.bmartel.pcapdecoder.flow;
+
+/**
+ * Receive flows removed from a FlowTable
+ *
+ */
+public interface IFlowListener {
+
+	/**
+	 * Called before a flow is removed : its fields can be read from table with flow id until this
+	 * method returns
+	 *
+	 * @param table
+	 * 		table the flow is removed from
+	 * @param flow
+	 * 		flow id
+	 * @param reason
+	 * 		FlowTable.EXPIRED_IDLE, FlowTable.EXPIRED_ACTIVE or FlowTable.FLUSHED
+	 */
+	public void onFlowRemoved(FlowTable table, int flow, int reason);
+}
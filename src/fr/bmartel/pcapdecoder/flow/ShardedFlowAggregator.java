@@ -0,0 +1,522 @@
+package fr.bmartel.pcapdecoder.flow;
+
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.dissector.PacketDissector;
+import fr.bmartel.pcapdecoder.pipeline.SpscRingBuffer;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Aggregate flows of a capture on several cores : packets are dissected by calling thread, then sent to one
+ * of N shards according to a hash of their flow key which is the same for both directions. Each shard owns
+ * a private FlowTable updated by its own thread, so all packets of a flow are counted by the same table
+ * without any lock.
+ *
+ * Packets move to shards in batches of primitive records over SpscRingBuffer queues. Batches are pooled
+ * per shard, so nothing is allocated per packet. Flow listener is called from shard threads and must be
+ * thread safe.
+ *
+ * With a flush interval, all shard tables are flushed each time packet time crosses a multiple of the
+ * interval, every flow of the period being given to the listener. Otherwise flows stay in shard tables
+ * until they time out, and are gathered after aggregate() with merge() or flush().
+ *
+ */
+public class ShardedFlowAggregator {
+
+	public final static int DEFAULT_BATCH_SIZE = 256;
+
+	public final static int DEFAULT_QUEUE_CAPACITY = 64;
+
+	private final FlowTable[] tables;
+
+	private final PacketDissector dissector;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	private long flushInterval = 0;
+
+	/**
+	 * set when a shard fails or when dispatching fails
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * first error raised by a shard thread
+	 */
+	private volatile RuntimeException failure = null;
+
+	/**
+	 * packets sent at once to a shard
+	 */
+	private static class RecordBatch {
+
+		/**
+		 * IP version << 8 | protocol
+		 */
+		private final int[] info;
+
+		/**
+		 * source port << 16 | destination port
+		 */
+		private final int[] ports;
+
+		private final long[] sourceHigh;
+
+		private final long[] sourceLow;
+
+		private final long[] destinationHigh;
+
+		private final long[] destinationLow;
+
+		private final long[] timestamps;
+
+		/**
+		 * number of captured packets (fragments of a reassembled datagram)
+		 */
+		private final int[] packets;
+
+		private final long[] lengths;
+
+		private int count = 0;
+
+		/**
+		 * true if shard table must be flushed after records
+		 */
+		private boolean flush = false;
+
+		private long flushTime = 0;
+
+		private RecordBatch(int size)
+		{
+			info = new int[size];
+			ports = new int[size];
+			sourceHigh = new long[size];
+			sourceLow = new long[size];
+			destinationHigh = new long[size];
+			destinationLow = new long[size];
+			timestamps = new long[size];
+			packets = new int[size];
+			lengths = new long[size];
+		}
+	}
+
+	/**
+	 * flow table with its thread and queues
+	 */
+	private class Shard implements Runnable {
+
+		private final FlowTable table;
+
+		/**
+		 * batches filled by calling thread
+		 */
+		private SpscRingBuffer<RecordBatch> records;
+
+		/**
+		 * batches given back by shard thread
+		 */
+		private SpscRingBuffer<RecordBatch> pool;
+
+		/**
+		 * batch being filled by calling thread
+		 */
+		private RecordBatch current;
+
+		private Shard(FlowTable table)
+		{
+			this.table = table;
+		}
+
+		private void open()
+		{
+			records = new SpscRingBuffer<RecordBatch>(queueCapacity);
+			pool = new SpscRingBuffer<RecordBatch>(queueCapacity + 2);
+
+			// queue capacity batches waiting, one being applied by shard and one being filled
+			for (int i = 0; i < queueCapacity + 1; i++)
+				pool.offer(new RecordBatch(batchSize));
+
+			current = new RecordBatch(batchSize);
+		}
+
+		/**
+		 * Add a packet to current batch (calling thread)
+		 *
+		 * @return
+		 * 		false if aggregation has been stopped
+		 */
+		private boolean add(FlowKey key, long timestamp, int packets, long length)
+		{
+			RecordBatch batch = current;
+			int i = batch.count++;
+
+			batch.info[i] = (key.getVersion() << 8) | key.getProtocol();
+			batch.ports[i] = (key.getSourcePort() << 16) | key.getDestinationPort();
+			batch.sourceHigh[i] = key.getSourceHigh();
+			batch.sourceLow[i] = key.getSourceLow();
+			batch.destinationHigh[i] = key.getDestinationHigh();
+			batch.destinationLow[i] = key.getDestinationLow();
+			batch.timestamps[i] = timestamp;
+			batch.packets[i] = packets;
+			batch.lengths[i] = length;
+
+			if (batch.count == batchSize)
+				return publish();
+
+			return true;
+		}
+
+		/**
+		 * Send current batch to shard thread and take an empty one from pool, waiting while queue is full
+		 * (calling thread)
+		 *
+		 * @return
+		 * 		false if aggregation has been stopped while waiting
+		 */
+		private boolean publish()
+		{
+			int attempt = 0;
+
+			while (!records.offer(current))
+			{
+				if (stopped)
+					return false;
+				SpscRingBuffer.idle(attempt++);
+			}
+
+			attempt = 0;
+
+			while ((current = pool.poll()) == null)
+			{
+				if (stopped)
+					return false;
+				SpscRingBuffer.idle(attempt++);
+			}
+			current.count = 0;
+			current.flush = false;
+			return true;
+		}
+
+		/**
+		 * Shard thread
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				RecordBatch batch;
+
+				while ((batch = take()) != null)
+				{
+					apply(batch);
+					pool.offer(batch);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				fail(e);
+			}
+		}
+
+		/**
+		 * Take next batch, waiting while queue is empty
+		 *
+		 * @return
+		 * 		null when queue is closed and empty or aggregation has been stopped
+		 */
+		private RecordBatch take()
+		{
+			int attempt = 0;
+
+			while (!stopped)
+			{
+				RecordBatch batch = records.poll();
+
+				if (batch != null)
+					return batch;
+
+				if (records.isClosed())
+					return records.poll();
+
+				SpscRingBuffer.idle(attempt++);
+			}
+			return null;
+		}
+
+		private void apply(RecordBatch batch)
+		{
+			for (int i = 0; i < batch.count; i++)
+			{
+				int info = batch.info[i];
+				int ports = batch.ports[i];
+
+				table.add(info >>> 8, info & 0xFF, batch.sourceHigh[i], batch.sourceLow[i], ports >>> 16,
+						batch.destinationHigh[i], batch.destinationLow[i], ports & 0xFFFF, batch.timestamps[i], batch.packets[i],
+						batch.lengths[i]);
+			}
+			if (batch.flush)
+			{
+				table.expire(batch.flushTime);
+				table.flush();
+			}
+		}
+	}
+
+	private final Shard[] shards;
+
+	/**
+	 * @param shardCount
+	 * 		number of shards (and of threads)
+	 */
+	public ShardedFlowAggregator(int shardCount)
+	{
+		this(shardCount, new PacketDissector());
+	}
+
+	/**
+	 * @param shardCount
+	 * 		number of shards (and of threads)
+	 * @param dissector
+	 * 		dissector used to decode packets (to register other link types)
+	 */
+	public ShardedFlowAggregator(int shardCount, PacketDissector dissector)
+	{
+		if (shardCount <= 0)
+			throw new IllegalArgumentException("shard count must be positive");
+
+		this.dissector = dissector;
+		tables = new FlowTable[shardCount];
+		shards = new Shard[shardCount];
+
+		for (int i = 0; i < shardCount; i++)
+		{
+			tables[i] = new FlowTable();
+			shards[i] = new Shard(tables[i]);
+		}
+	}
+
+	public int getShardCount() {
+		return tables.length;
+	}
+
+	/**
+	 * @param shard
+	 * 		shard index
+	 * @return
+	 * 		flow table of the shard
+	 */
+	public FlowTable getTable(int shard) {
+		return tables[shard];
+	}
+
+	public PacketDissector getDissector() {
+		return dissector;
+	}
+
+	/**
+	 * @param idleTimeout
+	 * 		idle timeout of all shard tables in nanoseconds (0 to disable)
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		for (int i = 0; i < tables.length; i++)
+			tables[i].setIdleTimeout(idleTimeout);
+	}
+
+	/**
+	 * @param activeTimeout
+	 * 		active timeout of all shard tables in nanoseconds (0 to disable)
+	 */
+	public void setActiveTimeout(long activeTimeout) {
+		for (int i = 0; i < tables.length; i++)
+			tables[i].setActiveTimeout(activeTimeout);
+	}
+
+	/**
+	 * @param listener
+	 * 		listener of all shard tables, called from shard threads
+	 */
+	public void setFlowListener(IFlowListener listener) {
+		for (int i = 0; i < tables.length; i++)
+			tables[i].setFlowListener(listener);
+	}
+
+	/**
+	 * @param batchSize
+	 * 		number of packets sent at once to a shard
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("batch size must be positive");
+
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param queueCapacity
+	 * 		number of batches waiting for each shard
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity <= 0)
+			throw new IllegalArgumentException("queue capacity must be positive");
+
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * @param flushInterval
+	 * 		interval in nanoseconds of packet time between two flushes of all shard tables (0 to disable)
+	 */
+	public void setFlushInterval(long flushInterval) {
+		if (flushInterval < 0)
+			throw new IllegalArgumentException("flush interval must not be negative");
+
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Add all packets of a capture (byte array or mapped file source). Returns when all shards have counted
+	 * all packets.
+	 *
+	 * @param decoder
+	 * @throws DecodeException
+	 */
+	public void aggregate(PcapDecoder decoder) throws DecodeException
+	{
+		stopped = false;
+		failure = null;
+
+		Thread[] threads = new Thread[shards.length];
+
+		for (int i = 0; i < shards.length; i++)
+		{
+			shards[i].open();
+			threads[i] = new Thread(shards[i], "pcap-flow-shard-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		boolean complete = false;
+
+		try
+		{
+			dispatch(decoder);
+			complete = true;
+		}
+		finally
+		{
+			if (!complete)
+				stopped = true;
+
+			for (int i = 0; i < shards.length; i++)
+				shards[i].records.close();
+
+			try
+			{
+				for (int i = 0; i < threads.length; i++)
+					threads[i].join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	private void fail(RuntimeException e)
+	{
+		if (failure == null)
+			failure = e;
+
+		stopped = true;
+	}
+
+	/**
+	 * Dissect packets and send them to shards (calling thread)
+	 */
+	private void dispatch(PcapDecoder decoder) throws DecodeException
+	{
+		EnhancedPacketView view = new EnhancedPacketView();
+		FlowKey key = new FlowKey();
+		long nextFlush = Long.MIN_VALUE;
+		int shardCount = shards.length;
+
+		while (!stopped && decoder.nextEnhancedPacket(view))
+		{
+			long timestamp = decoder.getSectionContext().toNanos(view.getInterfaceId(), view.getTimeStampValue());
+
+			// fragments held by defragmenter are counted with the fragment completing their datagram
+			if (!dissector.dissect(view, timestamp) || !key.set(dissector))
+				continue;
+
+			if (flushInterval > 0 && timestamp >= nextFlush)
+			{
+				if (nextFlush != Long.MIN_VALUE && !flushShards(timestamp))
+					return;
+
+				long period = timestamp / flushInterval;
+
+				if (timestamp % flushInterval < 0)
+					period--;
+				nextFlush = (period + 1) * flushInterval;
+			}
+
+			// multiply-shift keeps shards balanced for any shard count
+			int shard = (int) (((key.symmetricHash() >>> 32) * shardCount) >>> 32);
+
+			if (!shards[shard].add(key, timestamp, dissector.getPacketCount(), dissector.getPacketBytes()))
+				return;
+		}
+
+		for (int i = 0; i < shardCount; i++)
+		{
+			if (shards[i].current.count > 0 && !shards[i].publish())
+				return;
+		}
+	}
+
+	/**
+	 * Send pending packets of all shards with a flush request
+	 */
+	private boolean flushShards(long timestamp)
+	{
+		for (int i = 0; i < shards.length; i++)
+		{
+			shards[i].current.flush = true;
+			shards[i].current.flushTime = timestamp;
+
+			if (!shards[i].publish())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Add flows of all shard tables to a table (after aggregate() has returned)
+	 *
+	 * @param target
+	 * 		table receiving flows
+	 */
+	public void merge(FlowTable target)
+	{
+		for (int i = 0; i < tables.length; i++)
+		{
+			for (int flow = tables[i].getOldestFlow(); flow != FlowTable.NONE; flow = tables[i].getNextFlow(flow))
+				target.merge(tables[i], flow);
+		}
+	}
+
+	/**
+	 * Flush all shard tables from calling thread (after aggregate() has returned)
+	 */
+	public void flush()
+	{
+		for (int i = 0; i < tables.length; i++)
+			tables[i].flush();
+	}
+}
@@ -0,0 +1,712 @@
+package fr.bmartel.pcapdecoder.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import fr.bmartel.pcapdecoder.constant.LinkType;
+import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+
+/**
+ * Write synthetic PCAP NG captures used as load / benchmark fixtures
+ *
+ * Each section contains a section header block, interfaceCount interface description blocks, an
+ * optional name resolution block, packets (enhanced packet blocks spread over all interfaces) and an
+ * interface statistics block per interface. Packets are Ethernet / IPv4 / UDP frames between a fixed
+ * set of hosts (which are the ones listed in name resolution blocks) with random payload.
+ *
+ * Output only depends on settings and seed. Payloads are copied from a random pool generated once,
+ * so generation speed is bound by disk throughput.
+ *
+ */
+public class CaptureGenerator {
+
+	/**
+	 * Distribution of captured packet sizes
+	 */
+	public enum SizeDistribution {
+
+		/**
+		 * all packets have minimum packet size
+		 */
+		FIXED,
+
+		/**
+		 * uniform between minimum and maximum packet size
+		 */
+		UNIFORM,
+
+		/**
+		 * simple IMIX : 7 x 64 bytes, 4 x 576 bytes and 1 x 1500 bytes (clamped to min / max)
+		 */
+		IMIX
+	}
+
+	private final static int BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private final static int POOL_SIZE = 1024 * 1024;
+
+	/**
+	 * maximum captured packet size
+	 */
+	public final static int MAX_PACKET_SIZE = 256 * 1024;
+
+	/**
+	 * Ethernet + IPv4 + UDP headers
+	 */
+	private final static int HEADERS_LENGTH = 42;
+
+	/**
+	 * number of distinct hosts used in packets
+	 */
+	private final static int HOST_COUNT = 1024;
+
+	private final static byte[] COMMENT = "synthetic packet".getBytes(StandardCharsets.US_ASCII);
+
+	private long seed = 0;
+
+	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+	private boolean alternateByteOrder = false;
+
+	private int sectionCount = 1;
+
+	private int interfaceCount = 1;
+
+	private long packetCount = 1000;
+
+	private long targetSize = 0;
+
+	private SizeDistribution sizeDistribution = SizeDistribution.UNIFORM;
+
+	private int minPacketSize = 64;
+
+	private int maxPacketSize = 1514;
+
+	private double optionDensity = 0.1;
+
+	private int nameRecordCount = 0;
+
+	private boolean statistics = true;
+
+	private long startTime = 1500000000L * 1000000000L;
+
+	private int meanInterval = 100000;
+
+	private Random random;
+
+	private byte[] pool;
+
+	private ByteBuffer out;
+
+	private WritableByteChannel channel;
+
+	private long written;
+
+	/**
+	 * current time in nanoseconds
+	 */
+	private long clock;
+
+	private final byte[] headers = new byte[HEADERS_LENGTH];
+
+	/**
+	 * @param seed
+	 * 		random seed (same seed and settings give the same capture)
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param byteOrder
+	 * 		byte order of sections (little endian by default)
+	 */
+	public void setByteOrder(ByteOrder byteOrder) {
+		this.byteOrder = byteOrder;
+	}
+
+	/**
+	 * @param alternateByteOrder
+	 * 		if true, odd sections use the byte order opposite to getByteOrder()
+	 */
+	public void setAlternateByteOrder(boolean alternateByteOrder) {
+		this.alternateByteOrder = alternateByteOrder;
+	}
+
+	public void setSectionCount(int sectionCount) {
+		if (sectionCount <= 0)
+			throw new IllegalArgumentException("section count must be positive");
+
+		this.sectionCount = sectionCount;
+	}
+
+	public void setInterfaceCount(int interfaceCount) {
+		if (interfaceCount <= 0)
+			throw new IllegalArgumentException("interface count must be positive");
+
+		this.interfaceCount = interfaceCount;
+	}
+
+	/**
+	 * @param packetCount
+	 * 		number of packets per section (used when no target size is set)
+	 */
+	public void setPacketCount(long packetCount) {
+		if (packetCount < 0)
+			throw new IllegalArgumentException("packet count must be positive");
+
+		this.packetCount = packetCount;
+	}
+
+	/**
+	 * @param targetSize
+	 * 		approximate file size in bytes (0 to use packet count instead)
+	 */
+	public void setTargetSize(long targetSize) {
+		if (targetSize < 0)
+			throw new IllegalArgumentException("target size must be positive");
+
+		this.targetSize = targetSize;
+	}
+
+	public void setSizeDistribution(SizeDistribution sizeDistribution) {
+		this.sizeDistribution = sizeDistribution;
+	}
+
+	/**
+	 * @param minPacketSize
+	 * 		minimum captured length
+	 * @param maxPacketSize
+	 * 		maximum captured length (up to MAX_PACKET_SIZE)
+	 */
+	public void setPacketSize(int minPacketSize, int maxPacketSize) {
+		if (minPacketSize < 0 || maxPacketSize < minPacketSize || maxPacketSize > MAX_PACKET_SIZE)
+			throw new IllegalArgumentException("invalid packet size range " + minPacketSize + "-" + maxPacketSize);
+
+		this.minPacketSize = minPacketSize;
+		this.maxPacketSize = maxPacketSize;
+	}
+
+	/**
+	 * @param optionDensity
+	 * 		probability for a packet to have options. When 0, no block has options, otherwise section
+	 * 		header, interface description and interface statistics blocks always have options
+	 */
+	public void setOptionDensity(double optionDensity) {
+		if (optionDensity < 0 || optionDensity > 1)
+			throw new IllegalArgumentException("option density must be between 0 and 1");
+
+		this.optionDensity = optionDensity;
+	}
+
+	/**
+	 * @param nameRecordCount
+	 * 		number of records of the name resolution block written in each section (0 for none)
+	 */
+	public void setNameRecordCount(int nameRecordCount) {
+		if (nameRecordCount < 0)
+			throw new IllegalArgumentException("name record count must be positive");
+
+		this.nameRecordCount = nameRecordCount;
+	}
+
+	/**
+	 * @param statistics
+	 * 		write an interface statistics block per interface at the end of each section
+	 */
+	public void setStatistics(boolean statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param startTime
+	 * 		timestamp of first packet in nanoseconds since epoch
+	 */
+	public void setStartTime(long startTime) {
+		this.startTime = startTime;
+	}
+
+	/**
+	 * @param meanInterval
+	 * 		mean time between two packets in nanoseconds
+	 */
+	public void setMeanInterval(int meanInterval) {
+		if (meanInterval < 0)
+			throw new IllegalArgumentException("mean interval must be positive");
+
+		this.meanInterval = meanInterval;
+	}
+
+	/**
+	 * Write capture to a file (replaced if it exists)
+	 *
+	 * @param path
+	 * @return
+	 * 		number of bytes written
+	 * @throws IOException
+	 */
+	public long generate(Path path) throws IOException
+	{
+		FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		try
+		{
+			return generate(fileChannel);
+		}
+		finally
+		{
+			fileChannel.close();
+		}
+	}
+
+	/**
+	 * Write capture to a channel (channel is not closed)
+	 *
+	 * @param channel
+	 * @return
+	 * 		number of bytes written
+	 * @throws IOException
+	 */
+	public long generate(WritableByteChannel channel) throws IOException
+	{
+		this.channel = channel;
+		this.random = new Random(seed);
+		this.pool = new byte[POOL_SIZE + MAX_PACKET_SIZE];
+		this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.written = 0;
+		this.clock = startTime;
+
+		random.nextBytes(pool);
+
+		try
+		{
+			for (int section = 0; section < sectionCount;section++)
+			{
+				ByteOrder order = byteOrder;
+
+				if (alternateByteOrder && (section % 2) == 1)
+					order = (byteOrder == ByteOrder.BIG_ENDIAN) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+				writeSection(order);
+			}
+			flush();
+		}
+		finally
+		{
+			this.channel = null;
+			this.pool = null;
+			this.out = null;
+		}
+		return written;
+	}
+
+	private void writeSection(ByteOrder order) throws IOException
+	{
+		out.order(order);
+
+		long sectionStart = written + out.position();
+		boolean options = optionDensity > 0;
+
+		writeSectionHeader(options);
+
+		for (int i = 0; i < interfaceCount;i++)
+			writeInterfaceDescription(i, options);
+
+		if (nameRecordCount > 0)
+			writeNameResolution();
+
+		long[] received = new long[interfaceCount];
+		long sectionStartTime = clock;
+
+		if (targetSize > 0)
+		{
+			long sectionSize = targetSize / sectionCount;
+
+			while (written + out.position() - sectionStart < sectionSize)
+				received[writePacket()]++;
+		}
+		else
+		{
+			for (long i = 0; i < packetCount;i++)
+				received[writePacket()]++;
+		}
+
+		if (statistics)
+		{
+			for (int i = 0; i < interfaceCount;i++)
+				writeInterfaceStatistics(i, sectionStartTime, received[i], options);
+		}
+	}
+
+	/**
+	 * timestamp resolution of interface : odd interfaces use nanoseconds, even interfaces use default
+	 * microseconds (when options are written)
+	 */
+	private static boolean isNanosecondInterface(int interfaceId, boolean options)
+	{
+		return options && (interfaceId % 2) == 1;
+	}
+
+	private void writeSectionHeader(boolean options) throws IOException
+	{
+		ensure(256);
+
+		int start = startBlock(BlockTypes.SECTION_HEADER_BLOCK.getCode());
+
+		// magic is written in section byte order
+		out.putInt(MagicNumber.MAGIC_NUMBER);
+		out.putShort((short) 1);
+		out.putShort((short) 0);
+		out.putLong(-1);
+
+		if (options)
+		{
+			putOption(2, "synthetic hardware".getBytes(StandardCharsets.US_ASCII));
+			putOption(3, "synthetic os".getBytes(StandardCharsets.US_ASCII));
+			putOption(4, "CaptureGenerator".getBytes(StandardCharsets.US_ASCII));
+			putEndOfOptions();
+		}
+		endBlock(start);
+	}
+
+	private void writeInterfaceDescription(int interfaceId, boolean options) throws IOException
+	{
+		ensure(256);
+
+		int start = startBlock(BlockTypes.INTERFACE_DESCRIPTION_BLOCK.getCode());
+
+		out.putShort((short) LinkType.ETHERNET.getCode());
+		out.putShort((short) 0);
+		out.putInt(MAX_PACKET_SIZE);
+
+		if (options)
+		{
+			putOption(2, ("eth" + interfaceId).getBytes(StandardCharsets.US_ASCII));
+			putOption(3, "synthetic interface".getBytes(StandardCharsets.US_ASCII));
+			putOption(9, new byte[] { (byte) (isNanosecondInterface(interfaceId, options) ? 9 : 6) });
+			putEndOfOptions();
+		}
+		endBlock(start);
+	}
+
+	private void writeNameResolution() throws IOException
+	{
+		int start = -1;
+
+		for (int i = 0; i < nameRecordCount;i++)
+		{
+			byte[] name = ("host" + (i % HOST_COUNT) + ".example.com").getBytes(StandardCharsets.US_ASCII);
+
+			// records can't be split : block is written at once
+			if (start < 0)
+			{
+				ensure(Math.min(BUFFER_SIZE, 64 + nameRecordCount * 64));
+				start = startBlock(BlockTypes.NAME_RESOLUTION_BLOCK.getCode());
+			}
+			else if (out.remaining() < 128)
+			{
+				// block too big for buffer : start a new name resolution block
+				out.putShort((short) 0);
+				out.putShort((short) 0);
+				endBlock(start);
+				ensure(BUFFER_SIZE);
+				start = startBlock(BlockTypes.NAME_RESOLUTION_BLOCK.getCode());
+			}
+
+			if ((i % 2) == 0)
+			{
+				// nrb_record_ipv4
+				out.putShort((short) 1);
+				out.putShort((short) (4 + name.length + 1));
+				putHostAddress(i % HOST_COUNT);
+			}
+			else
+			{
+				// nrb_record_ipv6
+				out.putShort((short) 2);
+				out.putShort((short) (16 + name.length + 1));
+				out.put((byte) 0x20);
+				out.put((byte) 0x01);
+				out.put((byte) 0x0D);
+				out.put((byte) 0xB8);
+				for (int j = 0; j < 10;j++)
+					out.put((byte) 0);
+				out.put((byte) ((i % HOST_COUNT) >> 8));
+				out.put((byte) (i % HOST_COUNT));
+			}
+			out.put(name);
+			out.put((byte) 0);
+			pad();
+		}
+
+		// nrb_record_end
+		out.putShort((short) 0);
+		out.putShort((short) 0);
+		endBlock(start);
+	}
+
+	/**
+	 * @return
+	 * 		interface id of packet
+	 */
+	private int writePacket() throws IOException
+	{
+		int interfaceId = (interfaceCount == 1) ? 0 : random.nextInt(interfaceCount);
+		int size = nextPacketSize();
+		boolean options = optionDensity > 0 && random.nextDouble() < optionDensity;
+
+		clock += (meanInterval == 0) ? 0 : random.nextInt(2 * meanInterval + 1);
+
+		long timestamp = isNanosecondInterface(interfaceId, optionDensity > 0) ? clock : clock / 1000;
+
+		ensure(size + 128);
+
+		int start = startBlock(BlockTypes.ENHANCES_PACKET_BLOCK.getCode());
+
+		out.putInt(interfaceId);
+		out.putInt((int) (timestamp >>> 32));
+		out.putInt((int) timestamp);
+		out.putInt(size);
+		out.putInt(size);
+
+		int offset = random.nextInt(POOL_SIZE);
+
+		if (size >= HEADERS_LENGTH)
+		{
+			fillHeaders(size);
+			out.put(headers, 0, HEADERS_LENGTH);
+			out.put(pool, offset, size - HEADERS_LENGTH);
+		}
+		else
+		{
+			out.put(pool, offset, size);
+		}
+		pad();
+
+		if (options)
+		{
+			// epb_flags : inbound, unicast
+			putOption(2, 4);
+			out.putInt(0x00000005);
+			putOption(1, COMMENT);
+			// epb_dropcount
+			putOption(4, 8);
+			out.putLong(0);
+			putEndOfOptions();
+		}
+		endBlock(start);
+
+		return interfaceId;
+	}
+
+	private int nextPacketSize()
+	{
+		switch (sizeDistribution)
+		{
+			case FIXED:
+				return minPacketSize;
+			case IMIX:
+			{
+				int draw = random.nextInt(12);
+				int size = (draw < 7) ? 64 : ((draw < 11) ? 576 : 1500);
+				return Math.max(minPacketSize, Math.min(maxPacketSize, size));
+			}
+			default:
+				return minPacketSize + random.nextInt(maxPacketSize - minPacketSize + 1);
+		}
+	}
+
+	/**
+	 * Build Ethernet / IPv4 / UDP headers (network byte order) of a packet of given size
+	 */
+	private void fillHeaders(int size)
+	{
+		int source = random.nextInt(HOST_COUNT);
+		int destination = random.nextInt(HOST_COUNT);
+
+		// Ethernet
+		for (int i = 0; i < 2;i++)
+		{
+			int host = (i == 0) ? destination : source;
+			int base = i * 6;
+			headers[base] = 0x02;
+			headers[base + 1] = 0x00;
+			headers[base + 2] = 0x00;
+			headers[base + 3] = 0x00;
+			headers[base + 4] = (byte) (host >> 8);
+			headers[base + 5] = (byte) host;
+		}
+		headers[12] = 0x08;
+		headers[13] = 0x00;
+
+		// IPv4
+		int ipLength = size - 14;
+		headers[14] = 0x45;
+		headers[15] = 0;
+		headers[16] = (byte) (ipLength >> 8);
+		headers[17] = (byte) ipLength;
+		headers[18] = 0;
+		headers[19] = 0;
+		headers[20] = 0x40;
+		headers[21] = 0;
+		headers[22] = 64;
+		headers[23] = 17;
+		headers[24] = 0;
+		headers[25] = 0;
+		putHostAddress(headers, 26, source);
+		putHostAddress(headers, 30, destination);
+
+		int checksum = 0;
+		for (int i = 14; i < 34;i += 2)
+			checksum += ((headers[i] & 0xFF) << 8) | (headers[i + 1] & 0xFF);
+		while ((checksum >> 16) != 0)
+			checksum = (checksum & 0xFFFF) + (checksum >> 16);
+		checksum = ~checksum & 0xFFFF;
+		headers[24] = (byte) (checksum >> 8);
+		headers[25] = (byte) checksum;
+
+		// UDP (no checksum)
+		int sourcePort = 1024 + source;
+		int destinationPort = 5000 + (destination % 16);
+		int udpLength = ipLength - 20;
+		headers[34] = (byte) (sourcePort >> 8);
+		headers[35] = (byte) sourcePort;
+		headers[36] = (byte) (destinationPort >> 8);
+		headers[37] = (byte) destinationPort;
+		headers[38] = (byte) (udpLength >> 8);
+		headers[39] = (byte) udpLength;
+		headers[40] = 0;
+		headers[41] = 0;
+	}
+
+	/**
+	 * IPv4 address of host : 10.0.x.y
+	 */
+	private static void putHostAddress(byte[] array, int offset, int host)
+	{
+		array[offset] = 10;
+		array[offset + 1] = 0;
+		array[offset + 2] = (byte) (host >> 8);
+		array[offset + 3] = (byte) host;
+	}
+
+	private void putHostAddress(int host)
+	{
+		out.put((byte) 10);
+		out.put((byte) 0);
+		out.put((byte) (host >> 8));
+		out.put((byte) host);
+	}
+
+	private void writeInterfaceStatistics(int interfaceId, long sectionStartTime, long received, boolean options) throws IOException
+	{
+		ensure(256);
+
+		boolean nanoseconds = isNanosecondInterface(interfaceId, options);
+		long timestamp = nanoseconds ? clock : clock / 1000;
+
+		int start = startBlock(BlockTypes.INTERFACE_STATISTICS_BLOCK.getCode());
+
+		out.putInt(interfaceId);
+		out.putInt((int) (timestamp >>> 32));
+		out.putInt((int) timestamp);
+
+		if (options)
+		{
+			long startTimestamp = nanoseconds ? sectionStartTime : sectionStartTime / 1000;
+
+			// isb_starttime / isb_endtime
+			putOption(2, 8);
+			out.putInt((int) (startTimestamp >>> 32));
+			out.putInt((int) startTimestamp);
+			putOption(3, 8);
+			out.putInt((int) (timestamp >>> 32));
+			out.putInt((int) timestamp);
+			// isb_ifrecv / isb_ifdrop
+			putOption(4, 8);
+			out.putLong(received);
+			putOption(5, 8);
+			out.putLong(0);
+			putEndOfOptions();
+		}
+		endBlock(start);
+	}
+
+	/**
+	 * Write block type and a placeholder for block total length
+	 *
+	 * @return
+	 * 		position of block in buffer
+	 */
+	private int startBlock(int type)
+	{
+		int start = out.position();
+		out.putInt(type);
+		out.putInt(0);
+		return start;
+	}
+
+	/**
+	 * Write trailing block total length and update the leading one
+	 */
+	private void endBlock(int start)
+	{
+		int length = out.position() - start + 4;
+		out.putInt(length);
+		out.putInt(start + 4, length);
+	}
+
+	private void putOption(int code, int length)
+	{
+		out.putShort((short) code);
+		out.putShort((short) length);
+	}
+
+	private void putOption(int code, byte[] value)
+	{
+		putOption(code, value.length);
+		out.put(value);
+		pad();
+	}
+
+	private void putEndOfOptions()
+	{
+		out.putShort((short) 0);
+		out.putShort((short) 0);
+	}
+
+	/**
+	 * pad buffer to 32 bits
+	 */
+	private void pad()
+	{
+		while ((out.position() & 3) != 0)
+			out.put((byte) 0);
+	}
+
+	/**
+	 * Make sure length bytes can be added to buffer (buffer starts at a 32 bit boundary after flush)
+	 */
+	private void ensure(int length) throws IOException
+	{
+		if (out.remaining() < length)
+			flush();
+	}
+
+	private void flush() throws IOException
+	{
+		out.flip();
+		while (out.hasRemaining())
+			written += channel.write(out);
+		out.clear();
+	}
+}
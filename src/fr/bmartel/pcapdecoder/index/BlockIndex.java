@@ -0,0 +1,715 @@
+package fr.bmartel.pcapdecoder.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+
+/**
+ * Offset index of all blocks of a capture
+ *
+ * For each block the index keeps file offset, block type, interface id and timestamp in nanoseconds
+ * since epoch (packet blocks and interface statistics blocks only) in primitive columns. Packets
+ * (enhanced, simple and obsolete packet blocks) are numbered in file order so that packet N is found
+ * without decoding anything.
+ *
+ * Sidecar file layout (big endian) :
+ *
+ * <pre>
+ * header        : magic, version, end offset (8 bytes), block count, packet count, section count, flags
+ * offsets       : long x block count
+ * timestamps    : long x block count
+ * section start : long x section count
+ * block types   : int  x block count
+ * interface ids : int  x block count
+ * packets       : int  x packet count (index of packet block in block columns)
+ * section order : int  x section count (1 for big endian)
+ * </pre>
+ *
+ * Each column is mapped separately when index is loaded, so only pages actually read are loaded in
+ * memory. A mapping is limited to 2GB, so columns are mapped in windows of at most 2^27 values.
+ *
+ * When packet timestamps are in chronological order (FLAG_TIME_SORTED), the first packet of a time
+ * range is found with a binary search. Otherwise packets are grouped by CHECKPOINT_INTERVAL and the
+ * minimum and maximum timestamps of each group are kept in memory, built on first range lookup. Groups
+ * out of a time range are skipped without reading their timestamps.
+ *
+ */
+public class BlockIndex {
+
+	/**
+	 * "PIDX"
+	 */
+	public final static int MAGIC = 0x50494458;
+
+	public final static int VERSION = 2;
+
+	public final static int HEADER_LENGTH = 32;
+
+	/**
+	 * value of interface id column for blocks not related to an interface
+	 */
+	public final static int NO_INTERFACE = -1;
+
+	/**
+	 * value of timestamp column for blocks without timestamp
+	 */
+	public final static long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	/**
+	 * all packets have a timestamp and packet timestamps never decrease
+	 */
+	public final static int FLAG_TIME_SORTED = 1;
+
+	/**
+	 * number of packets of a time checkpoint (unsorted index)
+	 */
+	public final static int CHECKPOINT_INTERVAL = 1024;
+
+	/**
+	 * number of values of a column window is 1 << WINDOW_SHIFT (1GB of longs)
+	 */
+	private final static int WINDOW_SHIFT = 27;
+
+	private final static int WINDOW_MASK = (1 << WINDOW_SHIFT) - 1;
+
+	/**
+	 * Column of long values split in windows of 1 << WINDOW_SHIFT values
+	 */
+	static class LongColumn {
+
+		private final LongBuffer[] windows;
+
+		private final int length;
+
+		private LongColumn(LongBuffer[] windows, int length)
+		{
+			this.windows=windows;
+			this.length=length;
+		}
+
+		/**
+		 * @param values
+		 * 		all values of column (not copied)
+		 */
+		static LongColumn wrap(LongBuffer values)
+		{
+			int length = values.limit();
+			LongBuffer[] windows = new LongBuffer[windowCount(length)];
+
+			for (int i = 0; i < windows.length;i++)
+			{
+				values.limit((int) Math.min(length, (long) (i + 1) << WINDOW_SHIFT));
+				values.position(i << WINDOW_SHIFT);
+				windows[i] = values.slice();
+			}
+			values.clear();
+
+			return new LongColumn(windows, length);
+		}
+
+		static LongColumn map(FileChannel channel, long position, int length) throws IOException
+		{
+			LongBuffer[] windows = new LongBuffer[windowCount(length)];
+
+			for (int i = 0; i < windows.length;i++)
+			{
+				int count = Math.min(length - (i << WINDOW_SHIFT), 1 << WINDOW_SHIFT);
+
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count).asLongBuffer();
+				position += 8L * count;
+			}
+			return new LongColumn(windows, length);
+		}
+
+		long get(int index) {
+			return windows[index >>> WINDOW_SHIFT].get(index & WINDOW_MASK);
+		}
+
+		int length() {
+			return length;
+		}
+	}
+
+	/**
+	 * Column of int values split in windows of 1 << WINDOW_SHIFT values
+	 */
+	static class IntColumn {
+
+		private final IntBuffer[] windows;
+
+		private final int length;
+
+		private IntColumn(IntBuffer[] windows, int length)
+		{
+			this.windows=windows;
+			this.length=length;
+		}
+
+		/**
+		 * @param values
+		 * 		all values of column (not copied)
+		 */
+		static IntColumn wrap(IntBuffer values)
+		{
+			int length = values.limit();
+			IntBuffer[] windows = new IntBuffer[windowCount(length)];
+
+			for (int i = 0; i < windows.length;i++)
+			{
+				values.limit((int) Math.min(length, (long) (i + 1) << WINDOW_SHIFT));
+				values.position(i << WINDOW_SHIFT);
+				windows[i] = values.slice();
+			}
+			values.clear();
+
+			return new IntColumn(windows, length);
+		}
+
+		static IntColumn map(FileChannel channel, long position, int length) throws IOException
+		{
+			IntBuffer[] windows = new IntBuffer[windowCount(length)];
+
+			for (int i = 0; i < windows.length;i++)
+			{
+				int count = Math.min(length - (i << WINDOW_SHIFT), 1 << WINDOW_SHIFT);
+
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count).asIntBuffer();
+				position += 4L * count;
+			}
+			return new IntColumn(windows, length);
+		}
+
+		int get(int index) {
+			return windows[index >>> WINDOW_SHIFT].get(index & WINDOW_MASK);
+		}
+
+		int length() {
+			return length;
+		}
+	}
+
+	private static int windowCount(int length)
+	{
+		// at least one (empty) window
+		return Math.max(1, (int) ((length + (long) WINDOW_MASK) >>> WINDOW_SHIFT));
+	}
+
+	private final long endOffset;
+
+	private final int flags;
+
+	private final LongColumn offsets;
+
+	private final LongColumn timestamps;
+
+	private final LongColumn sectionOffsets;
+
+	private final IntColumn types;
+
+	private final IntColumn interfaceIds;
+
+	private final IntColumn packets;
+
+	private final IntColumn sectionOrders;
+
+	/**
+	 * minimum and maximum packet timestamps of each group of CHECKPOINT_INTERVAL packets (built on first use)
+	 */
+	private volatile long[] checkpoints = null;
+
+	BlockIndex(long endOffset, int flags, LongBuffer offsets, LongBuffer timestamps, LongBuffer sectionOffsets, IntBuffer types,
+			IntBuffer interfaceIds, IntBuffer packets, IntBuffer sectionOrders)
+	{
+		this(endOffset, flags, LongColumn.wrap(offsets), LongColumn.wrap(timestamps), LongColumn.wrap(sectionOffsets),
+				IntColumn.wrap(types), IntColumn.wrap(interfaceIds), IntColumn.wrap(packets), IntColumn.wrap(sectionOrders));
+	}
+
+	private BlockIndex(long endOffset, int flags, LongColumn offsets, LongColumn timestamps, LongColumn sectionOffsets, IntColumn types,
+			IntColumn interfaceIds, IntColumn packets, IntColumn sectionOrders)
+	{
+		this.endOffset=endOffset;
+		this.flags=flags;
+		this.offsets=offsets;
+		this.timestamps=timestamps;
+		this.sectionOffsets=sectionOffsets;
+		this.types=types;
+		this.interfaceIds=interfaceIds;
+		this.packets=packets;
+		this.sectionOrders=sectionOrders;
+	}
+
+	/**
+	 * Map a sidecar index file
+	 *
+	 * @param path
+	 * 		index file path
+	 * @return
+	 * @throws IOException
+	 * 		if file can't be read or is not a valid index
+	 */
+	public static BlockIndex load(Path path) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try
+		{
+			if (channel.size() < HEADER_LENGTH)
+				throw new IOException("Invalid block index file " + path);
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("Invalid block index file " + path);
+
+			long endOffset = header.getLong(8);
+			int blockCount = header.getInt(16);
+			int packetCount = header.getInt(20);
+			int sectionCount = header.getInt(24);
+			int flags = header.getInt(28);
+
+			if (blockCount < 0 || packetCount < 0 || sectionCount < 0
+					|| channel.size() != length(blockCount, packetCount, sectionCount))
+				throw new IOException("Invalid block index file " + path);
+
+			long position = HEADER_LENGTH;
+
+			LongColumn offsets = LongColumn.map(channel, position, blockCount);
+			position += 8L * blockCount;
+
+			LongColumn timestamps = LongColumn.map(channel, position, blockCount);
+			position += 8L * blockCount;
+
+			LongColumn sectionOffsets = LongColumn.map(channel, position, sectionCount);
+			position += 8L * sectionCount;
+
+			IntColumn types = IntColumn.map(channel, position, blockCount);
+			position += 4L * blockCount;
+
+			IntColumn interfaceIds = IntColumn.map(channel, position, blockCount);
+			position += 4L * blockCount;
+
+			IntColumn packets = IntColumn.map(channel, position, packetCount);
+			position += 4L * packetCount;
+
+			IntColumn sectionOrders = IntColumn.map(channel, position, sectionCount);
+
+			return new BlockIndex(endOffset, flags, offsets, timestamps, sectionOffsets, types, interfaceIds, packets, sectionOrders);
+		}
+		finally
+		{
+			// mappings stay valid once channel is closed
+			channel.close();
+		}
+	}
+
+	private static long length(int blockCount, int packetCount, int sectionCount)
+	{
+		return HEADER_LENGTH + 24L * blockCount + 4L * packetCount + 12L * sectionCount;
+	}
+
+	/**
+	 * Write this index to a sidecar file (replaced if it exists)
+	 *
+	 * @param path
+	 * 		index file path
+	 * @throws IOException
+	 */
+	public void write(Path path) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(endOffset);
+			header.putInt(getBlockCount());
+			header.putInt(getPacketCount());
+			header.putInt(getSectionCount());
+			header.putInt(flags);
+			header.flip();
+			writeFully(channel, header);
+
+			ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+
+			writeColumn(channel, chunk, offsets);
+			writeColumn(channel, chunk, timestamps);
+			writeColumn(channel, chunk, sectionOffsets);
+			writeColumn(channel, chunk, types);
+			writeColumn(channel, chunk, interfaceIds);
+			writeColumn(channel, chunk, packets);
+			writeColumn(channel, chunk, sectionOrders);
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	private static void writeColumn(FileChannel channel, ByteBuffer chunk, LongColumn column) throws IOException
+	{
+		int count = column.length();
+
+		for (int i = 0; i < count;)
+		{
+			chunk.clear();
+			while (i < count && chunk.remaining() >= 8)
+				chunk.putLong(column.get(i++));
+
+			chunk.flip();
+			writeFully(channel, chunk);
+		}
+	}
+
+	private static void writeColumn(FileChannel channel, ByteBuffer chunk, IntColumn column) throws IOException
+	{
+		int count = column.length();
+
+		for (int i = 0; i < count;)
+		{
+			chunk.clear();
+			while (i < count && chunk.remaining() >= 4)
+				chunk.putInt(column.get(i++));
+
+			chunk.flip();
+			writeFully(channel, chunk);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * @return
+	 * 		offset following last indexed block (indexing resumes from there)
+	 */
+	public long getEndOffset() {
+		return endOffset;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 * @return
+	 * 		true if packet timestamps are in chronological order
+	 */
+	public boolean isTimeSorted() {
+		return (flags & FLAG_TIME_SORTED) != 0;
+	}
+
+	public int getBlockCount() {
+		return offsets.length();
+	}
+
+	public int getPacketCount() {
+		return packets.length();
+	}
+
+	public int getSectionCount() {
+		return sectionOffsets.length();
+	}
+
+	/**
+	 * @param block
+	 * 		block number
+	 * @return
+	 * 		file offset of block
+	 */
+	public long getOffset(int block) {
+		return offsets.get(block);
+	}
+
+	/**
+	 * @param block
+	 * 		block number
+	 * @return
+	 * 		raw block type code
+	 */
+	public int getBlockTypeCode(int block) {
+		return types.get(block);
+	}
+
+	/**
+	 * @param block
+	 * 		block number
+	 * @return
+	 * 		block type (UNKNOWN for types not supported by decoder)
+	 */
+	public BlockTypes getBlockType(int block) {
+		return BlockTypes.fromCode(types.get(block));
+	}
+
+	/**
+	 * @param block
+	 * 		block number
+	 * @return
+	 * 		interface id or NO_INTERFACE
+	 */
+	public int getInterfaceId(int block) {
+		return interfaceIds.get(block);
+	}
+
+	/**
+	 * @param block
+	 * 		block number
+	 * @return
+	 * 		timestamp in nanoseconds since epoch or NO_TIMESTAMP
+	 */
+	public long getTimestamp(int block) {
+		return timestamps.get(block);
+	}
+
+	/**
+	 * @param packet
+	 * 		packet number (starting from 0)
+	 * @return
+	 * 		block number of this packet
+	 */
+	public int getPacketBlock(int packet) {
+		return packets.get(packet);
+	}
+
+	/**
+	 * @param packet
+	 * 		packet number (starting from 0)
+	 * @return
+	 * 		file offset of this packet block
+	 */
+	public long getPacketOffset(int packet) {
+		return offsets.get(packets.get(packet));
+	}
+
+	/**
+	 * @param packet
+	 * 		packet number (starting from 0)
+	 * @return
+	 * 		timestamp of this packet in nanoseconds since epoch or NO_TIMESTAMP
+	 */
+	public long getPacketTimestamp(int packet) {
+		return timestamps.get(packets.get(packet));
+	}
+
+	/**
+	 * Find first packet with a timestamp greater or equal to given time. Binary search is used when
+	 * packets are sorted, otherwise 0 is returned (all packets have to be checked)
+	 *
+	 * @param nanos
+	 * 		time in nanoseconds since epoch
+	 * @return
+	 * 		packet number (packet count if all packets are before given time)
+	 */
+	public int findFirstPacket(long nanos)
+	{
+		if (!isTimeSorted())
+			return 0;
+
+		int low = 0;
+		int high = packets.length();
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (getPacketTimestamp(middle) < nanos)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Find first packet from given packet number which may have a timestamp in [startNanos, endNanos[.
+	 * On an unsorted index, groups of packets whose checkpoint is out of range are skipped (packets
+	 * returned in a group still have to be checked one by one). On a sorted index packet is returned as is
+	 *
+	 * @param packet
+	 * 		packet number to start from
+	 * @param startNanos
+	 * 		range start in nanoseconds since epoch (inclusive)
+	 * @param endNanos
+	 * 		range end in nanoseconds since epoch (exclusive)
+	 * @return
+	 * 		packet number (packet count if no more packet may be in range)
+	 */
+	public int findRangePacket(int packet, long startNanos, long endNanos)
+	{
+		if (isTimeSorted())
+			return packet;
+
+		long[] checkpoints = getCheckpoints();
+		int group = packet / CHECKPOINT_INTERVAL;
+		int groupCount = checkpoints.length / 2;
+
+		if (group >= groupCount)
+			return packets.length();
+
+		// packet inside a group whose checkpoint is in range
+		if (checkpoints[2 * group + 1] >= startNanos && checkpoints[2 * group] < endNanos)
+			return packet;
+
+		for (group++;group < groupCount;group++)
+		{
+			if (checkpoints[2 * group + 1] >= startNanos && checkpoints[2 * group] < endNanos)
+				return group * CHECKPOINT_INTERVAL;
+		}
+		return packets.length();
+	}
+
+	private long[] getCheckpoints()
+	{
+		long[] checkpoints = this.checkpoints;
+
+		if (checkpoints == null)
+		{
+			int packetCount = packets.length();
+			int groupCount = (int) ((packetCount + (long) CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL);
+
+			checkpoints = new long[2 * groupCount];
+
+			for (int group = 0; group < groupCount;group++)
+			{
+				// empty range for groups without timestamps
+				long min = Long.MAX_VALUE;
+				long max = Long.MIN_VALUE;
+				int end = Math.min(packetCount, (group + 1) * CHECKPOINT_INTERVAL);
+
+				for (int packet = group * CHECKPOINT_INTERVAL; packet < end;packet++)
+				{
+					long timestamp = getPacketTimestamp(packet);
+
+					if (timestamp != NO_TIMESTAMP)
+					{
+						min = Math.min(min, timestamp);
+						max = Math.max(max, timestamp);
+					}
+				}
+				checkpoints[2 * group] = min;
+				checkpoints[2 * group + 1] = max;
+			}
+			this.checkpoints = checkpoints;
+		}
+		return checkpoints;
+	}
+
+	/**
+	 * @param section
+	 * 		section number
+	 * @return
+	 * 		file offset of section header block
+	 */
+	public long getSectionOffset(int section) {
+		return sectionOffsets.get(section);
+	}
+
+	/**
+	 * Find first block located at or after given offset
+	 *
+	 * @param offset
+	 * 		file offset
+	 * @return
+	 * 		block number (getBlockCount() if there is no block after offset)
+	 */
+	public int findBlock(long offset)
+	{
+		int low = 0;
+		int high = getBlockCount() - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (offsets.get(middle) < offset)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Find section containing given offset
+	 *
+	 * @param offset
+	 * 		file offset
+	 * @return
+	 * 		section number or -1 if offset is before first section
+	 */
+	public int findSection(long offset)
+	{
+		int low = 0;
+		int high = sectionOffsets.length() - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (sectionOffsets.get(middle) <= offset)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		return high;
+	}
+
+	/**
+	 * @param offset
+	 * 		file offset
+	 * @return
+	 * 		byte order of the section containing offset
+	 */
+	public ByteOrder getByteOrder(long offset)
+	{
+		int section = findSection(offset);
+
+		if (section < 0 || sectionOrders.get(section) == 1)
+			return ByteOrder.BIG_ENDIAN;
+
+		return ByteOrder.LITTLE_ENDIAN;
+	}
+
+	/**
+	 * Direct access to columns, used by BlockIndexBuilder to resume indexing
+	 */
+	LongColumn getOffsets() {
+		return offsets;
+	}
+
+	LongColumn getTimestamps() {
+		return timestamps;
+	}
+
+	LongColumn getSectionOffsets() {
+		return sectionOffsets;
+	}
+
+	IntColumn getTypes() {
+		return types;
+	}
+
+	IntColumn getInterfaceIds() {
+		return interfaceIds;
+	}
+
+	IntColumn getPackets() {
+		return packets;
+	}
+
+	IntColumn getSectionOrders() {
+		return sectionOrders;
+	}
+}
@@ -0,0 +1,431 @@
+package fr.bmartel.pcapdecoder.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.io.MappedCaptureFile;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.PcapNgStructureParser;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Build a BlockIndex by following the Block Total Length chain of a capture
+ *
+ * Only block headers (and interface id / timestamp fields of packet blocks) are read. Interface
+ * description blocks are the only blocks decoded, to convert timestamps to nanoseconds. Indexing can
+ * be resumed from an existing index : only blocks written after the end of the previous index are
+ * read, which makes it cheap to keep the index of a growing capture up to date.
+ * A truncated block at the end of the capture (still being written) is left for next run.
+ *
+ */
+public class BlockIndexBuilder {
+
+	private final static int BLOCK_HEADER_LENGTH = 12;
+
+	/**
+	 * fields of packet / statistics blocks read by the index (interface id, timestamp high and low)
+	 */
+	private final static int PACKET_HEADER_LENGTH = 20;
+
+	private long endOffset = 0;
+
+	private int blockCount = 0;
+
+	private long[] offsets = new long[1024];
+
+	private long[] timestamps = new long[1024];
+
+	private int[] types = new int[1024];
+
+	private int[] interfaceIds = new int[1024];
+
+	private int packetCount = 0;
+
+	private int[] packets = new int[1024];
+
+	private int sectionCount = 0;
+
+	private long[] sectionOffsets = new long[4];
+
+	private int[] sectionOrders = new int[4];
+
+	/**
+	 * byte order and interfaces of last section met
+	 */
+	private final SectionContext context = new SectionContext();
+
+	/**
+	 * interfaces of last section have to be read again from capture (indexing resumed)
+	 */
+	private boolean reloadInterfaces = false;
+
+	private boolean timeSorted = true;
+
+	private long lastPacketTimestamp = BlockIndex.NO_TIMESTAMP;
+
+	/**
+	 * Start a new index from beginning of capture
+	 */
+	public BlockIndexBuilder()
+	{
+	}
+
+	/**
+	 * Resume indexing after the last block of given index
+	 *
+	 * @param previous
+	 */
+	public BlockIndexBuilder(BlockIndex previous)
+	{
+		endOffset = previous.getEndOffset();
+
+		blockCount = previous.getBlockCount();
+		offsets = copy(previous.getOffsets(), blockCount);
+		timestamps = copy(previous.getTimestamps(), blockCount);
+		types = copy(previous.getTypes(), blockCount);
+		interfaceIds = copy(previous.getInterfaceIds(), blockCount);
+
+		packetCount = previous.getPacketCount();
+		packets = copy(previous.getPackets(), packetCount);
+
+		sectionCount = previous.getSectionCount();
+		sectionOffsets = copy(previous.getSectionOffsets(), sectionCount);
+		sectionOrders = copy(previous.getSectionOrders(), sectionCount);
+
+		if (sectionCount > 0)
+		{
+			context.startSection(sectionOrders[sectionCount - 1] == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			reloadInterfaces = true;
+		}
+
+		timeSorted = previous.isTimeSorted();
+		if (packetCount > 0)
+			lastPacketTimestamp = timestamps[packets[packetCount - 1]];
+	}
+
+	private static long[] copy(BlockIndex.LongColumn column, int count)
+	{
+		long[] array = new long[Math.max(count * 2, 4)];
+		for (int i = 0; i < count;i++)
+			array[i] = column.get(i);
+		return array;
+	}
+
+	private static int[] copy(BlockIndex.IntColumn column, int count)
+	{
+		int[] array = new int[Math.max(count * 2, 4)];
+		for (int i = 0; i < count;i++)
+			array[i] = column.get(i);
+		return array;
+	}
+
+	/**
+	 * Index blocks of a memory mapped capture from current end offset
+	 *
+	 * @param file
+	 * @return
+	 * 		number of blocks added
+	 * @throws DecodeException
+	 */
+	public int append(MappedCaptureFile file) throws DecodeException
+	{
+		return append(file, null);
+	}
+
+	/**
+	 * Index blocks of an in-memory capture from current end offset
+	 *
+	 * @param data
+	 * @return
+	 * 		number of blocks added
+	 * @throws DecodeException
+	 */
+	public int append(byte[] data) throws DecodeException
+	{
+		return append(null, data);
+	}
+
+	private int append(MappedCaptureFile file, byte[] data) throws DecodeException
+	{
+		long limit = (file != null) ? file.size() : data.length;
+		ByteBuffer dataBuffer = (data != null) ? ByteBuffer.wrap(data) : null;
+		int added = 0;
+
+		if (endOffset > limit)
+			throw new DecodeException("Capture is smaller than indexed length " + endOffset);
+
+		try
+		{
+			if (reloadInterfaces)
+			{
+				long sectionStart = sectionOffsets[sectionCount - 1];
+				int first = blockCount;
+
+				while (first > 0 && offsets[first - 1] >= sectionStart)
+					first--;
+
+				for (int i = first; i < blockCount;i++)
+				{
+					if (types[i] == BlockTypes.INTERFACE_DESCRIPTION_BLOCK.getCode())
+						readInterface(file, data, offsets[i]);
+				}
+				reloadInterfaces = false;
+			}
+
+			while (limit - endOffset >= BLOCK_HEADER_LENGTH)
+			{
+				ByteBuffer buffer = dataBuffer;
+				int index = (int) endOffset;
+
+				if (file != null)
+				{
+					buffer = file.map(endOffset, (int) Math.min(limit - endOffset, PACKET_HEADER_LENGTH));
+					index = file.index(endOffset);
+				}
+
+				int typeCode = buffer.order(context.getByteOrder()).getInt(index);
+				BlockTypes type = BlockTypes.fromCode(typeCode);
+				ByteOrder order = context.getByteOrder();
+
+				if (type == BlockTypes.SECTION_HEADER_BLOCK)
+				{
+					int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(index + 8);
+
+					if (magic == MagicNumber.MAGIC_NUMBER)
+						order = ByteOrder.BIG_ENDIAN;
+					else if (magic == Integer.reverseBytes(MagicNumber.MAGIC_NUMBER))
+						order = ByteOrder.LITTLE_ENDIAN;
+					else
+						throw new DecodeException("Unable to parse ENDIANESS from SECTION_HEADER_BLOCK at offset " + endOffset);
+				}
+
+				int blockLength = buffer.order(order).getInt(index + 4);
+
+				if (blockLength < BLOCK_HEADER_LENGTH)
+					throw new DecodeException("File parsing error | invalid block length " + blockLength + " at offset " + endOffset);
+
+				// block not completely written yet
+				if (endOffset + blockLength > limit)
+					break;
+
+				if (type == BlockTypes.SECTION_HEADER_BLOCK)
+				{
+					context.startSection(order);
+					addSection(endOffset, order);
+				}
+				else if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK)
+				{
+					readInterface(file, data, endOffset);
+				}
+
+				int interfaceId = BlockIndex.NO_INTERFACE;
+				long timestamp = BlockIndex.NO_TIMESTAMP;
+
+				if (blockLength >= PACKET_HEADER_LENGTH + 4)
+				{
+					switch (type)
+					{
+						case ENHANCES_PACKET_BLOCK:
+						case INTERFACE_STATISTICS_BLOCK:
+							interfaceId = buffer.getInt(index + 8);
+							timestamp = readTimestamp(buffer, index);
+							break;
+						case PACKET_BLOCK:
+							interfaceId = buffer.getShort(index + 8) & 0xFFFF;
+							timestamp = readTimestamp(buffer, index);
+							break;
+						default:
+							break;
+					}
+				}
+
+				if (timestamp != BlockIndex.NO_TIMESTAMP)
+					timestamp = context.toNanos(interfaceId, timestamp);
+
+				addBlock(endOffset, typeCode, interfaceId, timestamp);
+
+				if (type == BlockTypes.ENHANCES_PACKET_BLOCK || type == BlockTypes.SIMPLE_PACKET_BLOCK
+						|| type == BlockTypes.PACKET_BLOCK)
+				{
+					addPacket(blockCount - 1);
+
+					if (timestamp == BlockIndex.NO_TIMESTAMP || timestamp < lastPacketTimestamp)
+						timeSorted = false;
+					else
+						lastPacketTimestamp = timestamp;
+				}
+
+				endOffset += blockLength;
+				added++;
+			}
+		}
+		catch (IOException e)
+		{
+			throw new DecodeException("Unable to read from mapped file.");
+		}
+		return added;
+	}
+
+	private static long readTimestamp(ByteBuffer buffer, int index)
+	{
+		return (((long) buffer.getInt(index + 12)) << 32) | (buffer.getInt(index + 16) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Decode interface description block at given offset and add it to current section
+	 */
+	private void readInterface(MappedCaptureFile file, byte[] data, long offset) throws IOException, DecodeException
+	{
+		ByteBuffer buffer;
+		int index;
+
+		if (file != null)
+		{
+			buffer = file.map(offset, BLOCK_HEADER_LENGTH);
+			index = file.index(offset);
+		}
+		else
+		{
+			buffer = ByteBuffer.wrap(data);
+			index = (int) offset;
+		}
+
+		int blockLength = buffer.order(context.getByteOrder()).getInt(index + 4);
+
+		// substract 4 for header and 4 for size (x2 at the end)
+		byte[] body = new byte[blockLength - 12];
+
+		if (file != null)
+			file.get(offset + 8, body, 0, body.length);
+		else
+			System.arraycopy(data, (int) offset + 8, body, 0, body.length);
+
+		try
+		{
+			context.addInterface((IDescriptionBlock) PcapNgStructureParser.decodeBlock(BlockTypes.INTERFACE_DESCRIPTION_BLOCK, body, context.isBigEndian()));
+		}
+		catch (RuntimeException e)
+		{
+			throw new DecodeException("File parsing error | invalid interface description block at offset " + offset);
+		}
+	}
+
+	private void addBlock(long offset, int type, int interfaceId, long timestamp)
+	{
+		if (blockCount == offsets.length)
+		{
+			int capacity = blockCount * 2;
+			offsets = Arrays.copyOf(offsets, capacity);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			types = Arrays.copyOf(types, capacity);
+			interfaceIds = Arrays.copyOf(interfaceIds, capacity);
+		}
+		offsets[blockCount] = offset;
+		timestamps[blockCount] = timestamp;
+		types[blockCount] = type;
+		interfaceIds[blockCount] = interfaceId;
+		blockCount++;
+	}
+
+	private void addPacket(int block)
+	{
+		if (packetCount == packets.length)
+			packets = Arrays.copyOf(packets, packetCount * 2);
+
+		packets[packetCount++] = block;
+	}
+
+	private void addSection(long offset, ByteOrder order)
+	{
+		if (sectionCount == sectionOffsets.length)
+		{
+			sectionOffsets = Arrays.copyOf(sectionOffsets, sectionCount * 2);
+			sectionOrders = Arrays.copyOf(sectionOrders, sectionCount * 2);
+		}
+		sectionOffsets[sectionCount] = offset;
+		sectionOrders[sectionCount] = (order == ByteOrder.BIG_ENDIAN) ? 1 : 0;
+		sectionCount++;
+	}
+
+	/**
+	 * @return
+	 * 		index of all blocks appended so far (builder can still be used afterwards)
+	 */
+	public BlockIndex build()
+	{
+		return new BlockIndex(endOffset, timeSorted ? BlockIndex.FLAG_TIME_SORTED : 0,
+				LongBuffer.wrap(Arrays.copyOf(offsets, blockCount)),
+				LongBuffer.wrap(Arrays.copyOf(timestamps, blockCount)),
+				LongBuffer.wrap(Arrays.copyOf(sectionOffsets, sectionCount)),
+				IntBuffer.wrap(Arrays.copyOf(types, blockCount)),
+				IntBuffer.wrap(Arrays.copyOf(interfaceIds, blockCount)),
+				IntBuffer.wrap(Arrays.copyOf(packets, packetCount)),
+				IntBuffer.wrap(Arrays.copyOf(sectionOrders, sectionCount)));
+	}
+
+	/**
+	 * Bring sidecar index of a capture up to date : existing index is loaded and only blocks appended
+	 * to the capture since last update are read. Index is rebuilt if sidecar is missing or invalid.
+	 *
+	 * @param capture
+	 * 		capture file path
+	 * @param sidecar
+	 * 		index file path
+	 * @return
+	 * 		up to date index
+	 * @throws IOException
+	 * @throws DecodeException
+	 */
+	public static BlockIndex update(Path capture, Path sidecar) throws IOException, DecodeException
+	{
+		MappedCaptureFile file = new MappedCaptureFile(capture);
+
+		try
+		{
+			BlockIndexBuilder builder = null;
+
+			if (Files.exists(sidecar))
+			{
+				try
+				{
+					BlockIndex previous = BlockIndex.load(sidecar);
+
+					if (previous.getEndOffset() <= file.size())
+						builder = new BlockIndexBuilder(previous);
+				}
+				catch (IOException e)
+				{
+					builder = null;
+				}
+			}
+
+			if (builder == null)
+				builder = new BlockIndexBuilder();
+
+			if (builder.append(file) == 0 && builder.blockCount > 0)
+				return BlockIndex.load(sidecar);
+
+			BlockIndex index = builder.build();
+
+			Path temp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+			index.write(temp);
+			Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+
+			return index;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+}
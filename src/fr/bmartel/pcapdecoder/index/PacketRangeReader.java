@@ -0,0 +1,138 @@
+package fr.bmartel.pcapdecoder.index;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Read packets whose timestamp is in [start, end[ using a block index
+ *
+ * When the index is time sorted, first packet is found with a binary search and reading stops at the
+ * first packet after the range, so only packets in range are decoded. Otherwise groups of packets whose
+ * time checkpoint is out of range are skipped (see BlockIndex.findRangePacket()) and timestamps of other
+ * packets are checked one by one, still without decoding packets out of range.
+ *
+ */
+public class PacketRangeReader implements Iterator<IPcapngType> {
+
+	private final PcapDecoder decoder;
+
+	private final BlockIndex index;
+
+	private final long startNanos;
+
+	private final long endNanos;
+
+	/**
+	 * next packet number to check
+	 */
+	private int packet;
+
+	private IPcapngType nextBlock = null;
+
+	/**
+	 * @param decoder
+	 * 		decoder of the indexed capture (byte array or mapped file)
+	 * @param index
+	 * 		block index of the capture
+	 * @param startNanos
+	 * 		range start in nanoseconds since epoch (inclusive)
+	 * @param endNanos
+	 * 		range end in nanoseconds since epoch (exclusive)
+	 */
+	public PacketRangeReader(PcapDecoder decoder, BlockIndex index, long startNanos, long endNanos)
+	{
+		this.decoder=decoder;
+		this.index=index;
+		this.startNanos=startNanos;
+		this.endNanos=endNanos;
+		this.packet=index.findFirstPacket(startNanos);
+	}
+
+	/**
+	 * Decode next packet in range
+	 *
+	 * @return
+	 * 		next packet block or null if there is no more packet in range
+	 * @throws DecodeException
+	 */
+	public IPcapngType nextBlock() throws DecodeException
+	{
+		if (nextBlock != null)
+		{
+			IPcapngType block = nextBlock;
+			nextBlock = null;
+			return block;
+		}
+
+		int count = index.getPacketCount();
+
+		while (packet < count)
+		{
+			if (packet % BlockIndex.CHECKPOINT_INTERVAL == 0)
+			{
+				packet = index.findRangePacket(packet, startNanos, endNanos);
+
+				if (packet >= count)
+					break;
+			}
+
+			long timestamp = index.getPacketTimestamp(packet);
+
+			if (timestamp >= endNanos && index.isTimeSorted())
+			{
+				packet = count;
+				break;
+			}
+
+			int current = packet++;
+
+			if (timestamp != BlockIndex.NO_TIMESTAMP && timestamp >= startNanos && timestamp < endNanos)
+			{
+				IPcapngType block = decoder.readBlockAt(index.getPacketOffset(current));
+
+				// packets of a type the decoder does not decode (obsolete packet block) are skipped
+				if (block != null)
+					return block;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (nextBlock == null)
+		{
+			try
+			{
+				nextBlock = nextBlock();
+			}
+			catch (DecodeException e)
+			{
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		return nextBlock != null;
+	}
+
+	@Override
+	public IPcapngType next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		IPcapngType block = nextBlock;
+		nextBlock = null;
+		return block;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,207 @@
+package fr.bmartel.pcapdecoder.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a capture file through a sliding memory-mapped window
+ *
+ * Only one window of the file is mapped at a time, so files bigger than 2GB can be read with
+ * long offsets while heap usage stays independent of the file size. The window is moved
+ * forward (or backward) each time a region outside of it is requested.
+ *
+ */
+public class MappedCaptureFile implements Closeable {
+
+	/**
+	 * default size of the mapped window (64MB)
+	 */
+	public final static int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * windows start on a page boundary
+	 */
+	private final static long PAGE_MASK = ~(4096L - 1);
+
+	private final FileChannel channel;
+
+	private final boolean ownChannel;
+
+	private final long size;
+
+	private final int windowSize;
+
+	/**
+	 * current mapped region
+	 */
+	private MappedByteBuffer window = null;
+
+	/**
+	 * file offset of first byte in window
+	 */
+	private long windowStart = 0;
+
+	private int windowLength = 0;
+
+	/**
+	 * Open file at given path with default window size
+	 *
+	 * @param path
+	 * 		capture file path
+	 * @throws IOException
+	 */
+	public MappedCaptureFile(Path path) throws IOException
+	{
+		this(FileChannel.open(path, StandardOpenOption.READ), DEFAULT_WINDOW_SIZE, true);
+	}
+
+	/**
+	 * Map an already opened channel (channel is not closed by this object)
+	 *
+	 * @param channel
+	 * 		file channel opened for reading
+	 * @param windowSize
+	 * 		size of mapped window in bytes
+	 * @throws IOException
+	 */
+	public MappedCaptureFile(FileChannel channel, int windowSize) throws IOException
+	{
+		this(channel, windowSize, false);
+	}
+
+	private MappedCaptureFile(FileChannel channel, int windowSize, boolean ownChannel) throws IOException
+	{
+		if (windowSize <= 0)
+			throw new IllegalArgumentException("window size must be positive");
+
+		this.channel = channel;
+		this.ownChannel = ownChannel;
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @return total size of the file in bytes
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Make sure region [offset, offset+length[ is mapped and return mapped window. Index of offset
+	 * in returned buffer is given by index(offset)
+	 *
+	 * @param offset
+	 * 		file offset
+	 * @param length
+	 * 		number of bytes needed from offset
+	 * @return
+	 * 		mapped window containing the region
+	 * @throws IOException
+	 */
+	public ByteBuffer map(long offset, int length) throws IOException
+	{
+		if (offset < 0 || length < 0 || offset + length > size)
+			throw new IOException("Region " + offset + "+" + length + " is out of file bounds (" + size + ")");
+
+		if (window == null || offset < windowStart || offset + length > windowStart + windowLength)
+		{
+			long start = offset & PAGE_MASK;
+			long needed = (offset - start) + length;
+			long mappedLength = Math.min(size - start, Math.max((long) windowSize, needed));
+
+			if (mappedLength > Integer.MAX_VALUE)
+				throw new IOException("Region of " + needed + " bytes can't be mapped");
+
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, mappedLength);
+			windowStart = start;
+			windowLength = (int) mappedLength;
+		}
+		return window;
+	}
+
+	/**
+	 * Map a region independently of current window. Contrary to map(), this method doesn't modify
+	 * this object and can be called from several threads
+	 *
+	 * @param offset
+	 * 		file offset
+	 * @param length
+	 * 		region length
+	 * @return
+	 * 		buffer with region first byte at index 0
+	 * @throws IOException
+	 */
+	public ByteBuffer mapRegion(long offset, int length) throws IOException
+	{
+		if (offset < 0 || length < 0 || offset + length > size)
+			throw new IOException("Region " + offset + "+" + length + " is out of file bounds (" + size + ")");
+
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+
+	/**
+	 * @param offset
+	 * 		file offset (must be in current window)
+	 * @return
+	 * 		index of offset in current window
+	 */
+	public int index(long offset)
+	{
+		return (int) (offset - windowStart);
+	}
+
+	/**
+	 * Read a 32 bit integer at given file offset
+	 *
+	 * @param offset
+	 * @param order
+	 * 		byte order of the value
+	 * @return
+	 * @throws IOException
+	 */
+	public int getInt(long offset, ByteOrder order) throws IOException
+	{
+		ByteBuffer buffer = map(offset, 4);
+		return buffer.order(order).getInt(index(offset));
+	}
+
+	/**
+	 * Copy bytes from file to given array
+	 *
+	 * @param offset
+	 * 		file offset
+	 * @param dst
+	 * 		destination array
+	 * @param dstOffset
+	 * 		index in destination array
+	 * @param length
+	 * 		number of bytes to copy
+	 * @throws IOException
+	 */
+	public void get(long offset, byte[] dst, int dstOffset, int length) throws IOException
+	{
+		ByteBuffer buffer = map(offset, length).duplicate();
+		buffer.position(index(offset));
+		buffer.get(dst, dstOffset, length);
+	}
+
+	/**
+	 * Release the mapping reference and close the channel if it has been opened here. The mapped
+	 * region is freed by garbage collection, not by this call
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		window = null;
+		if (ownChannel)
+			channel.close();
+	}
+}
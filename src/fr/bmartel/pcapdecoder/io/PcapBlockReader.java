@@ -0,0 +1,356 @@
+package fr.bmartel.pcapdecoder.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.PcapNgStructureParser;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Streaming block reader over an InputStream or a ReadableByteChannel (pipe from dumpcap, socket..)
+ *
+ * Blocks are read one at a time in a single reusable buffer which only grows to the size of the
+ * biggest block met, so memory usage doesn't depend on capture size. Section state (byte order and
+ * interfaces of current section) is kept across calls.
+ *
+ * Blocks of unknown type and blocks which are not decoded (simple packet block / packet block) are
+ * skipped without being buffered.
+ *
+ */
+public class PcapBlockReader implements Iterator<IPcapngType>, Closeable {
+
+	public final static int DEFAULT_BUFFER_LENGTH = 8192;
+
+	/**
+	 * Block Type + Block Total Length + byte-order magic of section header block
+	 */
+	private final static int BLOCK_HEADER_LENGTH = 12;
+
+	private final ReadableByteChannel channel;
+
+	private ByteBuffer buffer;
+
+	private final SectionContext context = new SectionContext();
+
+	/**
+	 * block read in advance by hasNext()
+	 */
+	private IPcapngType nextBlock = null;
+
+	private boolean endOfStream = false;
+
+	/**
+	 * block types returned by the reader, other blocks are skipped
+	 */
+	private EnumSet<BlockTypes> decodedTypes = EnumSet.allOf(BlockTypes.class);
+
+	/**
+	 * Build block reader over an input stream
+	 *
+	 * @param stream
+	 */
+	public PcapBlockReader(InputStream stream)
+	{
+		this(Channels.newChannel(stream));
+	}
+
+	/**
+	 * Build block reader over a channel
+	 *
+	 * @param channel
+	 */
+	public PcapBlockReader(ReadableByteChannel channel)
+	{
+		this.channel=channel;
+		this.buffer=ByteBuffer.allocate(DEFAULT_BUFFER_LENGTH);
+	}
+
+	/**
+	 * Select block types to decode. Other blocks are skipped without being decoded (channel position is moved
+	 * over big blocks when it is seekable). Interface description blocks are still decoded to keep section context up to date.
+	 *
+	 * @param types
+	 * 		block types to decode (all types by default)
+	 */
+	public void setDecodedBlockTypes(Set<BlockTypes> types) {
+		decodedTypes = EnumSet.noneOf(BlockTypes.class);
+		decodedTypes.addAll(types);
+	}
+
+	/**
+	 * @return
+	 * 		state of section being read
+	 */
+	public SectionContext getSectionContext() {
+		return context;
+	}
+
+	/**
+	 * Fill buffer from its current position up to length
+	 *
+	 * @param length
+	 * @return
+	 * 		false if end of stream has been reached before reading any byte
+	 * @throws IOException
+	 * @throws DecodeException
+	 * 		if end of stream has been reached in the middle of the region
+	 */
+	private boolean fill(int length) throws IOException, DecodeException
+	{
+		int start = buffer.position();
+
+		buffer.limit(length);
+
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer) < 0)
+			{
+				if (buffer.position() == 0)
+					return false;
+
+				throw new DecodeException("File parsing error | truncated block (" + (buffer.position() - start) + " bytes read)");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skip end of a block without keeping its content
+	 *
+	 * @param length
+	 * 		number of bytes to skip
+	 * @throws IOException
+	 * @throws DecodeException
+	 * 		if end of stream is reached before end of block
+	 */
+	private void skip(long length) throws IOException, DecodeException
+	{
+		// small blocks are cheaper to read than to seek over
+		if (channel instanceof SeekableByteChannel && length >= DEFAULT_BUFFER_LENGTH)
+		{
+			SeekableByteChannel seekable = (SeekableByteChannel) channel;
+
+			if (seekable.position() + length > seekable.size())
+				throw new DecodeException("File parsing error | truncated block");
+
+			seekable.position(seekable.position() + length);
+			return;
+		}
+
+		while (length > 0)
+		{
+			buffer.clear();
+
+			int chunk = (int) Math.min(length, buffer.capacity());
+
+			if (!fill(chunk))
+				throw new DecodeException("File parsing error | truncated block");
+
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * @param type
+	 * @return
+	 * 		false for block types which are not decoded to a structure (unknown, simple packet and packet
+	 * 		blocks), these blocks are skipped without being buffered
+	 */
+	private static boolean isSupported(BlockTypes type)
+	{
+		return type != BlockTypes.UNKNOWN && type != BlockTypes.SIMPLE_PACKET_BLOCK && type != BlockTypes.PACKET_BLOCK;
+	}
+
+	/**
+	 * Make sure buffer can hold given length, keeping bytes already read
+	 *
+	 * @param length
+	 */
+	private void ensureCapacity(int length)
+	{
+		if (buffer.capacity() < length)
+		{
+			int capacity = buffer.capacity();
+
+			while (capacity < length && capacity > 0)
+				capacity <<= 1;
+
+			ByteBuffer newBuffer = ByteBuffer.allocate(capacity > 0 ? capacity : length);
+			buffer.flip();
+			newBuffer.put(buffer);
+			buffer=newBuffer;
+		}
+	}
+
+	/**
+	 * Read and decode next block
+	 *
+	 * @return
+	 * 		next decoded block or null at end of stream
+	 * @throws IOException
+	 * @throws DecodeException
+	 */
+	public IPcapngType nextBlock() throws IOException, DecodeException
+	{
+		if (nextBlock != null)
+		{
+			IPcapngType block = nextBlock;
+			nextBlock = null;
+			return block;
+		}
+
+		while (!endOfStream)
+		{
+			buffer.clear();
+
+			if (!fill(BLOCK_HEADER_LENGTH))
+			{
+				endOfStream = true;
+				return null;
+			}
+
+			BlockTypes type = BlockTypes.fromCode(buffer.order(context.getByteOrder()).getInt(0));
+			ByteOrder order = context.getByteOrder();
+
+			if (type == BlockTypes.SECTION_HEADER_BLOCK)
+			{
+				int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(8);
+
+				if (magic == MagicNumber.MAGIC_NUMBER)
+					order = ByteOrder.BIG_ENDIAN;
+				else if (magic == Integer.reverseBytes(MagicNumber.MAGIC_NUMBER))
+					order = ByteOrder.LITTLE_ENDIAN;
+				else
+					throw new DecodeException("Unable to parse ENDIANESS from SECTION_HEADER_BLOCK!");
+			}
+
+			int blockLength = buffer.order(order).getInt(4);
+
+			if (blockLength < BLOCK_HEADER_LENGTH)
+				throw new DecodeException("File parsing error | invalid block length " + blockLength);
+
+			if (type == BlockTypes.SECTION_HEADER_BLOCK)
+				context.startSection(order);
+
+			if (!isSupported(type) || (!decodedTypes.contains(type) && type != BlockTypes.INTERFACE_DESCRIPTION_BLOCK))
+			{
+				skip(blockLength - BLOCK_HEADER_LENGTH);
+				continue;
+			}
+
+			ensureCapacity(blockLength);
+
+			if (!fill(blockLength))
+				throw new DecodeException("File parsing error | truncated block");
+
+			// substract 4 for header and 4 for size (x2 at the end)
+			byte[] body = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset() + 8, buffer.arrayOffset() + blockLength - 4);
+
+			IPcapngType block;
+
+			try
+			{
+				block = PcapNgStructureParser.decodeBlock(type, body, context.isBigEndian());
+
+				// interface options are parsed when interface is added
+				if (block instanceof IDescriptionBlock)
+					context.addInterface((IDescriptionBlock) block);
+			}
+			catch (RuntimeException e)
+			{
+				throw new DecodeException("File parsing error | invalid block of type " + type);
+			}
+
+			if (block instanceof EnhancedPacketHeader)
+				context.bindInterface((EnhancedPacketHeader) block);
+
+			if (block != null && decodedTypes.contains(type))
+				return block;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (nextBlock == null)
+		{
+			try
+			{
+				nextBlock = nextBlock();
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			catch (DecodeException e)
+			{
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		return nextBlock != null;
+	}
+
+	@Override
+	public IPcapngType next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		IPcapngType block = nextBlock;
+		nextBlock = null;
+		return block;
+	}
+
+	/**
+	 * Sequential stream of all decoded blocks. Closing the stream closes the underlying channel
+	 *
+	 * @return
+	 */
+	public Stream<IPcapngType> stream()
+	{
+		Stream<IPcapngType> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+
+		return stream.onClose(new Runnable() {
+			@Override
+			public void run() {
+				try
+				{
+					close();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -1,11 +1,13 @@
 package fr.bmartel.pcapdecoder.main;
 
+import java.nio.ByteOrder;
 import java.util.Date;
 
 import fr.bmartel.pcapdecoder.PcapDecoder;
 import fr.bmartel.pcapdecoder.constant.PacketBoundState;
 import fr.bmartel.pcapdecoder.constant.PacketHashType;
 import fr.bmartel.pcapdecoder.constant.PacketReceptionType;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionSectionHeader;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsDescriptionHeader;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsEnhancedPacketHeader;
@@ -21,6 +23,14 @@ import fr.bmartel.pcapdecoder.utils.UtilFunctions;
 
 public class DisplayAllPacket {
 
+	/**
+	 * Convert a timestamp with if_tsresol / if_tsoffset of its interface
+	 */
+	private static Date toDate(SectionContext section,int interfaceId,long timestamp)
+	{
+		return new Date(section.toNanos(interfaceId, timestamp) / 1000000);
+	}
+
 	/**
 	 * Display all information on packets (highly consuming when used on big file)
 	 * 
@@ -30,7 +40,7 @@ public class DisplayAllPacket {
 	{
 		System.out.println("##########################################################");
 		
-		int timestampResolution = 3;
+		SectionContext section = new SectionContext();
 		
 		for (int i = 0; i < decoder.getSectionList().size();i++)
 		{
@@ -38,6 +48,8 @@ public class DisplayAllPacket {
 			{
 				ISectionHeaderBlock temp = (ISectionHeaderBlock) decoder.getSectionList().get(i);
 				
+				section.startSection(ByteOrder.BIG_ENDIAN);
+				
 				System.out.println("SECTION HEADER BLOCK");
 				if (temp.getMajorVersion()!=-1)
 					System.out.println("Major version      : " + temp.getMajorVersion());
@@ -64,6 +76,8 @@ public class DisplayAllPacket {
 			{
 				IDescriptionBlock temp = (IDescriptionBlock) decoder.getSectionList().get(i);
 				
+				section.addInterface(temp);
+				
 				System.out.println("SECTION INTERFACE DESCRIPTION BLOCK");
 				
 				if (!temp.getLinkType().equals(""))
@@ -92,10 +106,7 @@ public class DisplayAllPacket {
 					if (optionsList.getInterfaceSpeed()!=-1)
 						System.out.println("interface speed       : " +  optionsList.getInterfaceSpeed() + "bps");
 					if (optionsList.getTimeStampResolution()!=-1)
-					{
 						System.out.println("timestamp resolution  : " +  optionsList.getTimeStampResolution());
-						timestampResolution=optionsList.getTimeStampResolution();
-					}
 					if (optionsList.getTimeBias()!=-1)
 						System.out.println("time offset from UTC  : " +  optionsList.getTimeBias());
 					if (!optionsList.getInterfaceFilter().equals(""))
@@ -119,17 +130,8 @@ public class DisplayAllPacket {
 				if (temp.getInterfaceId()!=-1)
 					System.out.println("interface id             : " + temp.getInterfaceId());
 				
-				if (temp.getTimeStamp()!=-1)
-				{
-					if (timestampResolution==3)
-					{
-						System.out.println("timestamp in millis      : " + new Date(temp.getTimeStamp()));
-					}
-					else if (timestampResolution==6)
-					{
-						System.out.println("timestamp in millis      : " + new Date(temp.getTimeStamp()/1000));
-					}
-				}
+				if (temp.getTimeStampValue()!=-1)
+					System.out.println("timestamp in millis      : " + toDate(section, temp.getInterfaceId(), temp.getTimeStampValue()));
 				if (temp.getCapturedLength()!=-1)
 					System.out.println("captured length          : " + temp.getCapturedLength());
 				if (temp.getPacketLength()!=-1)
@@ -156,7 +158,7 @@ public class DisplayAllPacket {
 					
 					for (int j = 0; j  < optionsList.getLinkLayerErrorList().size();j++)
 					{
-						System.out.println(optionsList.getLinkLayerErrorList().get(i) + " detected");
+						System.out.println(optionsList.getLinkLayerErrorList().get(j) + " detected");
 					}
 				}
 				System.out.println("##########################################################");
@@ -170,44 +172,17 @@ public class DisplayAllPacket {
 				if (temp.getInterfaceId()!=-1)
 					System.out.println("interface id             : " + temp.getInterfaceId());
 				
-				if (temp.getTimeStamp()!=-1)
-				{
-					if (timestampResolution==3)
-					{
-						System.out.println("timestamp in millis      : " + new Date(temp.getTimeStamp()));
-					}
-					else if (timestampResolution==6)
-					{
-						System.out.println("timestamp in millis      : " + new Date(temp.getTimeStamp()/1000));
-					}
-				}
+				if (temp.getTimeStampValue()!=-1)
+					System.out.println("timestamp in millis      : " + toDate(section, temp.getInterfaceId(), temp.getTimeStampValue()));
 				
 				IOptionsStatisticsHeader optionsList = temp.getOptions();
 				
 				if (optionsList!=null)
 				{
 					if (optionsList.getCaptureStartTime()!=-1)
-					{
-						if (timestampResolution==3)
-						{
-							System.out.println("capture start time       : " + new Date(optionsList.getCaptureStartTime()));
-						}
-						else if (timestampResolution==6)
-						{
-							System.out.println("capture start time       : " + new Date(optionsList.getCaptureStartTime()/1000));
-						}
-					}
+						System.out.println("capture start time       : " + toDate(section, temp.getInterfaceId(), optionsList.getCaptureStartTime()));
 					if (optionsList.getCaptureEndTime()!=-1)
-					{
-						if (timestampResolution==3)
-						{
-							System.out.println("capture end time         : " + new Date(optionsList.getCaptureEndTime()));
-						}
-						else if (timestampResolution==6)
-						{
-							System.out.println("capture end time         : " + new Date(optionsList.getCaptureEndTime()/1000));
-						}
-					}
+						System.out.println("capture end time         : " + toDate(section, temp.getInterfaceId(), optionsList.getCaptureEndTime()));
 					if (optionsList.getPacketReceivedCount()!=-1)
 						System.out.println("packet received count    : " + optionsList.getPacketReceivedCount());
 					if (optionsList.getPacketDropCount()!=-1)
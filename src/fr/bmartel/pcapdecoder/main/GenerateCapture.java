@@ -0,0 +1,139 @@
+package fr.bmartel.pcapdecoder.main;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+
+import fr.bmartel.pcapdecoder.generator.CaptureGenerator;
+
+/**
+ * Write a synthetic PCAP NG capture
+ *
+ * java -cp pcapngdecoder-1.0.jar fr.bmartel.pcapdecoder.main.GenerateCapture -o fixture.pcapng -size 10G
+ *
+ * <ul>
+ * <li>-o &lt;file.pcapng&gt;      : output file (mandatory)</li>
+ * <li>-size &lt;N[K|M|G]&gt;      : approximate file size (default : use -packets)</li>
+ * <li>-packets &lt;N&gt;         : packets per section (default 1000)</li>
+ * <li>-sections &lt;N&gt;        : number of sections (default 1)</li>
+ * <li>-interfaces &lt;N&gt;      : interfaces per section (default 1)</li>
+ * <li>-order &lt;le|be|mixed&gt; : byte order of sections (default le)</li>
+ * <li>-dist &lt;fixed|uniform|imix&gt; : packet size distribution (default uniform)</li>
+ * <li>-min &lt;N&gt; / -max &lt;N&gt; : packet size range (default 64 / 1514)</li>
+ * <li>-options &lt;0..1&gt;      : probability for a packet to have options (default 0.1)</li>
+ * <li>-names &lt;N&gt;           : name resolution records per section (default 0)</li>
+ * <li>-seed &lt;N&gt;            : random seed (default 0)</li>
+ * </ul>
+ *
+ */
+public class GenerateCapture {
+
+	public static void main(String[] args) {
+
+		CaptureGenerator generator = new CaptureGenerator();
+		String output = null;
+		int minPacketSize = 64;
+		int maxPacketSize = 1514;
+
+		try
+		{
+			for (int i = 0; i < args.length;i += 2)
+			{
+				if (i + 1 >= args.length)
+				{
+					System.err.println("Missing value for " + args[i]);
+					return;
+				}
+
+				String value = args[i + 1];
+
+				switch (args[i])
+				{
+					case "-o":
+						output = value;
+						break;
+					case "-size":
+						generator.setTargetSize(parseSize(value));
+						break;
+					case "-packets":
+						generator.setPacketCount(Long.parseLong(value));
+						break;
+					case "-sections":
+						generator.setSectionCount(Integer.parseInt(value));
+						break;
+					case "-interfaces":
+						generator.setInterfaceCount(Integer.parseInt(value));
+						break;
+					case "-order":
+						generator.setByteOrder(value.equals("be") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+						generator.setAlternateByteOrder(value.equals("mixed"));
+						break;
+					case "-dist":
+						generator.setSizeDistribution(CaptureGenerator.SizeDistribution.valueOf(value.toUpperCase()));
+						break;
+					case "-min":
+						minPacketSize = Integer.parseInt(value);
+						break;
+					case "-max":
+						maxPacketSize = Integer.parseInt(value);
+						break;
+					case "-options":
+						generator.setOptionDensity(Double.parseDouble(value));
+						break;
+					case "-names":
+						generator.setNameRecordCount(Integer.parseInt(value));
+						break;
+					case "-seed":
+						generator.setSeed(Long.parseLong(value));
+						break;
+					default:
+						System.err.println("Invalid argument " + args[i]);
+						return;
+				}
+			}
+			generator.setPacketSize(minPacketSize, maxPacketSize);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Invalid argument : " + e.getMessage());
+			return;
+		}
+
+		if (output == null)
+		{
+			System.err.println("Insufficient argument");
+			return;
+		}
+
+		try
+		{
+			long startTime = System.currentTimeMillis();
+			long length = generator.generate(Paths.get(output));
+			long totalTime = System.currentTimeMillis() - startTime;
+
+			System.out.println(length + " bytes written in " + totalTime + " millis");
+		}
+		catch (IOException e)
+		{
+			System.err.println("Error writing " + output + " : " + e.getMessage());
+		}
+	}
+
+	private static long parseSize(String value)
+	{
+		long unit = 1;
+		char suffix = Character.toUpperCase(value.charAt(value.length() - 1));
+
+		if (suffix == 'K')
+			unit = 1024L;
+		else if (suffix == 'M')
+			unit = 1024L * 1024;
+		else if (suffix == 'G')
+			unit = 1024L * 1024 * 1024;
+
+		if (unit > 1)
+			value = value.substring(0, value.length() - 1);
+
+		return Long.parseLong(value) * unit;
+	}
+}
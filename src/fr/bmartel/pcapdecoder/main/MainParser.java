@@ -80,11 +80,11 @@ public class MainParser {
 		
 		if (args.length > 1) {
 			
-			byte[] dataFromFile= new byte[]{};
+			String filePath = null;
 			
 			if (args[0].equals("-f"))
 			{
-				dataFromFile = readFile(args[1]);
+				filePath = args[1];
 				if (args.length>2 && args[2].equals("-v"))
 				{
 					verbose=true;
@@ -98,7 +98,7 @@ public class MainParser {
 				{
 					if (args[1].equals("-f"))
 					{
-						dataFromFile = readFile(args[2]);
+						filePath = args[2];
 					}
 					else
 					{
@@ -118,26 +118,26 @@ public class MainParser {
 				return;
 			}
 
-			if (dataFromFile.length > 0) {
-				PcapDecoder pcapNgDecoder = new PcapDecoder(dataFromFile);
-				int status = pcapNgDecoder.decode();
+			try (PcapDecoder pcapNgDecoder = openFile(filePath)) {
 				
-				if (status==DecoderStatus.SUCCESS_STATUS)
-				{
-					long endTime   = System.currentTimeMillis();
-					long totalTime = endTime - startTime;
-					System.out.println("Decoding time : " + totalTime + " millis");
-					if (verbose)
+				if (pcapNgDecoder != null) {
+					int status = pcapNgDecoder.decode();
+					
+					if (status==DecoderStatus.SUCCESS_STATUS)
 					{
-						DisplayAllPacket.displayResult(pcapNgDecoder);
+						long endTime   = System.currentTimeMillis();
+						long totalTime = endTime - startTime;
+						System.out.println("Decoding time : " + totalTime + " millis");
+						if (verbose)
+						{
+							DisplayAllPacket.displayResult(pcapNgDecoder);
+						}
 					}
+					else
+						System.err.println("Decoder failure");
 				}
-				else
-					System.err.println("Decoder failure");
-			}
-			else
-			{
-				System.err.println("File is empty");
+			} catch (IOException e) {
+				System.err.println("Error closing file");
 			}
 		}
 		else
@@ -147,23 +147,25 @@ public class MainParser {
 	}
 
 	/**
-	 * Read all bytes from file
+	 * Open file with a memory mapped decoder (file is not loaded in heap)
 	 * 
 	 * @param path
 	 *            file path
+	 * @return decoder or null if file can't be read
 	 */
-	static byte[] readFile(String path) {
-		Path path2 = Paths.get(path);
-
-		byte[] data = new byte[] {};
-
+	static PcapDecoder openFile(String path) {
 		try {
-			data = Files.readAllBytes(path2);
+			Path path2 = Paths.get(path);
+			
+			if (Files.size(path2) == 0) {
+				System.err.println("File is empty");
+				return null;
+			}
+			return new PcapDecoder(path2);
 		} catch (IOException e) {
 			System.err.println("Error file path is incorrect");
 		}
-
-		return data;
+		return null;
 	}
 
 }
@@ -0,0 +1,479 @@
+package fr.bmartel.pcapdecoder.network;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import fr.bmartel.pcapdecoder.BlockVisitor;
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.impl.NameResolutionHeader;
+import fr.bmartel.pcapdecoder.structure.types.inter.INameResolutionBlock;
+
+/**
+ * Address to names table built from name resolution block records (nrb_record_ipv4 / nrb_record_ipv6)
+ *
+ * IPv4 addresses are keys of an open addressing table of int, IPv6 addresses keys of an open
+ * addressing table of two longs (high and low 64 bits), so that resolving an address read from a packet
+ * doesn't format nor allocate anything. Names of an address are chained in insertion order, duplicates
+ * being dropped.
+ *
+ * Addresses are in network byte order, like in packet headers and in records.
+ *
+ */
+public class NameResolver {
+
+	private final static int NRB_RECORD_END = 0;
+
+	private final static int NRB_RECORD_IPV4 = 1;
+
+	private final static int NRB_RECORD_IPV6 = 2;
+
+	private final static int INITIAL_CAPACITY = 64;
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * IPv4 table : keys and index + 1 of first name of each key (0 for a free slot)
+	 */
+	private int[] ipv4Keys = new int[INITIAL_CAPACITY];
+
+	private int[] ipv4Names = new int[INITIAL_CAPACITY];
+
+	private int ipv4Count = 0;
+
+	/**
+	 * IPv6 table : high and low 64 bits of keys and index + 1 of first name of each key (0 for a free slot)
+	 */
+	private long[] ipv6High = new long[INITIAL_CAPACITY];
+
+	private long[] ipv6Low = new long[INITIAL_CAPACITY];
+
+	private int[] ipv6Names = new int[INITIAL_CAPACITY];
+
+	private int ipv6Count = 0;
+
+	/**
+	 * all names, and index + 1 of next name of the same address (0 for last name)
+	 */
+	private String[] names = new String[INITIAL_CAPACITY];
+
+	private int[] nextName = new int[INITIAL_CAPACITY];
+
+	private int nameCount = 0;
+
+	/**
+	 * Build resolver from all name resolution blocks of a capture. Other blocks are skipped without
+	 * being decoded. Decoder block type selection is restored afterwards.
+	 *
+	 * @param decoder
+	 * 		decoder of the capture (byte array, mapped file or stream not read yet)
+	 * @return
+	 * 		resolver with all records of the capture
+	 */
+	public static NameResolver load(PcapDecoder decoder)
+	{
+		final NameResolver resolver = new NameResolver();
+		Set<BlockTypes> types = decoder.getDecodedBlockTypes();
+
+		decoder.setDecodedBlockTypes(EnumSet.of(BlockTypes.NAME_RESOLUTION_BLOCK));
+		try
+		{
+			decoder.decode(new BlockVisitor() {
+				@Override
+				public boolean onNameResolution(INameResolutionBlock nameResolution, SectionContext section) {
+					resolver.add(nameResolution);
+					return true;
+				}
+			});
+		}
+		finally
+		{
+			decoder.setDecodedBlockTypes(types);
+		}
+		return resolver;
+	}
+
+	/**
+	 * Add records of a name resolution block
+	 *
+	 * @param block
+	 */
+	public void add(INameResolutionBlock block)
+	{
+		if (block instanceof NameResolutionHeader)
+		{
+			NameResolutionHeader header = (NameResolutionHeader) block;
+			addRecords(header.getData(), header.isBigEndian());
+		}
+	}
+
+	/**
+	 * Add records read from a name resolution block body
+	 *
+	 * @param data
+	 * 		block body (starting with first record)
+	 * @param isBigEndian
+	 * 		byte order of the section (record type and length fields)
+	 */
+	public void addRecords(byte[] data, boolean isBigEndian)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(isBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		int index = 0;
+
+		while (index + 4 <= data.length)
+		{
+			int type = buffer.getShort(index) & 0xFFFF;
+			int length = buffer.getShort(index + 2) & 0xFFFF;
+			int value = index + 4;
+
+			if (type == NRB_RECORD_END || value + length > data.length)
+				break;
+
+			if (type == NRB_RECORD_IPV4 && length > 4)
+			{
+				int address = ByteBuffer.wrap(data, value, 4).getInt();
+
+				for (String name : readNames(data, value + 4, value + length))
+					addIpv4(address, name);
+			}
+			else if (type == NRB_RECORD_IPV6 && length > 16)
+			{
+				ByteBuffer addressBuffer = ByteBuffer.wrap(data, value, 16);
+				long high = addressBuffer.getLong();
+				long low = addressBuffer.getLong();
+
+				for (String name : readNames(data, value + 16, value + length))
+					addIpv6(high, low, name);
+			}
+			// record value is padded to 32 bits
+			index = value + ((length + 3) & ~3);
+		}
+	}
+
+	/**
+	 * Read zero terminated names (last one may not be terminated)
+	 */
+	private static List<String> readNames(byte[] data, int start, int end)
+	{
+		List<String> result = new ArrayList<String>(1);
+		int nameStart = start;
+
+		for (int i = start; i <= end;i++)
+		{
+			if (i == end || data[i] == 0)
+			{
+				if (i > nameStart)
+					result.add(new String(data, nameStart, i - nameStart, UTF8));
+				nameStart = i + 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param address
+	 * 		IPv4 address in network byte order (first byte is most significant)
+	 * @param name
+	 */
+	public void addIpv4(int address, String name)
+	{
+		if ((ipv4Count + 1) * 2 > ipv4Keys.length)
+			growIpv4();
+
+		int slot = ipv4Slot(ipv4Keys, ipv4Names, address);
+
+		if (ipv4Names[slot] == 0)
+		{
+			ipv4Keys[slot] = address;
+			ipv4Count++;
+		}
+		ipv4Names[slot] = appendName(ipv4Names[slot], name);
+	}
+
+	/**
+	 * @param high
+	 * 		first 8 bytes of IPv6 address in network byte order
+	 * @param low
+	 * 		last 8 bytes of IPv6 address in network byte order
+	 * @param name
+	 */
+	public void addIpv6(long high, long low, String name)
+	{
+		if ((ipv6Count + 1) * 2 > ipv6High.length)
+			growIpv6();
+
+		int slot = ipv6Slot(ipv6High, ipv6Low, ipv6Names, high, low);
+
+		if (ipv6Names[slot] == 0)
+		{
+			ipv6High[slot] = high;
+			ipv6Low[slot] = low;
+			ipv6Count++;
+		}
+		ipv6Names[slot] = appendName(ipv6Names[slot], name);
+	}
+
+	/**
+	 * Append a name to the chain starting at first (index + 1, 0 for an empty chain) unless it is
+	 * already there
+	 *
+	 * @return
+	 * 		first name of the chain (index + 1)
+	 */
+	private int appendName(int first, String name)
+	{
+		int last = 0;
+
+		for (int current = first; current != 0;current = nextName[current - 1])
+		{
+			if (names[current - 1].equals(name))
+				return first;
+			last = current;
+		}
+
+		if (nameCount == names.length)
+		{
+			names = Arrays.copyOf(names, nameCount * 2);
+			nextName = Arrays.copyOf(nextName, nameCount * 2);
+		}
+		names[nameCount] = name;
+		nextName[nameCount] = 0;
+		nameCount++;
+
+		if (last == 0)
+			return nameCount;
+
+		nextName[last - 1] = nameCount;
+		return first;
+	}
+
+	private static int hash(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash(long high, long low)
+	{
+		long h = (high * 0x9E3779B97F4A7C15L) ^ (low * 0xC2B2AE3D27D4EB4FL);
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @return
+	 * 		slot of key or free slot where key would be inserted
+	 */
+	private static int ipv4Slot(int[] keys, int[] values, int key)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+
+		while (values[slot] != 0 && keys[slot] != key)
+			slot = (slot + 1) & mask;
+
+		return slot;
+	}
+
+	private static int ipv6Slot(long[] high, long[] low, int[] values, long keyHigh, long keyLow)
+	{
+		int mask = high.length - 1;
+		int slot = hash(keyHigh, keyLow) & mask;
+
+		while (values[slot] != 0 && (high[slot] != keyHigh || low[slot] != keyLow))
+			slot = (slot + 1) & mask;
+
+		return slot;
+	}
+
+	private void growIpv4()
+	{
+		int[] keys = new int[ipv4Keys.length * 2];
+		int[] values = new int[keys.length];
+
+		for (int i = 0; i < ipv4Keys.length;i++)
+		{
+			if (ipv4Names[i] != 0)
+			{
+				int slot = ipv4Slot(keys, values, ipv4Keys[i]);
+				keys[slot] = ipv4Keys[i];
+				values[slot] = ipv4Names[i];
+			}
+		}
+		ipv4Keys = keys;
+		ipv4Names = values;
+	}
+
+	private void growIpv6()
+	{
+		long[] high = new long[ipv6High.length * 2];
+		long[] low = new long[high.length];
+		int[] values = new int[high.length];
+
+		for (int i = 0; i < ipv6High.length;i++)
+		{
+			if (ipv6Names[i] != 0)
+			{
+				int slot = ipv6Slot(high, low, values, ipv6High[i], ipv6Low[i]);
+				high[slot] = ipv6High[i];
+				low[slot] = ipv6Low[i];
+				values[slot] = ipv6Names[i];
+			}
+		}
+		ipv6High = high;
+		ipv6Low = low;
+		ipv6Names = values;
+	}
+
+	/**
+	 * @param address
+	 * 		IPv4 address in network byte order (first byte is most significant)
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv4(int address)
+	{
+		int first = ipv4Names[ipv4Slot(ipv4Keys, ipv4Names, address)];
+		return (first != 0) ? names[first - 1] : null;
+	}
+
+	/**
+	 * @param data
+	 * 		packet data
+	 * @param offset
+	 * 		index of the 4 address bytes in data
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv4(byte[] data, int offset)
+	{
+		return resolveIpv4(((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF));
+	}
+
+	/**
+	 * @param buffer
+	 * 		packet buffer (its byte order is ignored)
+	 * @param offset
+	 * 		index of the 4 address bytes in buffer
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv4(ByteBuffer buffer, int offset)
+	{
+		return resolveIpv4(((buffer.get(offset) & 0xFF) << 24) | ((buffer.get(offset + 1) & 0xFF) << 16) | ((buffer.get(offset + 2) & 0xFF) << 8) | (buffer.get(offset + 3) & 0xFF));
+	}
+
+	/**
+	 * @param high
+	 * 		first 8 bytes of IPv6 address in network byte order
+	 * @param low
+	 * 		last 8 bytes of IPv6 address in network byte order
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv6(long high, long low)
+	{
+		int first = ipv6Names[ipv6Slot(ipv6High, ipv6Low, ipv6Names, high, low)];
+		return (first != 0) ? names[first - 1] : null;
+	}
+
+	/**
+	 * @param data
+	 * 		packet data
+	 * @param offset
+	 * 		index of the 16 address bytes in data
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv6(byte[] data, int offset)
+	{
+		return resolveIpv6(readLong(data, offset), readLong(data, offset + 8));
+	}
+
+	/**
+	 * @param buffer
+	 * 		packet buffer (its byte order is ignored)
+	 * @param offset
+	 * 		index of the 16 address bytes in buffer
+	 * @return
+	 * 		first name of this address or null if address is unknown
+	 */
+	public String resolveIpv6(ByteBuffer buffer, int offset)
+	{
+		long high = buffer.getLong(offset);
+		long low = buffer.getLong(offset + 8);
+
+		if (buffer.order() == ByteOrder.LITTLE_ENDIAN)
+		{
+			high = Long.reverseBytes(high);
+			low = Long.reverseBytes(low);
+		}
+		return resolveIpv6(high, low);
+	}
+
+	private static long readLong(byte[] data, int offset)
+	{
+		long value = 0;
+
+		for (int i = 0; i < 8;i++)
+			value = (value << 8) | (data[offset + i] & 0xFF);
+
+		return value;
+	}
+
+	/**
+	 * @param address
+	 * 		IPv4 address in network byte order
+	 * @return
+	 * 		all names of this address (empty if address is unknown)
+	 */
+	public List<String> getIpv4Names(int address)
+	{
+		return chain(ipv4Names[ipv4Slot(ipv4Keys, ipv4Names, address)]);
+	}
+
+	/**
+	 * @param high
+	 * 		first 8 bytes of IPv6 address in network byte order
+	 * @param low
+	 * 		last 8 bytes of IPv6 address in network byte order
+	 * @return
+	 * 		all names of this address (empty if address is unknown)
+	 */
+	public List<String> getIpv6Names(long high, long low)
+	{
+		return chain(ipv6Names[ipv6Slot(ipv6High, ipv6Low, ipv6Names, high, low)]);
+	}
+
+	private List<String> chain(int first)
+	{
+		List<String> result = new ArrayList<String>();
+
+		for (int current = first; current != 0;current = nextName[current - 1])
+			result.add(names[current - 1]);
+
+		return result;
+	}
+
+	/**
+	 * @return
+	 * 		number of distinct IPv4 addresses
+	 */
+	public int getIpv4Count() {
+		return ipv4Count;
+	}
+
+	/**
+	 * @return
+	 * 		number of distinct IPv6 addresses
+	 */
+	public int getIpv6Count() {
+		return ipv6Count;
+	}
+}
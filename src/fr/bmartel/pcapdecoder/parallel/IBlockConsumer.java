@@ -0,0 +1,24 @@
+package fr.bmartel.pcapdecoder.parallel;
+
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+
+/**
+ * Receive blocks decoded by ParallelDecoder. Blocks are delivered from several threads and in no
+ * particular order : implementations must be thread safe
+ *
+ */
+public interface IBlockConsumer {
+
+	/**
+	 * Called for each decoded block
+	 *
+	 * @param offset
+	 * 		offset of the block in capture
+	 * @param block
+	 * 		decoded block
+	 * @param section
+	 * 		section the block belongs to (byte order and interface table)
+	 */
+	public void onBlock(long offset, IPcapngType block, SectionContext section);
+}
@@ -0,0 +1,478 @@
+package fr.bmartel.pcapdecoder.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.io.MappedCaptureFile;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.PcapNgStructureParser;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Decode a whole capture (byte array or memory mapped file) on several cores
+ *
+ * A first sequential pass only follows the Block Total Length chain to split the capture in chunks of
+ * contiguous blocks (a chunk never spans two sections) and decodes interface description blocks to
+ * build the interface table of each section. Chunks are then decoded in a ForkJoinPool, each one with
+ * the byte order and interface table of its section. Interface description blocks decoded by the scan
+ * are the ones returned, so packets point to the same instances as the result list.
+ *
+ */
+public class ParallelDecoder {
+
+	/**
+	 * default chunk size in bytes
+	 */
+	public final static int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private final static int BLOCK_HEADER_LENGTH = 12;
+
+	private final byte[] data;
+
+	private final MappedCaptureFile mappedFile;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * block types decoded by chunk tasks, other blocks are skipped
+	 */
+	private EnumSet<BlockTypes> decodedTypes = EnumSet.allOf(BlockTypes.class);
+
+	/**
+	 * chunks found by last scan
+	 */
+	private final ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+
+	/**
+	 * context of last section found by last scan
+	 */
+	private SectionContext lastSection = null;
+
+	/**
+	 * contiguous blocks of a section
+	 */
+	private static class Chunk {
+
+		private final long start;
+
+		private final int length;
+
+		private final SectionContext section;
+
+		/**
+		 * interface description blocks of the chunk in file order, decoded by scan
+		 */
+		private final List<IPcapngType> interfaces;
+
+		private Chunk(long start, int length, SectionContext section, List<IPcapngType> interfaces)
+		{
+			this.start=start;
+			this.length=length;
+			this.section=section;
+			this.interfaces=interfaces;
+		}
+	}
+
+	/**
+	 * Used to carry decoding errors out of fork join tasks
+	 */
+	private static class ChunkException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private ChunkException(DecodeException cause)
+		{
+			super(cause);
+		}
+	}
+
+	public ParallelDecoder(byte[] data)
+	{
+		this.data=data;
+		this.mappedFile=null;
+	}
+
+	public ParallelDecoder(MappedCaptureFile file)
+	{
+		this.data=null;
+		this.mappedFile=file;
+	}
+
+	/**
+	 * @param pool
+	 * 		pool used to decode chunks (common pool by default)
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param chunkSize
+	 * 		approximate number of bytes decoded by one task
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunk size must be positive");
+
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param types
+	 * 		block types to decode (all types by default). Interface description blocks are decoded anyway
+	 * 		during scan to build section contexts
+	 */
+	public void setDecodedBlockTypes(Set<BlockTypes> types) {
+		decodedTypes = EnumSet.noneOf(BlockTypes.class);
+		decodedTypes.addAll(types);
+	}
+
+	private long size()
+	{
+		return (mappedFile != null) ? mappedFile.size() : data.length;
+	}
+
+	/**
+	 * First pass : split capture in chunks following block lengths and build section contexts
+	 *
+	 * @throws DecodeException
+	 */
+	private void scan() throws DecodeException
+	{
+		chunks.clear();
+		lastSection = null;
+
+		long limit = size();
+		long offset = 0;
+		long chunkStart = 0;
+		ByteBuffer dataBuffer = (data != null) ? ByteBuffer.wrap(data) : null;
+
+		SectionContext section = new SectionContext();
+		ArrayList<IPcapngType> interfaces = new ArrayList<IPcapngType>();
+
+		try
+		{
+			while (offset < limit)
+			{
+				if (limit - offset < BLOCK_HEADER_LENGTH)
+					throw new DecodeException("File parsing error | truncated block at offset " + offset);
+
+				ByteBuffer buffer = dataBuffer;
+				int index = (int) offset;
+
+				if (mappedFile != null)
+				{
+					buffer = mappedFile.map(offset, BLOCK_HEADER_LENGTH);
+					index = mappedFile.index(offset);
+				}
+
+				BlockTypes type = BlockTypes.fromCode(buffer.order(section.getByteOrder()).getInt(index));
+
+				if (type == BlockTypes.SECTION_HEADER_BLOCK)
+				{
+					int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(index + 8);
+					ByteOrder order;
+
+					if (magic == MagicNumber.MAGIC_NUMBER)
+						order = ByteOrder.BIG_ENDIAN;
+					else if (magic == Integer.reverseBytes(MagicNumber.MAGIC_NUMBER))
+						order = ByteOrder.LITTLE_ENDIAN;
+					else
+						throw new DecodeException("Unable to parse ENDIANESS from SECTION_HEADER_BLOCK!");
+
+					interfaces = addChunk(chunkStart, offset, section, interfaces);
+					chunkStart = offset;
+					section = new SectionContext();
+					section.startSection(order);
+				}
+
+				int blockLength = buffer.order(section.getByteOrder()).getInt(index + 4);
+
+				if (blockLength < BLOCK_HEADER_LENGTH || offset + blockLength > limit)
+					throw new DecodeException("File parsing error | invalid block length " + blockLength + " at offset " + offset);
+
+				if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK)
+				{
+					byte[] body = new byte[blockLength - 12];
+
+					if (mappedFile != null)
+						mappedFile.get(offset + 8, body, 0, body.length);
+					else
+						System.arraycopy(data, (int) offset + 8, body, 0, body.length);
+
+					try
+					{
+						IPcapngType description = PcapNgStructureParser.decodeBlock(type, body, section.isBigEndian());
+						section.addInterface((IDescriptionBlock) description);
+						interfaces.add(description);
+					}
+					catch (RuntimeException e)
+					{
+						throw new DecodeException("File parsing error | invalid interface description block at offset " + offset, e);
+					}
+				}
+
+				offset += blockLength;
+
+				if (offset - chunkStart >= chunkSize)
+				{
+					interfaces = addChunk(chunkStart, offset, section, interfaces);
+					chunkStart = offset;
+				}
+			}
+			addChunk(chunkStart, offset, section, interfaces);
+			lastSection = section;
+		}
+		catch (IOException e)
+		{
+			throw new DecodeException("Unable to read from mapped file.");
+		}
+		catch (RuntimeException e)
+		{
+			throw new DecodeException("File parsing error | invalid block at offset " + offset, e);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		list receiving interface description blocks of next chunk
+	 */
+	private ArrayList<IPcapngType> addChunk(long start, long end, SectionContext section, ArrayList<IPcapngType> interfaces) throws DecodeException
+	{
+		if (end > start)
+		{
+			if (end - start > Integer.MAX_VALUE)
+				throw new DecodeException("File parsing error | block too big at offset " + start);
+
+			chunks.add(new Chunk(start, (int) (end - start), section, interfaces));
+			return new ArrayList<IPcapngType>();
+		}
+		return interfaces;
+	}
+
+	/**
+	 * Decode all blocks of a chunk
+	 *
+	 * @param chunk
+	 * @param result
+	 * 		list receiving blocks in chunk order (may be null)
+	 * @param consumer
+	 * 		consumer receiving blocks (may be null)
+	 * @throws DecodeException
+	 */
+	private void decodeChunk(Chunk chunk, List<IPcapngType> result, IBlockConsumer consumer) throws DecodeException
+	{
+		ByteBuffer buffer;
+		int position;
+
+		try
+		{
+			if (mappedFile != null)
+			{
+				buffer = mappedFile.mapRegion(chunk.start, chunk.length);
+				position = 0;
+			}
+			else
+			{
+				buffer = ByteBuffer.wrap(data);
+				position = (int) chunk.start;
+			}
+		}
+		catch (IOException e)
+		{
+			throw new DecodeException("Unable to read from mapped file.");
+		}
+
+		buffer.order(chunk.section.getByteOrder());
+
+		long base = (mappedFile != null) ? chunk.start : 0;
+		int end = position + chunk.length;
+		int interfaceIndex = 0;
+
+		while (position < end)
+		{
+			BlockTypes type = BlockTypes.fromCode(buffer.getInt(position));
+			int blockLength = buffer.getInt(position + 4);
+
+			if (type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK)
+			{
+				IPcapngType description = chunk.interfaces.get(interfaceIndex++);
+
+				if (decodedTypes.contains(type))
+				{
+					if (result != null)
+						result.add(description);
+					if (consumer != null)
+						consumer.onBlock(base + position, description, chunk.section);
+				}
+			}
+			else if (type != BlockTypes.UNKNOWN && decodedTypes.contains(type))
+			{
+				// substract 4 for header and 4 for size (x2 at the end)
+				byte[] body = new byte[blockLength - 12];
+				buffer.position(position + 8);
+				buffer.get(body);
+
+				IPcapngType block;
+
+				try
+				{
+					block = PcapNgStructureParser.decodeBlock(type, body, chunk.section.isBigEndian());
+				}
+				catch (RuntimeException e)
+				{
+					throw new DecodeException("File parsing error | invalid block at offset " + (base + position));
+				}
+
+				if (block instanceof EnhancedPacketHeader)
+					chunk.section.bindInterface((EnhancedPacketHeader) block);
+
+				if (block != null)
+				{
+					if (result != null)
+						result.add(block);
+					if (consumer != null)
+						consumer.onBlock(base + position, block, chunk.section);
+				}
+			}
+			position += blockLength;
+		}
+	}
+
+	/**
+	 * Decode chunks [from, to[
+	 */
+	private class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		private final List<List<IPcapngType>> results;
+
+		private final IBlockConsumer consumer;
+
+		private ChunkTask(int from, int to, List<List<IPcapngType>> results, IBlockConsumer consumer)
+		{
+			this.from=from;
+			this.to=to;
+			this.results=results;
+			this.consumer=consumer;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				List<IPcapngType> result = null;
+
+				if (results != null)
+				{
+					result = new ArrayList<IPcapngType>();
+					results.set(from, result);
+				}
+				try
+				{
+					decodeChunk(chunks.get(from), result, consumer);
+				}
+				catch (DecodeException e)
+				{
+					throw new ChunkException(e);
+				}
+			}
+			else
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(from, middle, results, consumer), new ChunkTask(middle, to, results, consumer));
+			}
+		}
+	}
+
+	private void run(List<List<IPcapngType>> results, IBlockConsumer consumer) throws DecodeException
+	{
+		if (chunks.isEmpty())
+			return;
+
+		try
+		{
+			pool.invoke(new ChunkTask(0, chunks.size(), results, consumer));
+		}
+		catch (ChunkException e)
+		{
+			throw (DecodeException) e.getCause();
+		}
+	}
+
+	/**
+	 * Decode capture and return all blocks in file order
+	 *
+	 * @return
+	 * @throws DecodeException
+	 */
+	public List<IPcapngType> decode() throws DecodeException
+	{
+		scan();
+
+		// one list per chunk, each set by the task decoding that chunk
+		List<List<IPcapngType>> results = new ArrayList<List<IPcapngType>>(Collections.<List<IPcapngType>>nCopies(chunks.size(), null));
+
+		run(results, null);
+
+		int count = 0;
+		for (int i = 0; i < results.size();i++)
+			count += results.get(i).size();
+
+		ArrayList<IPcapngType> blocks = new ArrayList<IPcapngType>(count);
+		for (int i = 0; i < results.size();i++)
+			blocks.addAll(results.get(i));
+
+		return blocks;
+	}
+
+	/**
+	 * Decode capture and give each block to consumer as soon as it is decoded (from worker threads, in no
+	 * particular order). Nothing is retained by the decoder
+	 *
+	 * @param consumer
+	 * @throws DecodeException
+	 */
+	public void decode(IBlockConsumer consumer) throws DecodeException
+	{
+		scan();
+		run(null, consumer);
+	}
+
+	/**
+	 * @return
+	 * 		byte order and interfaces of last section found by last decode (null before first decode)
+	 */
+	public SectionContext getSectionContext() {
+		return lastSection;
+	}
+
+	/**
+	 * @return
+	 * 		number of chunks found by last decode
+	 */
+	public int getChunkCount() {
+		return chunks.size();
+	}
+}
@@ -0,0 +1,547 @@
+package fr.bmartel.pcapdecoder.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.EnumSet;
+import java.util.Set;
+
+import fr.bmartel.pcapdecoder.BlockVisitor;
+import fr.bmartel.pcapdecoder.constant.MagicNumber;
+import fr.bmartel.pcapdecoder.io.MappedCaptureFile;
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.PcapNgStructureParser;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Decode a capture with three stages running concurrently :
+ *
+ * <ul>
+ * <li>framing thread : reads raw blocks (Block Type and Block Total Length only) and copies their body</li>
+ * <li>decoding thread : decodes block bodies with PcapNgStructureParser</li>
+ * <li>calling thread : gives decoded blocks to a BlockVisitor in file order</li>
+ * </ul>
+ *
+ * Stages are linked by bounded SpscRingBuffer queues. Blocks move between stages in batches, and a stage
+ * waits when its output queue is full, so a slow visitor slows reading down instead of filling the heap.
+ * Reading, decoding and user processing overlap instead of adding up.
+ *
+ */
+public class PipelineDecoder {
+
+	public final static int DEFAULT_QUEUE_CAPACITY = 4096;
+
+	public final static int DEFAULT_BATCH_SIZE = 64;
+
+	private final static int BLOCK_HEADER_LENGTH = 12;
+
+	private final static int SKIP_BUFFER_LENGTH = 8192;
+
+	private final byte[] data;
+
+	private final MappedCaptureFile mappedFile;
+
+	private final ReadableByteChannel channel;
+
+	/**
+	 * buffer used by framing thread to discard blocks which are not decoded from a channel
+	 */
+	private ByteBuffer skipBuffer = null;
+
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private EnumSet<BlockTypes> decodedTypes = EnumSet.allOf(BlockTypes.class);
+
+	/**
+	 * set when a stage fails or when visitor stops decoding
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * first error raised by framing or decoding thread
+	 */
+	private volatile DecodeException failure = null;
+
+	/**
+	 * block moving through the stages
+	 */
+	private static class PipelineBlock {
+
+		private final BlockTypes type;
+
+		private final ByteOrder order;
+
+		private byte[] body;
+
+		private IPcapngType block;
+
+		private PipelineBlock(BlockTypes type, ByteOrder order, byte[] body)
+		{
+			this.type=type;
+			this.order=order;
+			this.body=body;
+		}
+	}
+
+	public PipelineDecoder(byte[] data)
+	{
+		this.data=data;
+		this.mappedFile=null;
+		this.channel=null;
+	}
+
+	public PipelineDecoder(MappedCaptureFile file)
+	{
+		this.data=null;
+		this.mappedFile=file;
+		this.channel=null;
+	}
+
+	public PipelineDecoder(ReadableByteChannel channel)
+	{
+		this.data=null;
+		this.mappedFile=null;
+		this.channel=channel;
+	}
+
+	public PipelineDecoder(InputStream stream)
+	{
+		this(Channels.newChannel(stream));
+	}
+
+	/**
+	 * @param queueCapacity
+	 * 		number of blocks each queue between two stages can hold
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity <= 0)
+			throw new IllegalArgumentException("queue capacity must be positive");
+
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * @param batchSize
+	 * 		maximum number of blocks handed from one stage to the next at once
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("batch size must be positive");
+
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param types
+	 * 		block types to decode (all types by default). Other blocks are dropped by the framing thread.
+	 * 		Interface description blocks are decoded anyway to keep section context up to date
+	 */
+	public void setDecodedBlockTypes(Set<BlockTypes> types) {
+		decodedTypes = EnumSet.noneOf(BlockTypes.class);
+		decodedTypes.addAll(types);
+	}
+
+	/**
+	 * Decode capture, visitor being called from calling thread. Returns when all blocks have been visited,
+	 * when visitor stops decoding or when a stage fails. When decoding ends before the end of a channel or
+	 * stream source, this source is closed so that the framing thread is not left blocked in a read (blocks
+	 * already read ahead couldn't be given back anyway).
+	 *
+	 * @param visitor
+	 * @throws DecodeException
+	 */
+	public void decode(BlockVisitor visitor) throws DecodeException
+	{
+		stopped = false;
+		failure = null;
+
+		final SpscRingBuffer<PipelineBlock> rawQueue = new SpscRingBuffer<PipelineBlock>(queueCapacity);
+		final SpscRingBuffer<PipelineBlock> decodedQueue = new SpscRingBuffer<PipelineBlock>(queueCapacity);
+
+		Thread framer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try
+				{
+					frame(rawQueue);
+				}
+				catch (DecodeException e)
+				{
+					fail(e);
+				}
+				catch (IOException e)
+				{
+					// channel closed by stop() is not an error
+					if (!stopped)
+						fail(new DecodeException("Unable to read capture : " + e.getMessage()));
+				}
+				finally
+				{
+					rawQueue.close();
+				}
+			}
+		}, "pcap-pipeline-framer");
+
+		Thread decoder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try
+				{
+					decodeBlocks(rawQueue, decodedQueue);
+				}
+				catch (DecodeException e)
+				{
+					fail(e);
+				}
+				finally
+				{
+					decodedQueue.close();
+				}
+			}
+		}, "pcap-pipeline-decoder");
+
+		framer.setDaemon(true);
+		decoder.setDaemon(true);
+		framer.start();
+		decoder.start();
+
+		boolean complete = false;
+
+		try
+		{
+			visit(decodedQueue, visitor);
+			complete = !stopped;
+		}
+		finally
+		{
+			if (!complete)
+				stop();
+
+			stopped = true;
+
+			try
+			{
+				framer.join();
+				decoder.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Make framing and decoding threads return before the end of the capture : waits on queues end when
+	 * stopped is set, and closing the channel ends a read in progress
+	 */
+	private void stop()
+	{
+		stopped = true;
+
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				// nothing more can be done to unblock the framing thread
+			}
+		}
+	}
+
+	private void fail(DecodeException e)
+	{
+		if (failure == null)
+			failure = e;
+
+		stopped = true;
+	}
+
+	/**
+	 * Offer a batch, waiting while queue is full
+	 *
+	 * @return
+	 * 		false if pipeline has been stopped while waiting
+	 */
+	private boolean publish(SpscRingBuffer<PipelineBlock> queue, PipelineBlock[] batch, int count)
+	{
+		int offset = 0;
+		int attempt = 0;
+
+		while (offset < count)
+		{
+			if (stopped)
+				return false;
+
+			int added = queue.offer(batch, offset, count - offset);
+
+			if (added == 0)
+			{
+				SpscRingBuffer.idle(attempt++);
+			}
+			else
+			{
+				offset += added;
+				attempt = 0;
+			}
+		}
+		for (int i = 0; i < count;i++)
+			batch[i] = null;
+
+		return true;
+	}
+
+	/**
+	 * Take next batch, waiting while queue is empty
+	 *
+	 * @return
+	 * 		number of blocks taken (0 when queue is closed and empty or pipeline has been stopped)
+	 */
+	private int take(SpscRingBuffer<PipelineBlock> queue, PipelineBlock[] batch)
+	{
+		int attempt = 0;
+
+		while (!stopped)
+		{
+			int count = queue.drain(batch, batch.length);
+
+			if (count > 0)
+				return count;
+
+			if (queue.isClosed())
+				return queue.drain(batch, batch.length);
+
+			SpscRingBuffer.idle(attempt++);
+		}
+		return 0;
+	}
+
+	/**
+	 * Framing stage
+	 */
+	private void frame(SpscRingBuffer<PipelineBlock> rawQueue) throws IOException, DecodeException
+	{
+		PipelineBlock[] batch = new PipelineBlock[batchSize];
+		int count = 0;
+
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_LENGTH);
+		long limit = (channel != null) ? Long.MAX_VALUE : (mappedFile != null) ? mappedFile.size() : data.length;
+		long offset = 0;
+		ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+		while (offset < limit && !stopped)
+		{
+			header.clear();
+
+			if (channel != null)
+			{
+				if (!readFully(header, true))
+					break;
+			}
+			else if (limit - offset < BLOCK_HEADER_LENGTH)
+				throw new DecodeException("File parsing error | truncated block at offset " + offset);
+			else if (mappedFile != null)
+				mappedFile.get(offset, header.array(), 0, BLOCK_HEADER_LENGTH);
+			else
+				System.arraycopy(data, (int) offset, header.array(), 0, BLOCK_HEADER_LENGTH);
+
+			BlockTypes type = BlockTypes.fromCode(header.order(order).getInt(0));
+
+			if (type == BlockTypes.SECTION_HEADER_BLOCK)
+			{
+				int magic = header.order(ByteOrder.BIG_ENDIAN).getInt(8);
+
+				if (magic == MagicNumber.MAGIC_NUMBER)
+					order = ByteOrder.BIG_ENDIAN;
+				else if (magic == Integer.reverseBytes(MagicNumber.MAGIC_NUMBER))
+					order = ByteOrder.LITTLE_ENDIAN;
+				else
+					throw new DecodeException("Unable to parse ENDIANESS from SECTION_HEADER_BLOCK!");
+			}
+
+			int blockLength = header.order(order).getInt(4);
+
+			if (blockLength < BLOCK_HEADER_LENGTH || (blockLength & 3) != 0 || offset + blockLength > limit)
+				throw new DecodeException("File parsing error | invalid block length " + blockLength + " at offset " + offset);
+
+			boolean keep = type == BlockTypes.SECTION_HEADER_BLOCK || type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK || (type != BlockTypes.UNKNOWN && decodedTypes.contains(type));
+
+			// substract 4 for header and 4 for size (x2 at the end)
+			byte[] body = keep ? new byte[blockLength - 12] : null;
+
+			if (channel != null)
+			{
+				// first 4 bytes after Block Total Length have already been read with header (body or trailing length)
+				int remaining = blockLength - BLOCK_HEADER_LENGTH;
+
+				if (keep && body.length > 0)
+				{
+					System.arraycopy(header.array(), 8, body, 0, 4);
+					readFully(ByteBuffer.wrap(body, 4, body.length - 4), false);
+					remaining -= body.length - 4;
+				}
+				skip(remaining);
+			}
+			else if (keep)
+			{
+				if (mappedFile != null)
+					mappedFile.get(offset + 8, body, 0, body.length);
+				else
+					System.arraycopy(data, (int) offset + 8, body, 0, body.length);
+			}
+
+			offset += blockLength;
+
+			if (keep)
+			{
+				batch[count++] = new PipelineBlock(type, order, body);
+
+				if (count == batch.length)
+				{
+					if (!publish(rawQueue, batch, count))
+						return;
+					count = 0;
+				}
+			}
+		}
+		publish(rawQueue, batch, count);
+	}
+
+	/**
+	 * Read and discard bytes from channel
+	 */
+	private void skip(int length) throws IOException, DecodeException
+	{
+		if (length == 0)
+			return;
+
+		if (skipBuffer == null)
+			skipBuffer = ByteBuffer.allocate(SKIP_BUFFER_LENGTH);
+
+		while (length > 0)
+		{
+			skipBuffer.clear();
+			skipBuffer.limit(Math.min(length, SKIP_BUFFER_LENGTH));
+			readFully(skipBuffer, false);
+			length -= skipBuffer.limit();
+		}
+	}
+
+	/**
+	 * Read until buffer is full
+	 *
+	 * @param buffer
+	 * @param endAllowed
+	 * 		true if end of stream is allowed before reading the first byte
+	 * @return
+	 * 		false if end of stream has been reached before reading any byte
+	 * @throws IOException
+	 * @throws DecodeException
+	 * 		if end of stream has been reached in the middle of the buffer
+	 */
+	private boolean readFully(ByteBuffer buffer, boolean endAllowed) throws IOException, DecodeException
+	{
+		boolean empty = buffer.position() == 0;
+
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer) < 0)
+			{
+				if (endAllowed && empty && buffer.position() == 0)
+					return false;
+
+				throw new DecodeException("File parsing error | truncated block");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decoding stage
+	 */
+	private void decodeBlocks(SpscRingBuffer<PipelineBlock> rawQueue, SpscRingBuffer<PipelineBlock> decodedQueue) throws DecodeException
+	{
+		PipelineBlock[] batch = new PipelineBlock[batchSize];
+		int count;
+
+		while ((count = take(rawQueue, batch)) > 0)
+		{
+			for (int i = 0; i < count;i++)
+			{
+				PipelineBlock block = batch[i];
+
+				if (block.type == BlockTypes.INTERFACE_DESCRIPTION_BLOCK || decodedTypes.contains(block.type))
+				{
+					try
+					{
+						block.block = PcapNgStructureParser.decodeBlock(block.type, block.body, block.order == ByteOrder.BIG_ENDIAN);
+					}
+					catch (RuntimeException e)
+					{
+						throw new DecodeException("File parsing error | invalid block of type " + block.type);
+					}
+				}
+				block.body = null;
+			}
+			if (!publish(decodedQueue, batch, count))
+				return;
+		}
+	}
+
+	/**
+	 * Visiting stage (calling thread)
+	 */
+	private void visit(SpscRingBuffer<PipelineBlock> decodedQueue, BlockVisitor visitor)
+	{
+		PipelineBlock[] batch = new PipelineBlock[batchSize];
+		SectionContext section = new SectionContext();
+		int count;
+
+		while ((count = take(decodedQueue, batch)) > 0)
+		{
+			for (int i = 0; i < count;i++)
+			{
+				PipelineBlock block = batch[i];
+				batch[i] = null;
+
+				if (block.type == BlockTypes.SECTION_HEADER_BLOCK)
+					section.startSection(block.order);
+				else if (block.block instanceof IDescriptionBlock)
+				{
+					try
+					{
+						section.addInterface((IDescriptionBlock) block.block);
+					}
+					catch (RuntimeException e)
+					{
+						fail(new DecodeException("File parsing error | invalid interface description block"));
+						return;
+					}
+				}
+				else if (block.block instanceof EnhancedPacketHeader)
+					section.bindInterface((EnhancedPacketHeader) block.block);
+
+				if (block.block != null && decodedTypes.contains(block.type) && !visitor.visit(block.block, section))
+				{
+					stopped = true;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package fr.bmartel.pcapdecoder.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue between exactly one producer thread and one consumer thread
+ *
+ * Slots are an array of power of two length indexed by two ever increasing counters : tail (next slot
+ * written by producer) and head (next slot read by consumer). Each side only writes its own counter, with an
+ * ordered (lazySet) write published after the slots, so no lock and no CAS is needed. Batch methods
+ * publish several elements with a single counter write.
+ *
+ * The producer calls close() once it has offered its last element. The consumer knows there is nothing more
+ * to read when isClosed() is true and the queue is empty.
+ *
+ * @param <E>
+ * 		element type
+ */
+public class SpscRingBuffer<E> {
+
+	/**
+	 * index of head and tail counters in counters array : kept 128 bytes apart so that producer and consumer
+	 * don't write the same cache line
+	 */
+	private final static int HEAD = 15;
+
+	private final static int TAIL = 31;
+
+	private final Object[] slots;
+
+	private final int mask;
+
+	private final AtomicLongArray counters = new AtomicLongArray(TAIL + 16);
+
+	/**
+	 * last head seen by producer (only used by producer thread)
+	 */
+	private long cachedHead = 0;
+
+	/**
+	 * last tail seen by consumer (only used by consumer thread)
+	 */
+	private long cachedTail = 0;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * @param capacity
+	 * 		maximum number of elements (rounded up to a power of two)
+	 */
+	public SpscRingBuffer(int capacity)
+	{
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity)
+			size <<= 1;
+
+		slots = new Object[size];
+		mask = size - 1;
+	}
+
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Add an element (producer thread only)
+	 *
+	 * @param element
+	 * @return
+	 * 		false if queue is full
+	 */
+	public boolean offer(E element)
+	{
+		long tail = counters.get(TAIL);
+
+		if (tail - cachedHead >= slots.length)
+		{
+			cachedHead = counters.get(HEAD);
+
+			if (tail - cachedHead >= slots.length)
+				return false;
+		}
+		slots[(int) tail & mask] = element;
+		counters.lazySet(TAIL, tail + 1);
+		return true;
+	}
+
+	/**
+	 * Add as many elements as possible from an array (producer thread only)
+	 *
+	 * @param elements
+	 * @param offset
+	 * 		index of first element to add
+	 * @param count
+	 * 		number of elements to add
+	 * @return
+	 * 		number of elements added (0 if queue is full)
+	 */
+	public int offer(E[] elements, int offset, int count)
+	{
+		long tail = counters.get(TAIL);
+		long free = slots.length - (tail - cachedHead);
+
+		if (free < count)
+		{
+			cachedHead = counters.get(HEAD);
+			free = slots.length - (tail - cachedHead);
+		}
+
+		int added = (int) Math.min(free, count);
+
+		for (int i = 0; i < added;i++)
+			slots[(int) (tail + i) & mask] = elements[offset + i];
+
+		if (added > 0)
+			counters.lazySet(TAIL, tail + added);
+
+		return added;
+	}
+
+	/**
+	 * Remove first element (consumer thread only)
+	 *
+	 * @return
+	 * 		first element or null if queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll()
+	{
+		long head = counters.get(HEAD);
+
+		if (head >= cachedTail)
+		{
+			cachedTail = counters.get(TAIL);
+
+			if (head >= cachedTail)
+				return null;
+		}
+
+		int index = (int) head & mask;
+		E element = (E) slots[index];
+		slots[index] = null;
+		counters.lazySet(HEAD, head + 1);
+		return element;
+	}
+
+	/**
+	 * Remove up to max elements (consumer thread only)
+	 *
+	 * @param target
+	 * 		array receiving elements from index 0
+	 * @param max
+	 * 		maximum number of elements to remove
+	 * @return
+	 * 		number of elements removed (0 if queue is empty)
+	 */
+	@SuppressWarnings("unchecked")
+	public int drain(E[] target, int max)
+	{
+		long head = counters.get(HEAD);
+
+		if (head + max > cachedTail)
+			cachedTail = counters.get(TAIL);
+
+		int count = (int) Math.min(cachedTail - head, max);
+
+		for (int i = 0; i < count;i++)
+		{
+			int index = (int) (head + i) & mask;
+			target[i] = (E) slots[index];
+			slots[index] = null;
+		}
+
+		if (count > 0)
+			counters.lazySet(HEAD, head + count);
+
+		return count;
+	}
+
+	public int size()
+	{
+		return (int) (counters.get(TAIL) - counters.get(HEAD));
+	}
+
+	public boolean isEmpty()
+	{
+		return counters.get(TAIL) == counters.get(HEAD);
+	}
+
+	/**
+	 * Signal that producer won't add any more element
+	 */
+	public void close()
+	{
+		closed = true;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Wait strategy used by producer or consumer when queue is full or empty : spin, then yield, then park
+	 * for a short time
+	 *
+	 * @param attempt
+	 * 		number of consecutive unsuccessful attempts
+	 */
+	public static void idle(int attempt)
+	{
+		if (attempt < 64)
+			return;
+		else if (attempt < 128)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(50000);
+	}
+}
@@ -0,0 +1,199 @@
+package fr.bmartel.pcapdecoder.reassembly;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed pool of equal size chunks carved from a single byte array
+ *
+ * Buffered data is kept in chains of chunks linked by an int array, so the memory used by reassembly never
+ * grows past the arena size and nothing is allocated once the arena exists. Free chunks are kept on a stack.
+ * An arena is used by one thread at a time.
+ *
+ */
+public class BufferArena {
+
+	public final static int NONE = -1;
+
+	private final byte[] data;
+
+	private final ByteBuffer buffer;
+
+	private final int chunkSize;
+
+	/**
+	 * next chunk of each chunk in its chain (NONE for last one)
+	 */
+	private final int[] nextChunk;
+
+	private final int[] freeChunks;
+
+	private int freeCount;
+
+	/**
+	 * @param capacity
+	 * 		arena size in bytes (rounded down to a multiple of chunk size)
+	 * @param chunkSize
+	 * 		chunk size in bytes
+	 */
+	public BufferArena(int capacity, int chunkSize)
+	{
+		if (chunkSize <= 0 || capacity < chunkSize)
+			throw new IllegalArgumentException("invalid arena size " + capacity + " for chunk size " + chunkSize);
+
+		int chunkCount = capacity / chunkSize;
+
+		this.chunkSize = chunkSize;
+		data = new byte[chunkCount * chunkSize];
+		buffer = ByteBuffer.wrap(data);
+		nextChunk = new int[chunkCount];
+		freeChunks = new int[chunkCount];
+
+		// lowest chunks are given first
+		for (int i = 0; i < chunkCount; i++)
+			freeChunks[i] = chunkCount - 1 - i;
+
+		freeCount = chunkCount;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getChunkCount() {
+		return nextChunk.length;
+	}
+
+	public int getFreeChunkCount() {
+		return freeCount;
+	}
+
+	/**
+	 * @return
+	 * 		buffer wrapping the whole arena
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @param length
+	 * 		number of bytes
+	 * @return
+	 * 		number of chunks needed to hold them
+	 */
+	public int chunksFor(int length) {
+		return (length + chunkSize - 1) / chunkSize;
+	}
+
+	/**
+	 * @param chunk
+	 * @return
+	 * 		index of first byte of chunk in arena buffer
+	 */
+	public int getOffset(int chunk) {
+		return chunk * chunkSize;
+	}
+
+	/**
+	 * @param chunk
+	 * @return
+	 * 		next chunk in chain or NONE
+	 */
+	public int next(int chunk) {
+		return nextChunk[chunk];
+	}
+
+	/**
+	 * Take a chain of chunks
+	 *
+	 * @param count
+	 * 		number of chunks
+	 * @return
+	 * 		first chunk of chain or NONE if there are not enough free chunks
+	 */
+	public int allocate(int count)
+	{
+		if (count <= 0 || count > freeCount)
+			return NONE;
+
+		int first = NONE;
+
+		for (int i = 0; i < count; i++)
+		{
+			int chunk = freeChunks[--freeCount];
+
+			nextChunk[chunk] = first;
+			first = chunk;
+		}
+		return first;
+	}
+
+	/**
+	 * Give a chain back to the arena
+	 *
+	 * @param chain
+	 * 		first chunk of chain
+	 */
+	public void free(int chain)
+	{
+		while (chain != NONE)
+		{
+			int next = nextChunk[chain];
+
+			freeChunks[freeCount++] = chain;
+			chain = next;
+		}
+	}
+
+	/**
+	 * Copy bytes into a chain
+	 *
+	 * @param chain
+	 * 		first chunk of chain
+	 * @param position
+	 * 		index of first written byte from start of chain
+	 * @param source
+	 * 		buffer to copy from (its position is restored)
+	 * @param offset
+	 * 		index of first byte to copy in source
+	 * @param length
+	 * 		number of bytes to copy
+	 */
+	public void write(int chain, int position, ByteBuffer source, int offset, int length)
+	{
+		int chunk = chain;
+
+		while (position >= chunkSize)
+		{
+			chunk = nextChunk[chunk];
+			position -= chunkSize;
+		}
+
+		while (length > 0)
+		{
+			int count = Math.min(length, chunkSize - position);
+
+			copy(source, offset, chunk * chunkSize + position, count);
+			offset += count;
+			length -= count;
+			position = 0;
+			chunk = nextChunk[chunk];
+		}
+	}
+
+	private void copy(ByteBuffer source, int offset, int target, int length)
+	{
+		if (source.hasArray())
+		{
+			System.arraycopy(source.array(), source.arrayOffset() + offset, data, target, length);
+		}
+		else
+		{
+			int position = source.position();
+
+			source.position(offset);
+			source.get(data, target, length);
+			source.position(position);
+		}
+	}
+}
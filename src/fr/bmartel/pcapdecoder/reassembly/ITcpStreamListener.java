@@ -0,0 +1,66 @@
+package fr.bmartel.pcapdecoder.reassembly;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receive reassembled TCP streams from a TcpReassembler
+ *
+ * A stream is identified by the id of its flow in reassembler flow table, which gives its addresses and ports
+ * until onStreamClosed() returns. Data sent by each endpoint is given in sequence order, exactly once.
+ *
+ */
+public interface ITcpStreamListener {
+
+	/**
+	 * Called on first packet of a stream (SYN or first packet seen of a stream already open)
+	 *
+	 * @param reassembler
+	 * @param stream
+	 * 		stream id
+	 */
+	public void onStreamOpened(TcpReassembler reassembler, int stream);
+
+	/**
+	 * Called with next contiguous bytes sent by an endpoint. Buffer is either the packet buffer or the
+	 * reassembler arena : it must be read with absolute get methods and is only valid until this method
+	 * returns.
+	 *
+	 * @param reassembler
+	 * @param stream
+	 * 		stream id
+	 * @param endpoint
+	 * 		sending endpoint (0 or 1, as in flow table)
+	 * @param buffer
+	 * 		buffer containing data
+	 * @param offset
+	 * 		index of first byte in buffer
+	 * @param length
+	 * 		number of bytes
+	 */
+	public void onData(TcpReassembler reassembler, int stream, int endpoint, ByteBuffer buffer, int offset, int length);
+
+	/**
+	 * Called when bytes sent by an endpoint will never be delivered (not captured, or given up to free memory
+	 * or because stream is closed). Next data follows the missing bytes.
+	 *
+	 * @param reassembler
+	 * @param stream
+	 * 		stream id
+	 * @param endpoint
+	 * 		sending endpoint
+	 * @param length
+	 * 		number of missing bytes
+	 */
+	public void onGap(TcpReassembler reassembler, int stream, int endpoint, long length);
+
+	/**
+	 * Called once all data of a stream has been delivered
+	 *
+	 * @param reassembler
+	 * @param stream
+	 * 		stream id
+	 * @param reason
+	 * 		TcpReassembler.CLOSED_FIN, CLOSED_RESET, CLOSED_TIMEOUT or CLOSED_FLUSHED
+	 */
+	public void onStreamClosed(TcpReassembler reassembler, int stream, int reason);
+}
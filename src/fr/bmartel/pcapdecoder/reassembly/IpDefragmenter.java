@@ -0,0 +1,765 @@
+package fr.bmartel.pcapdecoder.reassembly;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.constant.IpProtocols;
+import fr.bmartel.pcapdecoder.dissector.InternetChecksum;
+import fr.bmartel.pcapdecoder.dissector.Ipv4Header;
+import fr.bmartel.pcapdecoder.dissector.Ipv6Header;
+import fr.bmartel.pcapdecoder.dissector.PacketBytes;
+
+/**
+ * Rebuild IPv4 and IPv6 datagrams from their fragments
+ *
+ * Datagrams being reassembled are keyed by IP version, addresses, identification and protocol. Their
+ * payload is copied into chunks of a BufferArena of fixed size, mapped by payload offset, and missing parts are
+ * tracked with a list of hole descriptors (RFC 815) : a fragment only fills holes, so bytes received twice
+ * keep their first value. When no hole is left, header of first fragment and payload are copied into a
+ * single buffer (fragment fields and lengths being rewritten, IPv6 fragment header being removed) which
+ * is read like any captured datagram.
+ *
+ * Datagrams are dropped when packet time reaches their first fragment time plus timeout, and the oldest
+ * datagrams are dropped when arena is full, so memory used doesn't depend on capture size. Give a
+ * defragmenter to PacketDissector.setDefragmenter() so that IP and transport views of the dissector point
+ * at whole datagrams.
+ *
+ */
+public class IpDefragmenter {
+
+	public final static int DEFAULT_MEMORY_BUDGET = 8 * 1024 * 1024;
+
+	public final static int CHUNK_SIZE = 2048;
+
+	/**
+	 * default timeout (30 seconds)
+	 */
+	public final static long DEFAULT_TIMEOUT = 30000000000L;
+
+	/**
+	 * timestamp of packets whose time is unknown
+	 */
+	public final static long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private final static int NONE = -1;
+
+	private final static int MAX_PAYLOAD_LENGTH = 65535;
+
+	private final static int CHUNKS_PER_DATAGRAM = (MAX_PAYLOAD_LENGTH + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+	private final static int UNKNOWN_LENGTH = -1;
+
+	private final static int IPV4_DONT_FRAGMENT = 0x4000;
+
+	private final BufferArena arena;
+
+	private long timeout = DEFAULT_TIMEOUT;
+
+	/**
+	 * latest packet time
+	 */
+	private long now = NO_TIMESTAMP;
+
+	/*
+	 * datagrams being reassembled
+	 */
+
+	private final long[] sourceHighs;
+
+	private final long[] sourceLows;
+
+	private final long[] destinationHighs;
+
+	private final long[] destinationLows;
+
+	/**
+	 * IP version << 8 | protocol
+	 */
+	private final int[] infos;
+
+	private final int[] identifications;
+
+	private final long[] firstSeens;
+
+	private final int[] fragmentCounts;
+
+	/**
+	 * sum of packet lengths given with fragments
+	 */
+	private final long[] fragmentBytes;
+
+	/**
+	 * chunk holding header of first fragment (IPv4 header or IPv6 unfragmentable part)
+	 */
+	private final int[] headerChunks;
+
+	private final int[] headerLengths;
+
+	/**
+	 * payload length given by last fragment
+	 */
+	private final int[] payloadLengths;
+
+	private final int[] holeHeads;
+
+	/**
+	 * payload chunks of each datagram indexed by payload offset / CHUNK_SIZE
+	 */
+	private final int[] payloadChunks;
+
+	/**
+	 * next datagram in hash bucket, or next free datagram
+	 */
+	private final int[] hashNexts;
+
+	private final int[] buckets;
+
+	/**
+	 * datagrams in order of first fragment
+	 */
+	private final int[] agePrevious;
+
+	private final int[] ageNext;
+
+	private int ageHead = NONE;
+
+	private int ageTail = NONE;
+
+	private int freeDatagram;
+
+	private int size = 0;
+
+	/*
+	 * hole descriptors : first and last missing payload byte
+	 */
+
+	private final int[] holeFirsts;
+
+	private final int[] holeLasts;
+
+	private final int[] holeNexts;
+
+	private int freeHole;
+
+	private int freeHoleCount;
+
+	/**
+	 * whole datagram of last completed reassembly
+	 */
+	private final byte[] datagram = new byte[Ipv6Header.HEADER_LENGTH + MAX_PAYLOAD_LENGTH];
+
+	private final ByteBuffer datagramBuffer = ByteBuffer.wrap(datagram);
+
+	private int datagramLength = 0;
+
+	private int datagramFragments = 0;
+
+	private long datagramBytes = 0;
+
+	private long reassembledCount = 0;
+
+	private long timeoutCount = 0;
+
+	private long evictionCount = 0;
+
+	public IpDefragmenter()
+	{
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param memoryBudget
+	 * 		size in bytes of the arena holding fragments
+	 */
+	public IpDefragmenter(int memoryBudget)
+	{
+		arena = new BufferArena(memoryBudget, CHUNK_SIZE);
+
+		// a datagram holds at least one chunk
+		int capacity = arena.getChunkCount();
+
+		sourceHighs = new long[capacity];
+		sourceLows = new long[capacity];
+		destinationHighs = new long[capacity];
+		destinationLows = new long[capacity];
+		infos = new int[capacity];
+		identifications = new int[capacity];
+		firstSeens = new long[capacity];
+		fragmentCounts = new int[capacity];
+		fragmentBytes = new long[capacity];
+		headerChunks = new int[capacity];
+		headerLengths = new int[capacity];
+		payloadLengths = new int[capacity];
+		holeHeads = new int[capacity];
+		payloadChunks = new int[capacity * CHUNKS_PER_DATAGRAM];
+		hashNexts = new int[capacity];
+		agePrevious = new int[capacity];
+		ageNext = new int[capacity];
+
+		for (int i = 0; i < capacity; i++)
+			hashNexts[i] = i + 1;
+
+		hashNexts[capacity - 1] = NONE;
+		freeDatagram = 0;
+
+		buckets = new int[Integer.highestOneBit(capacity) * 2];
+		Arrays.fill(buckets, NONE);
+
+		// a fragment adds at most one hole
+		int holeCount = capacity * 4;
+
+		holeFirsts = new int[holeCount];
+		holeLasts = new int[holeCount];
+		holeNexts = new int[holeCount];
+
+		for (int i = 0; i < holeCount; i++)
+			holeNexts[i] = i + 1;
+
+		holeNexts[holeCount - 1] = NONE;
+		freeHole = 0;
+		freeHoleCount = holeCount;
+	}
+
+	/**
+	 * @param timeout
+	 * 		time in nanoseconds after first fragment at which an incomplete datagram is dropped
+	 */
+	public void setTimeout(long timeout) {
+		if (timeout <= 0)
+			throw new IllegalArgumentException("timeout must be positive");
+
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return
+	 * 		buffer containing last reassembled datagram from index 0
+	 */
+	public ByteBuffer getBuffer() {
+		return datagramBuffer;
+	}
+
+	/**
+	 * @return
+	 * 		length of last reassembled datagram
+	 */
+	public int getLength() {
+		return datagramLength;
+	}
+
+	/**
+	 * @return
+	 * 		number of fragments received for last reassembled datagram (duplicates included)
+	 */
+	public int getFragmentCount() {
+		return datagramFragments;
+	}
+
+	/**
+	 * @return
+	 * 		sum of packet lengths given with fragments of last reassembled datagram
+	 */
+	public long getFragmentBytes() {
+		return datagramBytes;
+	}
+
+	/**
+	 * @return
+	 * 		number of datagrams being reassembled
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getReassembledCount() {
+		return reassembledCount;
+	}
+
+	/**
+	 * @return
+	 * 		number of incomplete datagrams dropped on timeout
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * @return
+	 * 		number of incomplete datagrams dropped to free memory
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Add a complete (not truncated) IPv4 fragment
+	 *
+	 * @param ipv4
+	 * 		view of the fragment
+	 * @param timestamp
+	 * 		packet time in nanoseconds (or NO_TIMESTAMP)
+	 * @param length
+	 * 		length of packet carrying the fragment (added to getFragmentBytes())
+	 * @return
+	 * 		true if datagram is complete (see getBuffer() and getLength())
+	 */
+	public boolean addIpv4(Ipv4Header ipv4, long timestamp, long length)
+	{
+		boolean first = ipv4.getFragmentOffset() == 0;
+
+		return add(4, ipv4.getProtocol(), 0, ipv4.getSourceAddress() & 0xFFFFFFFFL, 0, ipv4.getDestinationAddress() & 0xFFFFFFFFL,
+				ipv4.getIdentification(), ipv4.getBuffer(), ipv4.getOffset(), first ? ipv4.getHeaderLength() : 0,
+				ipv4.getPayloadOffset(), ipv4.getPayloadLength(), ipv4.getFragmentOffset(), ipv4.isMoreFragments(), timestamp, length);
+	}
+
+	/**
+	 * Add a complete (not truncated) IPv6 fragment
+	 *
+	 * @param ipv6
+	 * 		view of the fragment
+	 * @param timestamp
+	 * 		packet time in nanoseconds (or NO_TIMESTAMP)
+	 * @param length
+	 * 		length of packet carrying the fragment (added to getFragmentBytes())
+	 * @return
+	 * 		true if datagram is complete (see getBuffer() and getLength())
+	 */
+	public boolean addIpv6(Ipv6Header ipv6, long timestamp, long length)
+	{
+		ByteBuffer buffer = ipv6.getBuffer();
+		int fragmentHeader = ipv6.getFragmentHeaderOffset();
+		int dataOffset = fragmentHeader + 8;
+		boolean first = ipv6.getFragmentOffset() == 0;
+
+		return add(6, PacketBytes.getUnsignedByte(buffer, fragmentHeader), ipv6.getSourceHigh(), ipv6.getSourceLow(),
+				ipv6.getDestinationHigh(), ipv6.getDestinationLow(), ipv6.getFragmentIdentification(), buffer, ipv6.getOffset(),
+				first ? fragmentHeader - ipv6.getOffset() : 0, dataOffset,
+				ipv6.getOffset() + Ipv6Header.HEADER_LENGTH + ipv6.getPayloadLengthField() - dataOffset, ipv6.getFragmentOffset(),
+				ipv6.isMoreFragments(), timestamp, length);
+	}
+
+	/**
+	 * @param headerLength
+	 * 		length of header to keep (0 if this is not the first fragment)
+	 */
+	private boolean add(int version, int protocol, long sourceHigh, long sourceLow, long destinationHigh, long destinationLow,
+			int identification, ByteBuffer buffer, int headerOffset, int headerLength, int dataOffset, int dataLength,
+			int fragmentOffset, boolean more, long timestamp, long length)
+	{
+		if (timestamp != NO_TIMESTAMP && (now == NO_TIMESTAMP || timestamp > now))
+		{
+			now = timestamp;
+			expire(now);
+		}
+
+		if (dataLength < 0 || fragmentOffset + dataLength > MAX_PAYLOAD_LENGTH || headerLength > CHUNK_SIZE)
+			return false;
+
+		int info = (version << 8) | protocol;
+		int hash = hash(sourceHigh, sourceLow, destinationHigh, destinationLow, identification, info);
+		int datagram = lookup(sourceHigh, sourceLow, destinationHigh, destinationLow, identification, info, hash);
+
+		if (datagram == NONE)
+		{
+			if (!reserve(NONE, 1, 0, 1))
+				return false;
+
+			datagram = create(sourceHigh, sourceLow, destinationHigh, destinationLow, identification, info, hash);
+		}
+
+		fragmentCounts[datagram]++;
+		fragmentBytes[datagram] += length;
+
+		int payloadLength = payloadLengths[datagram];
+		int end = fragmentOffset + dataLength;
+
+		// data beyond end of datagram, or two different ends
+		if ((payloadLength != UNKNOWN_LENGTH && (end > payloadLength || (!more && end != payloadLength))))
+		{
+			release(datagram);
+			return false;
+		}
+
+		int chunks = (dataLength > 0) ? (end - 1) / CHUNK_SIZE - fragmentOffset / CHUNK_SIZE + 1 : 0;
+
+		if (headerLength > 0 && headerChunks[datagram] == NONE)
+			chunks++;
+
+		if (!reserve(datagram, 0, chunks, 2))
+		{
+			evictionCount++;
+			release(datagram);
+			return false;
+		}
+
+		if (headerLength > 0 && headerChunks[datagram] == NONE)
+		{
+			headerChunks[datagram] = arena.allocate(1);
+			headerLengths[datagram] = headerLength;
+			arena.write(headerChunks[datagram], 0, buffer, headerOffset, headerLength);
+		}
+
+		if (!more)
+		{
+			payloadLengths[datagram] = end;
+			removeHolesFrom(datagram, end);
+		}
+
+		if (dataLength > 0)
+			fill(datagram, fragmentOffset, end - 1, more, buffer, dataOffset);
+
+		if (holeHeads[datagram] != NONE || headerChunks[datagram] == NONE || payloadLengths[datagram] == UNKNOWN_LENGTH)
+			return false;
+
+		boolean valid = assemble(datagram);
+
+		datagramFragments = fragmentCounts[datagram];
+		datagramBytes = fragmentBytes[datagram];
+		release(datagram);
+
+		if (valid)
+			reassembledCount++;
+
+		return valid;
+	}
+
+	/**
+	 * Copy fragment [first, last] into holes it covers (RFC 815)
+	 */
+	private void fill(int datagram, int first, int last, boolean more, ByteBuffer buffer, int dataOffset)
+	{
+		int previous = NONE;
+		int hole = holeHeads[datagram];
+
+		while (hole != NONE)
+		{
+			int holeFirst = holeFirsts[hole];
+			int holeLast = holeLasts[hole];
+			int next = holeNexts[hole];
+
+			if (first > holeLast || last < holeFirst)
+			{
+				previous = hole;
+				hole = next;
+				continue;
+			}
+
+			// replace hole by the holes left on each side of fragment
+			int replacement = next;
+
+			if (last < holeLast && more)
+				replacement = newHole(last + 1, holeLast, replacement);
+			if (first > holeFirst)
+				replacement = newHole(holeFirst, first - 1, replacement);
+
+			if (previous != NONE)
+				holeNexts[previous] = replacement;
+			else
+				holeHeads[datagram] = replacement;
+
+			int copyFirst = Math.max(first, holeFirst);
+			int copyLast = Math.min(last, holeLast);
+
+			copy(datagram, copyFirst, copyLast - copyFirst + 1, buffer, dataOffset + copyFirst - first);
+			freeHole(hole);
+
+			// holes created before next one have already been checked
+			while (replacement != next)
+			{
+				previous = replacement;
+				replacement = holeNexts[replacement];
+			}
+			hole = next;
+		}
+	}
+
+	/**
+	 * Copy payload bytes, taking chunks as needed
+	 */
+	private void copy(int datagram, int offset, int length, ByteBuffer buffer, int bufferOffset)
+	{
+		while (length > 0)
+		{
+			int index = datagram * CHUNKS_PER_DATAGRAM + offset / CHUNK_SIZE;
+			int position = offset % CHUNK_SIZE;
+			int count = Math.min(length, CHUNK_SIZE - position);
+
+			if (payloadChunks[index] == NONE)
+				payloadChunks[index] = arena.allocate(1);
+
+			arena.write(payloadChunks[index], position, buffer, bufferOffset, count);
+			offset += count;
+			bufferOffset += count;
+			length -= count;
+		}
+	}
+
+	/**
+	 * Drop holes beyond payload end
+	 */
+	private void removeHolesFrom(int datagram, int end)
+	{
+		int previous = NONE;
+		int hole = holeHeads[datagram];
+
+		while (hole != NONE)
+		{
+			int next = holeNexts[hole];
+
+			if (holeFirsts[hole] >= end)
+			{
+				if (previous != NONE)
+					holeNexts[previous] = next;
+				else
+					holeHeads[datagram] = next;
+				freeHole(hole);
+			}
+			else
+			{
+				if (holeLasts[hole] >= end)
+					holeLasts[hole] = end - 1;
+				previous = hole;
+			}
+			hole = next;
+		}
+	}
+
+	/**
+	 * Copy header and payload in datagram buffer and rewrite header
+	 *
+	 * @return
+	 * 		false if datagram is too long
+	 */
+	private boolean assemble(int datagram)
+	{
+		int headerLength = headerLengths[datagram];
+		int payloadLength = payloadLengths[datagram];
+		boolean ipv6 = (infos[datagram] >>> 8) == 6;
+		int length = headerLength + payloadLength;
+
+		if ((ipv6 && length - Ipv6Header.HEADER_LENGTH > MAX_PAYLOAD_LENGTH) || (!ipv6 && length > MAX_PAYLOAD_LENGTH))
+			return false;
+
+		System.arraycopy(arena.getBuffer().array(), arena.getOffset(headerChunks[datagram]), this.datagram, 0, headerLength);
+
+		for (int offset = 0; offset < payloadLength; offset += CHUNK_SIZE)
+		{
+			int chunk = payloadChunks[datagram * CHUNKS_PER_DATAGRAM + offset / CHUNK_SIZE];
+
+			System.arraycopy(arena.getBuffer().array(), arena.getOffset(chunk), this.datagram, headerLength + offset,
+					Math.min(CHUNK_SIZE, payloadLength - offset));
+		}
+
+		if (ipv6)
+		{
+			putShort(4, length - Ipv6Header.HEADER_LENGTH);
+			this.datagram[nextHeaderOfFragmentHeader(headerLength)] = (byte) infos[datagram];
+		}
+		else
+		{
+			putShort(2, length);
+			putShort(6, PacketBytes.getUnsignedShort(datagramBuffer, 6) & IPV4_DONT_FRAGMENT);
+			putShort(10, 0);
+			putShort(10, InternetChecksum.checksum(InternetChecksum.sum(datagramBuffer, 0, headerLength)));
+		}
+		datagramLength = length;
+		return true;
+	}
+
+	/**
+	 * @return
+	 * 		index of the next header field which pointed at fragment header (last one of unfragmentable part)
+	 */
+	private int nextHeaderOfFragmentHeader(int headerLength)
+	{
+		int field = 6;
+		int index = Ipv6Header.HEADER_LENGTH;
+
+		while (index < headerLength)
+		{
+			int next = datagram[field] & 0xFF;
+
+			field = index;
+			index += (next == IpProtocols.AH) ? ((datagram[index + 1] & 0xFF) + 2) * 4 : ((datagram[index + 1] & 0xFF) + 1) * 8;
+		}
+		return field;
+	}
+
+	private void putShort(int index, int value)
+	{
+		datagram[index] = (byte) (value >>> 8);
+		datagram[index + 1] = (byte) value;
+	}
+
+	/**
+	 * Drop datagrams whose first fragment is older than timeout. Datagrams started before any packet
+	 * time was known are timed from the first time given here
+	 *
+	 * @param now
+	 * 		current packet time in nanoseconds
+	 */
+	public void expire(long now)
+	{
+		if (now == NO_TIMESTAMP)
+			return;
+
+		// datagrams without time are at the head of age list
+		for (int datagram = ageHead; datagram != NONE && firstSeens[datagram] == NO_TIMESTAMP; datagram = ageNext[datagram])
+			firstSeens[datagram] = now;
+
+		while (ageHead != NONE && now - firstSeens[ageHead] >= timeout)
+		{
+			timeoutCount++;
+			release(ageHead);
+		}
+	}
+
+	/**
+	 * Make room for a fragment, dropping oldest datagrams other than the one being reassembled
+	 *
+	 * @return
+	 * 		false if there is not enough room even without other datagrams
+	 */
+	private boolean reserve(int datagram, int datagrams, int chunks, int holes)
+	{
+		while ((datagrams > 0 && freeDatagram == NONE) || arena.getFreeChunkCount() < chunks || freeHoleCount < holes)
+		{
+			int victim = (ageHead != datagram) ? ageHead : ageNext[ageHead];
+
+			if (victim == NONE)
+				return false;
+
+			evictionCount++;
+			release(victim);
+		}
+		return true;
+	}
+
+	private static int hash(long sourceHigh, long sourceLow, long destinationHigh, long destinationLow, int identification, int info)
+	{
+		long h = (sourceHigh ^ Long.rotateLeft(sourceLow, 17)) * 0x9E3779B97F4A7C15L;
+		h = (h ^ destinationHigh ^ Long.rotateLeft(destinationLow, 31)) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ ((long) identification << 16) ^ info) * 0x165667B19E3779F9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int lookup(long sourceHigh, long sourceLow, long destinationHigh, long destinationLow, int identification, int info, int hash)
+	{
+		for (int datagram = buckets[hash & (buckets.length - 1)]; datagram != NONE; datagram = hashNexts[datagram])
+		{
+			if (identifications[datagram] == identification && sourceLows[datagram] == sourceLow && destinationLows[datagram] == destinationLow
+					&& infos[datagram] == info && sourceHighs[datagram] == sourceHigh && destinationHighs[datagram] == destinationHigh)
+				return datagram;
+		}
+		return NONE;
+	}
+
+	private int create(long sourceHigh, long sourceLow, long destinationHigh, long destinationLow, int identification, int info, int hash)
+	{
+		int datagram = freeDatagram;
+		int bucket = hash & (buckets.length - 1);
+
+		freeDatagram = hashNexts[datagram];
+		hashNexts[datagram] = buckets[bucket];
+		buckets[bucket] = datagram;
+
+		sourceHighs[datagram] = sourceHigh;
+		sourceLows[datagram] = sourceLow;
+		destinationHighs[datagram] = destinationHigh;
+		destinationLows[datagram] = destinationLow;
+		identifications[datagram] = identification;
+		infos[datagram] = info;
+		firstSeens[datagram] = now;
+		fragmentCounts[datagram] = 0;
+		fragmentBytes[datagram] = 0;
+		headerChunks[datagram] = NONE;
+		headerLengths[datagram] = 0;
+		payloadLengths[datagram] = UNKNOWN_LENGTH;
+		holeHeads[datagram] = newHole(0, MAX_PAYLOAD_LENGTH - 1, NONE);
+		Arrays.fill(payloadChunks, datagram * CHUNKS_PER_DATAGRAM, (datagram + 1) * CHUNKS_PER_DATAGRAM, NONE);
+
+		agePrevious[datagram] = ageTail;
+		ageNext[datagram] = NONE;
+
+		if (ageTail != NONE)
+			ageNext[ageTail] = datagram;
+		else
+			ageHead = datagram;
+
+		ageTail = datagram;
+		size++;
+		return datagram;
+	}
+
+	/**
+	 * Free a datagram with its chunks and holes
+	 */
+	private void release(int datagram)
+	{
+		int bucket = hash(sourceHighs[datagram], sourceLows[datagram], destinationHighs[datagram], destinationLows[datagram],
+				identifications[datagram], infos[datagram]) & (buckets.length - 1);
+
+		if (buckets[bucket] == datagram)
+			buckets[bucket] = hashNexts[datagram];
+		else
+		{
+			int previous = buckets[bucket];
+
+			while (hashNexts[previous] != datagram)
+				previous = hashNexts[previous];
+			hashNexts[previous] = hashNexts[datagram];
+		}
+
+		if (agePrevious[datagram] != NONE)
+			ageNext[agePrevious[datagram]] = ageNext[datagram];
+		else
+			ageHead = ageNext[datagram];
+
+		if (ageNext[datagram] != NONE)
+			agePrevious[ageNext[datagram]] = agePrevious[datagram];
+		else
+			ageTail = agePrevious[datagram];
+
+		if (headerChunks[datagram] != NONE)
+			arena.free(headerChunks[datagram]);
+
+		for (int i = datagram * CHUNKS_PER_DATAGRAM; i < (datagram + 1) * CHUNKS_PER_DATAGRAM; i++)
+		{
+			if (payloadChunks[i] != NONE)
+				arena.free(payloadChunks[i]);
+		}
+
+		int hole = holeHeads[datagram];
+
+		while (hole != NONE)
+		{
+			int next = holeNexts[hole];
+
+			freeHole(hole);
+			hole = next;
+		}
+
+		hashNexts[datagram] = freeDatagram;
+		freeDatagram = datagram;
+		size--;
+	}
+
+	private int newHole(int first, int last, int next)
+	{
+		int hole = freeHole;
+
+		freeHole = holeNexts[hole];
+		freeHoleCount--;
+		holeFirsts[hole] = first;
+		holeLasts[hole] = last;
+		holeNexts[hole] = next;
+		return hole;
+	}
+
+	private void freeHole(int hole)
+	{
+		holeNexts[hole] = freeHole;
+		freeHole = hole;
+		freeHoleCount++;
+	}
+}
@@ -0,0 +1,679 @@
+package fr.bmartel.pcapdecoder.reassembly;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.BlockVisitor;
+import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.constant.IpProtocols;
+import fr.bmartel.pcapdecoder.dissector.PacketDissector;
+import fr.bmartel.pcapdecoder.dissector.TcpHeader;
+import fr.bmartel.pcapdecoder.flow.FlowKey;
+import fr.bmartel.pcapdecoder.flow.FlowTable;
+import fr.bmartel.pcapdecoder.flow.IFlowListener;
+import fr.bmartel.pcapdecoder.structure.SectionContext;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+import fr.bmartel.pcapdecoder.utils.DecodeException;
+
+/**
+ * Rebuild the byte streams of TCP connections from captured segments
+ *
+ * Streams are the flows of a FlowTable (so they are removed on idle timeout). Sequence numbers of each
+ * endpoint are tracked as 64 bit offsets from its first sequence number. Segments received in order are
+ * given to the listener straight from the packet buffer. Segments received ahead of a hole are copied into
+ * chunks of a BufferArena of fixed size, overlapping bytes already buffered or delivered being dropped (first
+ * copy wins), and delivered once the hole is filled.
+ *
+ * When the arena is full, the oldest or the largest pending stream (see setEvictionPolicy()) gives up its
+ * holes : its buffered data is delivered with gaps and its chunks go back to the arena. So the heap used by
+ * reassembly doesn't depend on capture size.
+ *
+ * A stream is closed when FIN of both endpoints has been reached, on RST, on idle timeout and on flush().
+ * Packets of a closed stream are ignored until a new SYN.
+ *
+ */
+public class TcpReassembler extends BlockVisitor {
+
+	public final static int DEFAULT_MEMORY_BUDGET = 32 * 1024 * 1024;
+
+	public final static int DEFAULT_CHUNK_SIZE = 1024;
+
+	public final static int CLOSED_FIN = 0;
+
+	public final static int CLOSED_RESET = 1;
+
+	public final static int CLOSED_TIMEOUT = 2;
+
+	public final static int CLOSED_FLUSHED = 3;
+
+	/**
+	 * when arena is full, give up the holes of the stream which has had pending data for the longest time
+	 */
+	public final static int EVICT_OLDEST = 0;
+
+	/**
+	 * when arena is full, give up the holes of the stream with the most pending data
+	 */
+	public final static int EVICT_LARGEST = 1;
+
+	public final static int NONE = -1;
+
+	private final static int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * state of streams
+	 */
+	private final static byte STREAM_CLOSED = 0;
+
+	private final static byte STREAM_OPEN = 1;
+
+	private final FlowTable table = new FlowTable();
+
+	private final PacketDissector dissector;
+
+	private final FlowKey key = new FlowKey();
+
+	private final BufferArena arena;
+
+	private ITcpStreamListener listener = null;
+
+	private int evictionPolicy = EVICT_OLDEST;
+
+	/**
+	 * stream state indexed by flow id
+	 */
+	private byte[] streamStates = new byte[INITIAL_CAPACITY];
+
+	/*
+	 * endpoint state indexed by flow id * 2 + endpoint
+	 */
+
+	private boolean[] initialized = new boolean[INITIAL_CAPACITY * 2];
+
+	/**
+	 * sequence number of stream offset 0
+	 */
+	private long[] initialSequences = new long[INITIAL_CAPACITY * 2];
+
+	/**
+	 * offset of next byte to deliver
+	 */
+	private long[] nextOffsets = new long[INITIAL_CAPACITY * 2];
+
+	/**
+	 * offset of FIN (NONE until FIN is seen)
+	 */
+	private long[] finOffsets = new long[INITIAL_CAPACITY * 2];
+
+	/**
+	 * first buffered segment
+	 */
+	private int[] pendingHeads = new int[INITIAL_CAPACITY * 2];
+
+	private long[] pendingBytes = new long[INITIAL_CAPACITY * 2];
+
+	/**
+	 * list of endpoints with buffered segments, in order of first buffered segment (prev << 32 | next)
+	 */
+	private long[] pendingLinks = new long[INITIAL_CAPACITY * 2];
+
+	private int pendingListHead = NONE;
+
+	private int pendingListTail = NONE;
+
+	/*
+	 * buffered segments : a segment owns at least one chunk, so there are as many segments as chunks
+	 */
+
+	private final long[] segmentOffsets;
+
+	private final int[] segmentLengths;
+
+	private final int[] segmentChains;
+
+	/**
+	 * next segment of same endpoint by offset, or next free segment
+	 */
+	private final int[] segmentNexts;
+
+	private int freeSegment;
+
+	private long bufferedBytes = 0;
+
+	private long evictionCount = 0;
+
+	public TcpReassembler()
+	{
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param memoryBudget
+	 * 		size in bytes of the arena buffering segments received out of order
+	 */
+	public TcpReassembler(int memoryBudget)
+	{
+		this(memoryBudget, new PacketDissector());
+	}
+
+	/**
+	 * @param memoryBudget
+	 * 		size in bytes of the arena buffering segments received out of order
+	 * @param dissector
+	 * 		dissector used to decode packets (to register other link types)
+	 */
+	public TcpReassembler(int memoryBudget, PacketDissector dissector)
+	{
+		this.dissector = dissector;
+		arena = new BufferArena(memoryBudget, DEFAULT_CHUNK_SIZE);
+
+		int segmentCount = arena.getChunkCount();
+
+		segmentOffsets = new long[segmentCount];
+		segmentLengths = new int[segmentCount];
+		segmentChains = new int[segmentCount];
+		segmentNexts = new int[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++)
+			segmentNexts[i] = i + 1;
+
+		segmentNexts[segmentCount - 1] = NONE;
+		freeSegment = 0;
+
+		table.setFlowListener(new IFlowListener() {
+			@Override
+			public void onFlowRemoved(FlowTable table, int flow, int reason) {
+				if (flow < streamStates.length && streamStates[flow] == STREAM_OPEN)
+					close(flow, (reason == FlowTable.FLUSHED) ? CLOSED_FLUSHED : CLOSED_TIMEOUT);
+			}
+		});
+	}
+
+	/**
+	 * @return
+	 * 		table of streams, giving addresses and ports of a stream id (its flow listener is used by reassembler)
+	 */
+	public FlowTable getFlowTable() {
+		return table;
+	}
+
+	public PacketDissector getDissector() {
+		return dissector;
+	}
+
+	public void setStreamListener(ITcpStreamListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param idleTimeout
+	 * 		time in nanoseconds after last packet at which a stream is closed (0 to disable)
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		table.setIdleTimeout(idleTimeout);
+	}
+
+	/**
+	 * @param evictionPolicy
+	 * 		EVICT_OLDEST (default) or EVICT_LARGEST
+	 */
+	public void setEvictionPolicy(int evictionPolicy) {
+		if (evictionPolicy != EVICT_OLDEST && evictionPolicy != EVICT_LARGEST)
+			throw new IllegalArgumentException("invalid eviction policy " + evictionPolicy);
+
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * @return
+	 * 		number of bytes currently buffered out of order
+	 */
+	public long getBufferedBytes() {
+		return bufferedBytes;
+	}
+
+	/**
+	 * @return
+	 * 		number of times pending data of a stream has been given up to free memory
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public boolean onEnhancedPacket(IEnhancedPacketBLock packet, SectionContext section)
+	{
+		add(packet, section);
+		return true;
+	}
+
+	/**
+	 * Add a packet
+	 *
+	 * @param packet
+	 * 		packet bound to its interface description
+	 * @param section
+	 * 		section of the packet
+	 * @return
+	 * 		stream id or NONE if packet is not a TCP segment
+	 */
+	public int add(IEnhancedPacketBLock packet, SectionContext section)
+	{
+		long timestamp = section.toNanos(packet.getInterfaceId(), packet.getTimeStampValue());
+
+		if (!dissector.dissect(packet, timestamp))
+			return NONE;
+
+		return add(dissector, timestamp, packet.getPacketLength());
+	}
+
+	/**
+	 * Add all packets of a capture (byte array or mapped file source), then close remaining streams
+	 *
+	 * @param decoder
+	 * @throws DecodeException
+	 */
+	public void reassemble(PcapDecoder decoder) throws DecodeException
+	{
+		EnhancedPacketView view = new EnhancedPacketView();
+
+		while (decoder.nextEnhancedPacket(view))
+			add(view, decoder.getSectionContext());
+
+		flush();
+	}
+
+	/**
+	 * Add packet decoded by a dissector
+	 *
+	 * @param dissector
+	 * 		dissector of the packet
+	 * @param timestamp
+	 * 		packet timestamp in nanoseconds
+	 * @param length
+	 * 		packet length
+	 * @return
+	 * 		stream id or NONE if packet is not a TCP segment
+	 */
+	public int add(PacketDissector dissector, long timestamp, long length)
+	{
+		if (dissector.getTransportProtocol() != IpProtocols.TCP || !key.set(dissector))
+			return NONE;
+
+		TcpHeader tcp = dissector.getTcp();
+		int flags = tcp.getFlags();
+
+		// a reassembled segment counts the packets of all its fragments
+		int packets = dissector.isReassembled() ? dissector.getPacketCount() : 1;
+		int flow = table.add(key, timestamp, packets, dissector.isReassembled() ? dissector.getPacketBytes() : length);
+		boolean created = table.getPackets(flow, 0) + table.getPackets(flow, 1) == packets;
+
+		ensureCapacity(flow);
+
+		if (streamStates[flow] != STREAM_OPEN)
+		{
+			// packets following the end of a stream are ignored until a new SYN
+			if (!created && (flags & TcpHeader.FLAG_SYN) == 0)
+				return flow;
+
+			open(flow);
+		}
+
+		int endpoint = isEndpoint0(flow) ? 0 : 1;
+		int half = flow * 2 + endpoint;
+
+		if ((flags & TcpHeader.FLAG_RST) != 0)
+		{
+			close(flow, CLOSED_RESET);
+			return flow;
+		}
+
+		// SYN takes one sequence number before data
+		long sequence = tcp.getSequenceNumber() + (((flags & TcpHeader.FLAG_SYN) != 0) ? 1 : 0);
+
+		if (!initialized[half])
+		{
+			initialized[half] = true;
+			initialSequences[half] = sequence & 0xFFFFFFFFL;
+		}
+
+		long next = nextOffsets[half];
+		long offset = next + (int) (sequence - initialSequences[half] - next);
+		long end = offset + tcp.getPayloadLength();
+
+		if ((flags & TcpHeader.FLAG_FIN) != 0 && finOffsets[half] == NONE)
+			finOffsets[half] = end;
+
+		if (finOffsets[half] != NONE && end > finOffsets[half])
+			end = finOffsets[half];
+
+		if (end > offset)
+			addData(flow, half, offset, end, tcp.getBuffer(), tcp.getPayloadOffset());
+
+		if (isFinished(flow * 2) && isFinished(flow * 2 + 1))
+			close(flow, CLOSED_FIN);
+
+		return flow;
+	}
+
+	/**
+	 * Close all streams (remaining holes are given as gaps)
+	 */
+	public void flush()
+	{
+		table.flush();
+	}
+
+	private boolean isEndpoint0(int flow)
+	{
+		return key.getSourcePort() == table.getPort(flow, 0) && key.getSourceLow() == table.getAddressLow(flow, 0)
+				&& key.getSourceHigh() == table.getAddressHigh(flow, 0);
+	}
+
+	private boolean isFinished(int half)
+	{
+		return finOffsets[half] != NONE && nextOffsets[half] >= finOffsets[half];
+	}
+
+	private void ensureCapacity(int flow)
+	{
+		if (flow < streamStates.length)
+			return;
+
+		int capacity = Math.max(flow + 1, streamStates.length * 2);
+
+		streamStates = Arrays.copyOf(streamStates, capacity);
+		initialized = Arrays.copyOf(initialized, capacity * 2);
+		initialSequences = Arrays.copyOf(initialSequences, capacity * 2);
+		nextOffsets = Arrays.copyOf(nextOffsets, capacity * 2);
+		finOffsets = Arrays.copyOf(finOffsets, capacity * 2);
+		pendingHeads = Arrays.copyOf(pendingHeads, capacity * 2);
+		pendingBytes = Arrays.copyOf(pendingBytes, capacity * 2);
+		pendingLinks = Arrays.copyOf(pendingLinks, capacity * 2);
+	}
+
+	private void open(int flow)
+	{
+		streamStates[flow] = STREAM_OPEN;
+
+		for (int half = flow * 2; half < flow * 2 + 2; half++)
+		{
+			initialized[half] = false;
+			nextOffsets[half] = 0;
+			finOffsets[half] = NONE;
+			pendingHeads[half] = NONE;
+			pendingBytes[half] = 0;
+		}
+
+		if (listener != null)
+			listener.onStreamOpened(this, flow);
+	}
+
+	private void close(int flow, int reason)
+	{
+		flushPending(flow * 2);
+		flushPending(flow * 2 + 1);
+		streamStates[flow] = STREAM_CLOSED;
+
+		if (listener != null)
+			listener.onStreamClosed(this, flow, reason);
+	}
+
+	/**
+	 * Deliver or buffer bytes [offset, end) of an endpoint
+	 */
+	private void addData(int flow, int half, long offset, long end, ByteBuffer buffer, int bufferOffset)
+	{
+		while (true)
+		{
+			long next = nextOffsets[half];
+
+			// retransmission
+			if (end <= next)
+				return;
+
+			// overlap with delivered data
+			if (offset < next)
+			{
+				bufferOffset += (int) (next - offset);
+				offset = next;
+			}
+
+			if (offset == next)
+			{
+				deliver(flow, half & 1, buffer, bufferOffset, (int) (end - offset));
+				nextOffsets[half] = end;
+				drainPending(flow, half);
+				return;
+			}
+
+			if (insert(half, offset, end, buffer, bufferOffset, false) <= arena.getFreeChunkCount())
+			{
+				insert(half, offset, end, buffer, bufferOffset, true);
+				return;
+			}
+
+			// arena is full : give up holes of a stream, or the hole before this segment if nothing is buffered
+			if (!evict())
+			{
+				gap(flow, half & 1, offset - next);
+				nextOffsets[half] = offset;
+			}
+		}
+	}
+
+	/**
+	 * Buffer parts of [offset, end) not already buffered
+	 *
+	 * @param store
+	 * 		false to only count chunks needed
+	 * @return
+	 * 		number of chunks needed
+	 */
+	private int insert(int half, long offset, long end, ByteBuffer buffer, int bufferOffset, boolean store)
+	{
+		int previous = NONE;
+		int segment = pendingHeads[half];
+		long start = offset;
+		int chunks = 0;
+
+		while (start < end)
+		{
+			while (segment != NONE && segmentOffsets[segment] + segmentLengths[segment] <= start)
+			{
+				previous = segment;
+				segment = segmentNexts[segment];
+			}
+
+			long pieceEnd = (segment == NONE) ? end : Math.min(end, segmentOffsets[segment]);
+
+			if (pieceEnd > start)
+			{
+				int length = (int) (pieceEnd - start);
+
+				if (store)
+					previous = store(half, previous, segment, start, length, buffer, bufferOffset + (int) (start - offset));
+				else
+					chunks += arena.chunksFor(length);
+			}
+
+			if (segment == NONE)
+				break;
+
+			start = Math.max(start, segmentOffsets[segment] + segmentLengths[segment]);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Buffer a segment between two segments of an endpoint
+	 *
+	 * @return
+	 * 		new segment
+	 */
+	private int store(int half, int previous, int next, long offset, int length, ByteBuffer buffer, int bufferOffset)
+	{
+		int segment = freeSegment;
+		int chain = arena.allocate(arena.chunksFor(length));
+
+		freeSegment = segmentNexts[segment];
+		arena.write(chain, 0, buffer, bufferOffset, length);
+
+		segmentOffsets[segment] = offset;
+		segmentLengths[segment] = length;
+		segmentChains[segment] = chain;
+		segmentNexts[segment] = next;
+
+		if (previous != NONE)
+			segmentNexts[previous] = segment;
+		else
+			pendingHeads[half] = segment;
+
+		if (pendingBytes[half] == 0)
+			appendPending(half);
+
+		pendingBytes[half] += length;
+		bufferedBytes += length;
+		return segment;
+	}
+
+	/**
+	 * Deliver buffered segments reached by next offset
+	 */
+	private void drainPending(int flow, int half)
+	{
+		boolean pending = pendingHeads[half] != NONE;
+		int segment;
+
+		while ((segment = pendingHeads[half]) != NONE && segmentOffsets[segment] <= nextOffsets[half])
+		{
+			long end = segmentOffsets[segment] + segmentLengths[segment];
+
+			if (end > nextOffsets[half])
+			{
+				deliverChain(flow, half & 1, segmentChains[segment], (int) (nextOffsets[half] - segmentOffsets[segment]), (int) (end - nextOffsets[half]));
+				nextOffsets[half] = end;
+			}
+
+			pendingHeads[half] = segmentNexts[segment];
+			pendingBytes[half] -= segmentLengths[segment];
+			bufferedBytes -= segmentLengths[segment];
+			arena.free(segmentChains[segment]);
+			segmentNexts[segment] = freeSegment;
+			freeSegment = segment;
+		}
+
+		if (pending && pendingHeads[half] == NONE)
+			removePending(half);
+	}
+
+	/**
+	 * Deliver all buffered segments of an endpoint, skipping holes
+	 */
+	private void flushPending(int half)
+	{
+		int flow = half >> 1;
+		int segment;
+
+		while ((segment = pendingHeads[half]) != NONE)
+		{
+			if (segmentOffsets[segment] > nextOffsets[half])
+			{
+				gap(flow, half & 1, segmentOffsets[segment] - nextOffsets[half]);
+				nextOffsets[half] = segmentOffsets[segment];
+			}
+			drainPending(flow, half);
+		}
+	}
+
+	/**
+	 * Give up holes of the stream endpoint selected by eviction policy
+	 *
+	 * @return
+	 * 		false if no endpoint has buffered data
+	 */
+	private boolean evict()
+	{
+		int victim = pendingListHead;
+
+		if (victim == NONE)
+			return false;
+
+		if (evictionPolicy == EVICT_LARGEST)
+		{
+			for (int half = pendingListHead; half != NONE; half = (int) pendingLinks[half])
+			{
+				if (pendingBytes[half] > pendingBytes[victim])
+					victim = half;
+			}
+		}
+
+		evictionCount++;
+		flushPending(victim);
+		return true;
+	}
+
+	private void appendPending(int half)
+	{
+		pendingLinks[half] = ((long) pendingListTail << 32) | (NONE & 0xFFFFFFFFL);
+
+		if (pendingListTail != NONE)
+			pendingLinks[pendingListTail] = (pendingLinks[pendingListTail] & 0xFFFFFFFF00000000L) | (half & 0xFFFFFFFFL);
+		else
+			pendingListHead = half;
+
+		pendingListTail = half;
+	}
+
+	private void removePending(int half)
+	{
+		int previous = (int) (pendingLinks[half] >> 32);
+		int next = (int) pendingLinks[half];
+
+		if (previous != NONE)
+			pendingLinks[previous] = (pendingLinks[previous] & 0xFFFFFFFF00000000L) | (next & 0xFFFFFFFFL);
+		else
+			pendingListHead = next;
+
+		if (next != NONE)
+			pendingLinks[next] = ((long) previous << 32) | (pendingLinks[next] & 0xFFFFFFFFL);
+		else
+			pendingListTail = previous;
+
+	}
+
+	private void deliver(int flow, int endpoint, ByteBuffer buffer, int offset, int length)
+	{
+		if (listener != null)
+			listener.onData(this, flow, endpoint, buffer, offset, length);
+	}
+
+	private void deliverChain(int flow, int endpoint, int chain, int skip, int length)
+	{
+		int chunkSize = arena.getChunkSize();
+		int chunk = chain;
+
+		while (skip >= chunkSize)
+		{
+			chunk = arena.next(chunk);
+			skip -= chunkSize;
+		}
+
+		while (length > 0)
+		{
+			int count = Math.min(length, chunkSize - skip);
+
+			deliver(flow, endpoint, arena.getBuffer(), arena.getOffset(chunk) + skip, count);
+			length -= count;
+			skip = 0;
+			chunk = arena.next(chunk);
+		}
+	}
+
+	private void gap(int flow, int endpoint, long length)
+	{
+		if (listener != null)
+			listener.onGap(this, flow, endpoint, length);
+	}
+}
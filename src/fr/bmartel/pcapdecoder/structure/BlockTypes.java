@@ -8,19 +8,64 @@ package fr.bmartel.pcapdecoder.structure;
  */
 public enum BlockTypes {
 	//MANDATORY : it defines the most important characteristics of the capture file
-	SECTION_HEADER_BLOCK,
+	SECTION_HEADER_BLOCK(0x0A0D0D0A),
 	//MANDATORY : it defines the most important characteristics of the interface(s) used for capturing traffic
-	INTERFACE_DESCRIPTION_BLOCK,
+	INTERFACE_DESCRIPTION_BLOCK(0x00000001),
 	//OPTIONAL  : it contains a single captured packet, or a portion of it. It represents an evolution of the original Packet Block
-	ENHANCES_PACKET_BLOCK,
+	ENHANCES_PACKET_BLOCK(0x00000006),
 	//OPTIONAL  : it contains a single captured packet, or a portion of it, with only a minimal set of information about it
-	SIMPLE_PACKET_BLOCK,
+	SIMPLE_PACKET_BLOCK(0x00000003),
 	//OPTIONAL  : it defines the mapping from numeric addresses present in the packet dump and the canonical name counterpart
-	NAME_RESOLUTION_BLOCK,
+	NAME_RESOLUTION_BLOCK(0x00000004),
 	//OPTIONAL  : it defines how to store some statistical data (e.g. packet dropped, etc) which can be useful to undestand the conditions in which the capture has been made
-	INTERFACE_STATISTICS_BLOCK,
+	INTERFACE_STATISTICS_BLOCK(0x00000005),
 	//OBSOLETE  : it contains a single captured packet, or a portion of it. It should be considered OBSOLETE, and superseded by the Enhanced Packet Block
-	PACKET_BLOCK,
+	PACKET_BLOCK(0x00000002),
 	
-	UNKNOWN
+	UNKNOWN(-1);
+
+	/**
+	 * 32 bit Block Type value
+	 */
+	private final int code;
+
+	private BlockTypes(int code)
+	{
+		this.code=code;
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * Retrieve block type from 32 bit Block Type field value
+	 *
+	 * @param code
+	 * 		Block Type field read in section endianness
+	 * @return
+	 * 		block type or UNKNOWN
+	 */
+	public static BlockTypes fromCode(int code)
+	{
+		switch (code)
+		{
+			case 0x0A0D0D0A:
+				return SECTION_HEADER_BLOCK;
+			case 0x00000001:
+				return INTERFACE_DESCRIPTION_BLOCK;
+			case 0x00000002:
+				return PACKET_BLOCK;
+			case 0x00000003:
+				return SIMPLE_PACKET_BLOCK;
+			case 0x00000004:
+				return NAME_RESOLUTION_BLOCK;
+			case 0x00000005:
+				return INTERFACE_STATISTICS_BLOCK;
+			case 0x00000006:
+				return ENHANCES_PACKET_BLOCK;
+			default:
+				return UNKNOWN;
+		}
+	}
 }
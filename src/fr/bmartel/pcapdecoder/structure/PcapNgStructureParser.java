@@ -1,5 +1,7 @@
 package fr.bmartel.pcapdecoder.structure;
 
+import java.util.Arrays;
+
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
 import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
 import fr.bmartel.pcapdecoder.structure.types.impl.InterfaceDescriptionHeader;
@@ -91,6 +93,31 @@ public class PcapNgStructureParser {
 		}
 	}
 
+	/**
+	 * Decode a block from its body (block content without Block Type and Block Total Length fields)
+	 * 
+	 * @param type
+	 * 		block type
+	 * @param body
+	 * 		block body (byte-order magic included for section header block)
+	 * @param isBigEndian
+	 * 		section endianness
+	 * @return
+	 * 		decoded block or null if this block type is not decoded
+	 */
+	public static IPcapngType decodeBlock(BlockTypes type,byte[] body,boolean isBigEndian)
+	{
+		byte[] data = body;
+		
+		if (type==BlockTypes.SECTION_HEADER_BLOCK)
+		{
+			data = Arrays.copyOfRange(body, 4, body.length);
+		}
+		PcapNgStructureParser structure = new PcapNgStructureParser(type, data, isBigEndian);
+		structure.decode();
+		return structure.getPcapStruct();
+	}
+
 	public BlockTypes getBlockType() {
 		return blockType;
 	}
@@ -0,0 +1,138 @@
+package fr.bmartel.pcapdecoder.structure;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.impl.EnhancedPacketView;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+
+/**
+ * State of the section being decoded : byte order given by the section header block and
+ * interfaces described so far in this section (interface id is the index of the interface
+ * description block in the section)
+ *
+ * Interfaces are kept in an array indexed by interface id, emptied at each section header block,
+ * so that looking up the interface of a packet is a single array access.
+ *
+ */
+public class SectionContext {
+
+	private final static int INITIAL_INTERFACE_CAPACITY = 4;
+
+	private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+
+	private IDescriptionBlock[] interfaces = new IDescriptionBlock[INITIAL_INTERFACE_CAPACITY];
+
+	/**
+	 * timestamp converter of each interface, built when interface is added
+	 */
+	private TimestampConverter[] converters = new TimestampConverter[INITIAL_INTERFACE_CAPACITY];
+
+	private int interfaceCount = 0;
+
+	/**
+	 * Start a new section : interfaces of previous section are dropped
+	 *
+	 * @param byteOrder
+	 * 		byte order of the new section
+	 */
+	public void startSection(ByteOrder byteOrder)
+	{
+		this.byteOrder=byteOrder;
+
+		Arrays.fill(interfaces, 0, interfaceCount, null);
+		Arrays.fill(converters, 0, interfaceCount, null);
+		interfaceCount = 0;
+	}
+
+	/**
+	 * Register next interface of current section
+	 *
+	 * @param description
+	 */
+	public void addInterface(IDescriptionBlock description)
+	{
+		if (interfaceCount == interfaces.length)
+		{
+			interfaces = Arrays.copyOf(interfaces, interfaceCount * 2);
+			converters = Arrays.copyOf(converters, interfaceCount * 2);
+		}
+		interfaces[interfaceCount] = description;
+		converters[interfaceCount] = TimestampConverter.forInterface(description);
+		interfaceCount++;
+	}
+
+	/**
+	 * @param interfaceId
+	 * @return
+	 * 		interface description or null if this interface has not been described in current section
+	 */
+	public IDescriptionBlock getInterface(int interfaceId)
+	{
+		if (interfaceId < 0 || interfaceId >= interfaceCount)
+			return null;
+
+		return interfaces[interfaceId];
+	}
+
+	/**
+	 * Give a decoded packet a reference to its interface description, which remains valid once next
+	 * section has started
+	 *
+	 * @param packet
+	 * 		enhanced packet block of current section
+	 */
+	public void bindInterface(EnhancedPacketHeader packet)
+	{
+		packet.setInterfaceDescription(getInterface(packet.getInterfaceId()));
+	}
+
+	/**
+	 * @see #bindInterface(EnhancedPacketHeader)
+	 */
+	public void bindInterface(EnhancedPacketView packet)
+	{
+		packet.setInterfaceDescription(getInterface(packet.getInterfaceId()));
+	}
+
+	/**
+	 * @param interfaceId
+	 * @return
+	 * 		timestamp converter of this interface (microsecond resolution if interface has not been
+	 * 		described in current section)
+	 */
+	public TimestampConverter getTimestampConverter(int interfaceId)
+	{
+		if (interfaceId < 0 || interfaceId >= interfaceCount)
+			return TimestampConverter.DEFAULT;
+
+		return converters[interfaceId];
+	}
+
+	/**
+	 * Convert a packet or statistics timestamp to nanoseconds since epoch
+	 *
+	 * @param interfaceId
+	 * 		interface the timestamp has been taken on
+	 * @param timestamp
+	 * 		timestamp in interface resolution unit
+	 * @return
+	 */
+	public long toNanos(int interfaceId, long timestamp)
+	{
+		return getTimestampConverter(interfaceId).toNanos(timestamp);
+	}
+
+	public int getInterfaceCount() {
+		return interfaceCount;
+	}
+
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	public boolean isBigEndian() {
+		return byteOrder==ByteOrder.BIG_ENDIAN;
+	}
+}
@@ -0,0 +1,151 @@
+package fr.bmartel.pcapdecoder.structure;
+
+import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsDescriptionHeader;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+
+/**
+ * Convert timestamps of an interface to nanoseconds since epoch
+ *
+ * Conversion parameters are computed once from if_tsresol and if_tsoffset options of the interface
+ * description block, so converting a timestamp is a multiplication (decimal resolution up to
+ * nanosecond) or shifts and a multiplication (power of two resolution), without allocating anything.
+ * Decimal resolutions finer than nanosecond need a division.
+ *
+ */
+public class TimestampConverter {
+
+	/**
+	 * resolution used when interface has no if_tsresol option (microsecond)
+	 */
+	public final static int DEFAULT_RESOLUTION = 6;
+
+	private final static long NANOS_PER_SECOND = 1000000000L;
+
+	/**
+	 * most significant bits of a binary fraction kept so that fraction * NANOS_PER_SECOND fits in a long
+	 */
+	private final static int MAX_FRACTION_BITS = 33;
+
+	private final static long[] POWERS_OF_TEN = new long[19];
+
+	static
+	{
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length;i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	/**
+	 * converter of interfaces without if_tsresol nor if_tsoffset option
+	 */
+	public final static TimestampConverter DEFAULT = new TimestampConverter(DEFAULT_RESOLUTION, 0);
+
+	private final int resolution;
+
+	private final long offsetNanos;
+
+	private final boolean binary;
+
+	/**
+	 * decimal resolution : ticks are multiplied by multiplier then divided by divisor (one of them is 1)
+	 */
+	private final long multiplier;
+
+	private final long divisor;
+
+	/**
+	 * binary resolution : number of fraction bits, bits dropped from fraction, bits kept and fraction mask
+	 */
+	private final int shift;
+
+	private final int droppedBits;
+
+	private final int fractionBits;
+
+	private final long fractionMask;
+
+	/**
+	 * @param resolution
+	 * 		if_tsresol value : most significant bit cleared for a negative power of 10, set for a negative
+	 * 		power of 2
+	 * @param offsetSeconds
+	 * 		if_tsoffset value in seconds
+	 */
+	public TimestampConverter(int resolution,long offsetSeconds)
+	{
+		this.resolution = resolution & 0xFF;
+		this.offsetNanos = offsetSeconds * NANOS_PER_SECOND;
+		this.binary = (this.resolution & 0x80) != 0;
+
+		if (binary)
+		{
+			shift = Math.min(this.resolution & 0x7F, 63);
+			droppedBits = Math.max(shift - MAX_FRACTION_BITS, 0);
+			fractionBits = shift - droppedBits;
+			fractionMask = (1L << shift) - 1;
+			multiplier = 1;
+			divisor = 1;
+		}
+		else
+		{
+			shift = 0;
+			droppedBits = 0;
+			fractionBits = 0;
+			fractionMask = 0;
+			multiplier = (this.resolution <= 9) ? POWERS_OF_TEN[9 - this.resolution] : 1;
+			divisor = (this.resolution <= 9) ? 1 : POWERS_OF_TEN[Math.min(this.resolution - 9, 18)];
+		}
+	}
+
+	/**
+	 * Build converter of an interface
+	 *
+	 * @param description
+	 * 		interface description (may be null)
+	 * @return
+	 * 		converter matching if_tsresol and if_tsoffset options of the interface
+	 */
+	public static TimestampConverter forInterface(IDescriptionBlock description)
+	{
+		IOptionsDescriptionHeader options = (description != null) ? description.getOptions() : null;
+
+		if (options == null || (options.getTimeStampResolution() == -1 && options.getTimeStampOffset() == -1))
+			return DEFAULT;
+
+		int resolution = (options.getTimeStampResolution() != -1) ? options.getTimeStampResolution() : DEFAULT_RESOLUTION;
+		long offset = (options.getTimeStampOffset() != -1) ? options.getTimeStampOffset() : 0;
+
+		return new TimestampConverter(resolution, offset);
+	}
+
+	/**
+	 * @param timestamp
+	 * 		timestamp in interface resolution unit
+	 * @return
+	 * 		nanoseconds since epoch
+	 */
+	public long toNanos(long timestamp)
+	{
+		if (binary)
+		{
+			long fraction = (timestamp & fractionMask) >>> droppedBits;
+			return (timestamp >>> shift) * NANOS_PER_SECOND + ((fraction * NANOS_PER_SECOND) >>> fractionBits) + offsetNanos;
+		}
+		if (divisor == 1)
+			return timestamp * multiplier + offsetNanos;
+
+		return timestamp / divisor + offsetNanos;
+	}
+
+	/**
+	 * @return
+	 * 		if_tsresol value this converter has been built with
+	 */
+	public int getResolution() {
+		return resolution;
+	}
+
+	public long getOffsetNanos() {
+		return offsetNanos;
+	}
+}
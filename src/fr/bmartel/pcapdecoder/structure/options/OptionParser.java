@@ -10,7 +10,7 @@ import fr.bmartel.pcapdecoder.structure.options.object.OptionInterfaceStatistics
 import fr.bmartel.pcapdecoder.structure.options.object.OptionSectionHeaderObject;
 import fr.bmartel.pcapdecoder.structure.options.object.OptionsNameResolutionObject;
 import fr.bmartel.pcapdecoder.structure.options.object.OptionsRecordNameResolutionObject;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 /**
  * Pcap NG option parser
@@ -104,6 +104,8 @@ public class OptionParser {
 			}
 		}
 		
+		ByteReader reader = new ByteReader(data,isBigEndian);
+		
 		int optionLength = -1;
 		
 		while (optionLength!=0)
@@ -112,34 +114,18 @@ public class OptionParser {
 			optionLength=0;
 			byte[] optionValue=null;
 			
-			if (isBigEndian)
+			optionCode = readU16(reader,initIndex);
+			if (optionCode==0)
 			{
-				optionCode= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, initIndex+0,initIndex+2));
-				if (optionCode==0)
-				{
-					initIndex+=2;
-					return initIndex;
-				}
-				
-				optionLength= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, initIndex+2,initIndex+4));
-				if (optionLength>0)
-				{
-					optionValue = Arrays.copyOfRange(data, initIndex+4,initIndex+4+optionLength);
-				}
+				initIndex+=2;
+				return initIndex;
 			}
-			else
+			
+			optionLength = readU16(reader,initIndex+2);
+			if (optionLength>0)
 			{
-				optionCode= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, initIndex+0,initIndex+2)));
-				if (optionCode==0)
-				{
-					initIndex+=2;
-					return initIndex;
-				}
-				optionLength= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, initIndex+2,initIndex+4)));
-				if (optionLength>0)
-				{
-					optionValue = UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, initIndex+4,initIndex+4+optionLength));
-				}
+				// option value is given as is, each option implementation reads it with section endianness
+				optionValue = Arrays.copyOfRange(data, initIndex+4,initIndex+4+optionLength);
 			}
 			
 			if (optionLength==0)
@@ -156,8 +142,7 @@ public class OptionParser {
 			
 			initIndex=initIndex+(optionLength%2);
 			
-			int endOfOption= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, initIndex+0,initIndex+2)));
-			
+			int endOfOption = readU16(reader,initIndex);
 			
 			if (endOfOption==0)
 			{
@@ -167,6 +152,20 @@ public class OptionParser {
 		return initIndex;
 	}
 
+	/**
+	 * read a 16 bit field, bytes beyond option data being read as 0
+	 */
+	private static int readU16(ByteReader reader,int index)
+	{
+		if (index+2<=reader.length())
+			return reader.getU16(index);
+		if (index<reader.length() && reader.isBigEndian())
+			return reader.getU8(index) << 8;
+		if (index<reader.length())
+			return reader.getU8(index);
+		return 0;
+	}
+
 	public byte[] getData() {
 		return data;
 	}
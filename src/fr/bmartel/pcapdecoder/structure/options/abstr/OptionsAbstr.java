@@ -1,6 +1,7 @@
 package fr.bmartel.pcapdecoder.structure.options.abstr;
 
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 /**
  * Abstract layer for option management. All implementations of PCAP NG options (section header / interface statistics / interface description..)
@@ -27,6 +28,11 @@ public abstract class OptionsAbstr implements IOptions {
 	 */
 	protected boolean isBigEndian = false;
 	
+	/**
+	 * reader over option data with section endianness (built on first numeric field)
+	 */
+	private ByteReader reader = null;
+	
 	/**
 	 * option common object
 	 */
@@ -48,6 +54,19 @@ public abstract class OptionsAbstr implements IOptions {
 		this.currentOption=currentOption;
 	}
 	
+	/**
+	 * Retrieve reader used to decode numeric fields of option value
+	 * 
+	 * @return
+	 * 		reader over option data
+	 */
+	protected ByteReader getReader()
+	{
+		if (reader==null)
+			reader=new ByteReader(data,isBigEndian);
+		return reader;
+	}
+	
 	@Override
 	public String getComment() {
 		return "";
@@ -10,7 +10,6 @@ import fr.bmartel.pcapdecoder.constant.PacketReceptionType;
 import fr.bmartel.pcapdecoder.structure.options.abstr.OptionsAbstr;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptions;
 import fr.bmartel.pcapdecoder.structure.options.object.OptionEnhancedPacketHeaderObject;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
 
 /**
  * Implementation for Options in Enhanced Packet Section
@@ -55,49 +54,31 @@ public class OptionsEnhancedHeader extends OptionsAbstr{
 			switch(optionCode)
 			{
 				case 1:
-					if (!isBigEndian)
-						commonObject.setComment(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setComment(new String(data,"UTF-8"));
+					commonObject.setComment(new String(data,"UTF-8"));
 					break;
 				case 2:
-
-					if (!isBigEndian)
-					{
-						parseLinkLayerInfo(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 0, 4)));
-					}
-					else
-						parseLinkLayerInfo(Arrays.copyOfRange(data, 0, 4));
+					parseLinkLayerInfo((int) getReader().getU32(0));
 					break;
 				case 3:
-					byte[] commonTemp = null;
+					int hashType = getReader().getU8(0);
 					
-					if (!isBigEndian)
-						commonTemp = UtilFunctions.convertLeToBe(data);
-					else
-						commonTemp=data;
-						
-					if (commonTemp[0]==0)
+					if (hashType==0)
 						commonObject.setPacketHashType(PacketHashType.TWOS_COMPLEMENT);
-					else if (commonTemp[1]==1)
+					else if (hashType==1)
 						commonObject.setPacketHashType(PacketHashType.XOR);
-					else if (commonTemp[1]==2)
+					else if (hashType==2)
 						commonObject.setPacketHashType(PacketHashType.CRC32);
-					else if (commonTemp[1]==3)
+					else if (hashType==3)
 						commonObject.setPacketHashType(PacketHashType.MD5);
-					else if (commonTemp[1]==4)
+					else if (hashType==4)
 						commonObject.setPacketHashType(PacketHashType.SHA1);
 					else
 						commonObject.setPacketHashType(PacketHashType.UNKNOWN);
 					
-					commonObject.setPacketHashBigEndian(Arrays.copyOfRange(commonTemp, 1, commonTemp.length));
+					commonObject.setPacketHashBigEndian(Arrays.copyOfRange(data, 1, data.length));
 					break;
 				case 4:
-					
-					if (!isBigEndian)
-						commonObject.setDropPacketCount(UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data,0, 8))));
-					else
-						commonObject.setDropPacketCount((UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data,0, 8))));
+					commonObject.setDropPacketCount((int) getReader().getU64(0));
 					break;
 			}
 		}
@@ -108,17 +89,17 @@ public class OptionsEnhancedHeader extends OptionsAbstr{
 	}
 	
 	/**
-	 * Parse link layer from big endian format
+	 * Parse link layer flags word
 	 * 
-	 * @param data
+	 * @param flags
 	 */
-	private void parseLinkLayerInfo(byte[] data)
+	private void parseLinkLayerInfo(int flags)
 	{
 		//BIT 0  to 1   INBOUND/OUTBOUND      => 00 = information not available, 01 = inbound, 10 = outbound
 		//BIT 2  to 4   RECEPTION TYPE        => 000 = not specified, 001 = unicast, 010 = multicast, 011 = broadcast, 100 = promiscuous
 		//BIT 5  to 8   FCS length, in bytes  => (0000 if this information is not available)
 		//BIT 16 to 31	link-layer-dependent errors (Bit 31 = symbol error, Bit 30 = preamble error, Bit 29 = Start Frame Delimiter error, Bit 28 = unaligned frame error, Bit 27 = wrong Inter Frame Gap error, Bit 26 = packet too short error, Bit 25 = packet too long error, Bit 24 = CRC error
-		byte bound = (byte) (data[data.length-1] & 0b00000011);
+		int bound = flags & 0b00000011;
 		
 		if (bound==1)
 			commonObject.setPacketBound(PacketBoundState.INBOUND);
@@ -127,7 +108,7 @@ public class OptionsEnhancedHeader extends OptionsAbstr{
 		else
 			commonObject.setPacketBound(PacketBoundState.UNKNOWN);
 		
-		byte receptionType = (byte) (data[data.length-1] & 0b00011100);
+		int receptionType = flags & 0b00011100;
 		
 		if (receptionType==0b00000100)
 			commonObject.setPacketReceptionType(PacketReceptionType.UNICAST);
@@ -140,14 +121,14 @@ public class OptionsEnhancedHeader extends OptionsAbstr{
 		else 
 			commonObject.setPacketReceptionType(PacketReceptionType.UNKNOWN);
 		
-		byte fcsLength=(byte) (data[data.length-1] & 0b11100000);
+		int fcsLength = (flags >>> 5) & 0b00001111;
 		
 		if (fcsLength!=0)
 		{
-			commonObject.setFrameCheckSumLength(fcsLength & 0xFF); 
+			commonObject.setFrameCheckSumLength(fcsLength); 
 		}
 		
-		byte errorDetectionByte = data[0];
+		byte errorDetectionByte = (byte) (flags >>> 24);
 		
 		byte symbolError              = (byte) (errorDetectionByte & 0b10000000);
 		byte preambleError            = (byte) (errorDetectionByte & 0b01000000);
@@ -33,32 +33,16 @@ public class OptionsNameResolutionHeader extends OptionsAbstr{
 			switch(optionCode)
 			{
 				case 1:
-					if (!isBigEndian)
-						commonObject.setComment(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setComment(new String(data,"UTF-8"));
+					commonObject.setComment(new String(data,"UTF-8"));
 					break;
 				case 2:
-					if (!isBigEndian)
-						commonObject.setDnsName(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setDnsName(new String(data,"UTF-8"));
+					commonObject.setDnsName(new String(data,"UTF-8"));
 					break;
 				case 3:
-					byte[] tempIpv4 = new byte[4];
-					if(!isBigEndian)
-						tempIpv4=UtilFunctions.convertLeToBe(data);
-					else 
-						tempIpv4=data;
-					commonObject.setDnsIpv4Addr(formatIpv4Addr(tempIpv4));
+					commonObject.setDnsIpv4Addr(formatIpv4Addr(data));
 					break;
 				case 4:
-					byte[] tempIpv6 = new byte[4];
-					if(!isBigEndian)
-						tempIpv6=UtilFunctions.convertLeToBe(data);
-					else 
-						tempIpv6=data;
-					commonObject.setDnsIpv6Addr(formatIpv4Addr(tempIpv6));
+					commonObject.setDnsIpv6Addr(formatIpv4Addr(data));
 					break;
 			}
 		}
@@ -5,7 +5,6 @@ import java.io.UnsupportedEncodingException;
 import fr.bmartel.pcapdecoder.structure.options.abstr.OptionsAbstr;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptions;
 import fr.bmartel.pcapdecoder.structure.options.object.OptionSectionHeaderObject;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
 
 /**
  * Implementation for Options in Section Header
@@ -29,28 +28,16 @@ public class OptionsSectionHeader extends OptionsAbstr{
 			switch(optionCode)
 			{
 				case 1:
-					if (!isBigEndian)
-						commonObject.setComment(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setComment(new String(data,"UTF-8"));
+					commonObject.setComment(new String(data,"UTF-8"));
 					break;
 				case 2:
-					if (!isBigEndian)
-						commonObject.setHardware(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setHardware(new String(data,"UTF-8"));
+					commonObject.setHardware(new String(data,"UTF-8"));
 					break;
 				case 3:
-					if (!isBigEndian)
-						commonObject.setOs(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setOs(new String(data,"UTF-8"));
+					commonObject.setOs(new String(data,"UTF-8"));
 					break;
 				case 4:
-					if (!isBigEndian)
-						commonObject.setUserAppl(new String(UtilFunctions.convertLeToBe(data),"UTF-8"));
-					else
-						commonObject.setUserAppl(new String(data,"UTF-8"));
+					commonObject.setUserAppl(new String(data,"UTF-8"));
 					break;
 			}
 		}
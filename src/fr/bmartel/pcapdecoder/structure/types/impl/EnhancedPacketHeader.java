@@ -6,8 +6,9 @@ import fr.bmartel.pcapdecoder.structure.BlockTypes;
 import fr.bmartel.pcapdecoder.structure.options.OptionParser;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsEnhancedPacketHeader;
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
 import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 /**
  * Implementation for ENHANCED PACKET HEADER SECTION
@@ -58,82 +59,46 @@ public class EnhancedPacketHeader implements IEnhancedPacketBLock,IPcapngType{
 	 */
 	private int packetLength=-1;
 	
-	private Long timestamp = -1l;
+	private long timestamp = -1l;
 	
 	private byte[] packetData = null;
 	
 	private IOptionsEnhancedPacketHeader options  = null;
 	
+	/**
+	 * block data kept to extract packet data and options on demand
+	 */
+	private byte[] data = null;
+	
+	private boolean isBigEndian = true;
+	
+	/**
+	 * index of options in data (-1 if there is no option)
+	 */
+	private int optionsOffset = -1;
+	
+	/**
+	 * interface of the packet, set by section context while decoding
+	 */
+	private IDescriptionBlock interfaceDescription = null;
+	
 	public EnhancedPacketHeader(byte[] data,boolean isBigEndian,BlockTypes type) {
 		
-		if (isBigEndian)
-		{
-			interfaceId= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 0,4));
-			byte[] high_timestamp = Arrays.copyOfRange(data, 4,8);
-			byte[] low_timestamp  = Arrays.copyOfRange(data, 8,12);
-			
-			byte[] finalTimestamp = new byte[8];
-			for (int i = 0; i  <4;i++)
-			{
-				finalTimestamp[i]=high_timestamp[i];
-			}
-			for (int i = 0;i<4;i++)
-			{
-				finalTimestamp[i+4]=low_timestamp[i];
-			}
-
-			timestamp=(long) UtilFunctions.convertByteArrayToLong(finalTimestamp);
-			
-			
-			capturedLength=UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 12,16));
-			packetLength=UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 16,20));
-			if (capturedLength>0)
-			{
-				packetData=Arrays.copyOfRange(data, 20,20+capturedLength);
-			}
-			else
-			{
-				packetData=new byte[]{};
-			}
-		}
-		else
-		{
-			interfaceId= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 0,4)));
-			byte[] high_timestamp= UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 4,8));
-			byte[] low_timestamp = UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 8,12));
-			
-			byte[] finalTimestamp = new byte[8];
-			for (int i = 0; i  <4;i++)
-			{
-				finalTimestamp[i]=high_timestamp[i];
-			}
-			for (int i = 0;i<4;i++)
-			{
-				finalTimestamp[i+4]=low_timestamp[i];
-			}
-
-			timestamp=(long) UtilFunctions.convertByteArrayToLong(finalTimestamp);
-			
-			capturedLength=UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 12,16)));
-			packetLength=UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 16,20)));
-			
-			if (capturedLength>0)
-			{
-				packetData=Arrays.copyOfRange(data, 20,20+capturedLength);
-			}
-			else
-			{
-				packetData=new byte[]{};
-			}
-			
-		}
+		ByteReader reader = new ByteReader(data,isBigEndian);
+		
+		interfaceId = (int) reader.getU32(0);
+		timestamp = reader.getTimestamp(4);
+		capturedLength = (int) reader.getU32(12);
+		packetLength = (int) reader.getU32(16);
+		
+		this.data=data;
+		this.isBigEndian=isBigEndian;
 		
-		if (data.length>20+capturedLength)
+		//packet data is padded to 32 bits before options
+		int paddedOffset = 20 + ((capturedLength + 3) & ~3);
+		if (data.length>paddedOffset)
 		{
-			//parse set of options
-			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, 20+capturedLength + (capturedLength%2),data.length), isBigEndian,type,false);
-			optionParser.decode();
-			this.options=(IOptionsEnhancedPacketHeader) optionParser.getOption();
+			optionsOffset = paddedOffset;
 		}
 	}
 	
@@ -142,11 +107,25 @@ public class EnhancedPacketHeader implements IEnhancedPacketBLock,IPcapngType{
 		return interfaceId;
 	}
 
+	@Override
+	public IDescriptionBlock getInterfaceDescription() {
+		return interfaceDescription;
+	}
+
+	public void setInterfaceDescription(IDescriptionBlock interfaceDescription) {
+		this.interfaceDescription = interfaceDescription;
+	}
+
 	@Override
 	public Long getTimeStamp() {
 		return timestamp;
 	}
 
+	@Override
+	public long getTimeStampValue() {
+		return timestamp;
+	}
+
 	@Override
 	public int getCapturedLength() {
 		return capturedLength;
@@ -157,13 +136,37 @@ public class EnhancedPacketHeader implements IEnhancedPacketBLock,IPcapngType{
 		return packetLength;
 	}
 
+	/**
+	 * Packet data is copied from block on first call
+	 */
 	@Override
 	public byte[] getPacketData() {
+		if (packetData==null)
+		{
+			if (capturedLength>0)
+			{
+				packetData=Arrays.copyOfRange(data, 20,20+capturedLength);
+			}
+			else
+			{
+				packetData=new byte[]{};
+			}
+		}
 		return packetData;
 	}
 
+	/**
+	 * Options are decoded on first call
+	 */
 	@Override
 	public IOptionsEnhancedPacketHeader getOptions() {
+		if (options==null && optionsOffset!=-1)
+		{
+			//parse set of options
+			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, optionsOffset,data.length), isBigEndian,BlockTypes.ENHANCES_PACKET_BLOCK,false);
+			optionParser.decode();
+			this.options=(IOptionsEnhancedPacketHeader) optionParser.getOption();
+		}
 		return options;
 	}
 }
@@ -0,0 +1,212 @@
+package fr.bmartel.pcapdecoder.structure.types.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import fr.bmartel.pcapdecoder.structure.BlockTypes;
+import fr.bmartel.pcapdecoder.structure.options.OptionParser;
+import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsEnhancedPacketHeader;
+import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
+import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+
+/**
+ * Flyweight view over an ENHANCED PACKET BLOCK
+ *
+ * Contrary to EnhancedPacketHeader, nothing is copied : the view points at a block in a buffer
+ * (block starting with Block Type field) and all fields are read on demand with absolute gets.
+ * The same view is meant to be re-pointed at each packet with wrap(), so iterating a capture doesn't
+ * allocate any object per packet. Content of the view is only valid until next wrap() call or until
+ * underlying buffer is modified.
+ *
+ * getPacketData() and getOptions() are kept for compatibility with IEnhancedPacketBLock but they
+ * allocate : use getBuffer() / getPacketDataOffset() or copyPacketData() instead.
+ *
+ */
+public class EnhancedPacketView implements IEnhancedPacketBLock,IPcapngType{
+
+	private final static int INTERFACE_ID_OFFSET = 8;
+
+	private final static int TIMESTAMP_HIGH_OFFSET = 12;
+
+	private final static int TIMESTAMP_LOW_OFFSET = 16;
+
+	private final static int CAPTURED_LENGTH_OFFSET = 20;
+
+	private final static int PACKET_LENGTH_OFFSET = 24;
+
+	private final static int PACKET_DATA_OFFSET = 28;
+
+	private ByteBuffer buffer = null;
+
+	/**
+	 * index of Block Type field in buffer
+	 */
+	private int offset = 0;
+
+	private boolean isBigEndian = true;
+
+	/**
+	 * options decoded on demand for current packet
+	 */
+	private IOptionsEnhancedPacketHeader options = null;
+
+	/**
+	 * interface of current packet, set by section context
+	 */
+	private IDescriptionBlock interfaceDescription = null;
+
+	/**
+	 * Point this view at an enhanced packet block
+	 *
+	 * @param buffer
+	 * 		buffer containing the block
+	 * @param offset
+	 * 		index of block first byte (Block Type field) in buffer
+	 * @param order
+	 * 		byte order of the section the block belongs to
+	 * @return
+	 * 		this view
+	 */
+	public EnhancedPacketView wrap(ByteBuffer buffer,int offset,ByteOrder order)
+	{
+		this.buffer=buffer;
+		this.offset=offset;
+		this.isBigEndian=(order==ByteOrder.BIG_ENDIAN);
+		this.options=null;
+		this.interfaceDescription=null;
+		return this;
+	}
+
+	private int getInt(int index)
+	{
+		int value = buffer.getInt(offset + index);
+
+		if ((buffer.order()==ByteOrder.BIG_ENDIAN) != isBigEndian)
+			return Integer.reverseBytes(value);
+
+		return value;
+	}
+
+	/**
+	 * @return
+	 * 		Block Total Length field
+	 */
+	public int getBlockLength() {
+		return getInt(4);
+	}
+
+	@Override
+	public int getInterfaceId() {
+		return getInt(INTERFACE_ID_OFFSET);
+	}
+
+	@Override
+	public IDescriptionBlock getInterfaceDescription() {
+		return interfaceDescription;
+	}
+
+	public void setInterfaceDescription(IDescriptionBlock interfaceDescription) {
+		this.interfaceDescription = interfaceDescription;
+	}
+
+	@Override
+	public long getTimeStampValue() {
+		return (((long) getInt(TIMESTAMP_HIGH_OFFSET)) << 32) | (getInt(TIMESTAMP_LOW_OFFSET) & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public Long getTimeStamp() {
+		return getTimeStampValue();
+	}
+
+	@Override
+	public int getCapturedLength() {
+		return getInt(CAPTURED_LENGTH_OFFSET);
+	}
+
+	@Override
+	public int getPacketLength() {
+		return getInt(PACKET_LENGTH_OFFSET);
+	}
+
+	/**
+	 * @return
+	 * 		buffer this view is pointing to
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return
+	 * 		index of first packet data byte in getBuffer()
+	 */
+	public int getPacketDataOffset() {
+		return offset + PACKET_DATA_OFFSET;
+	}
+
+	/**
+	 * Copy packet data to given array
+	 *
+	 * @param dst
+	 * 		destination array (must be at least getCapturedLength() long from dstOffset)
+	 * @param dstOffset
+	 * 		index in destination array
+	 * @return
+	 * 		number of bytes copied
+	 */
+	public int copyPacketData(byte[] dst,int dstOffset) {
+		int length = getCapturedLength();
+
+		if (buffer.hasArray())
+		{
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + getPacketDataOffset(), dst, dstOffset, length);
+		}
+		else
+		{
+			int start = getPacketDataOffset();
+			for (int i = 0; i < length;i++)
+			{
+				dst[dstOffset + i]=buffer.get(start + i);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Allocate a new array with packet data
+	 */
+	@Override
+	public byte[] getPacketData() {
+		byte[] packetData = new byte[Math.max(getCapturedLength(), 0)];
+		copyPacketData(packetData, 0);
+		return packetData;
+	}
+
+	/**
+	 * Options are decoded on first call for current packet
+	 */
+	@Override
+	public IOptionsEnhancedPacketHeader getOptions() {
+		if (options==null)
+		{
+			int capturedLength = getCapturedLength();
+			int optionsOffset = PACKET_DATA_OFFSET + ((capturedLength + 3) & ~3);
+			int optionsLength = getBlockLength() - 4 - optionsOffset;
+
+			if (optionsLength>0)
+			{
+				byte[] optionsData = new byte[optionsLength];
+				for (int i = 0; i < optionsLength;i++)
+				{
+					optionsData[i]=buffer.get(offset + optionsOffset + i);
+				}
+				OptionParser optionParser = new OptionParser(optionsData, isBigEndian,BlockTypes.ENHANCES_PACKET_BLOCK,false);
+				optionParser.decode();
+				options=(IOptionsEnhancedPacketHeader) optionParser.getOption();
+			}
+		}
+		return options;
+	}
+}
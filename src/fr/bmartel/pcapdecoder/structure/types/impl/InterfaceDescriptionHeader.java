@@ -2,13 +2,13 @@ package fr.bmartel.pcapdecoder.structure.types.impl;
 
 import java.util.Arrays;
 
-import fr.bmartel.pcapdecoder.constant.LinkLayerConstants;
+import fr.bmartel.pcapdecoder.constant.LinkType;
 import fr.bmartel.pcapdecoder.structure.BlockTypes;
 import fr.bmartel.pcapdecoder.structure.options.OptionParser;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsDescriptionHeader;
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
 import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 
 /**
@@ -43,34 +43,32 @@ public class InterfaceDescriptionHeader implements IDescriptionBlock,IPcapngType
 	
 	private int linkType = -1;
 	
-	private IOptionsDescriptionHeader options = null;
+	/**
+	 * interface description blocks are shared between decoding threads : options are published once fully decoded
+	 */
+	private volatile IOptionsDescriptionHeader options = null;
+	
+	/**
+	 * block data kept to decode options on demand (null if there is no option)
+	 */
+	private byte[] data = null;
+	
+	private boolean isBigEndian = true;
 	
 	public InterfaceDescriptionHeader(byte[] data,boolean isBigEndian,BlockTypes type) {
 		
-		//may be used later for further specifications
-		int reserved = -1;
+		ByteReader reader = new ByteReader(data,isBigEndian);
 		
-		if (isBigEndian)
-		{
-			linkType= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 0,2));
-			linkTypeStr=LinkLayerConstants.LINK_LAYER_LIST.get(linkType);
-			reserved = UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 2,4));
-			snapLen = UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 4,8));
-		}
-		else
-		{
-			linkType= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 0,2)));
-			linkTypeStr=LinkLayerConstants.LINK_LAYER_LIST.get(linkType);
-			reserved= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 2,4)));
-			snapLen = UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 4,8)));
-		}
+		linkType = reader.getU16(0);
+		linkTypeStr=LinkType.fromCode(linkType).getLinkTypeName();
+		
+		//reserved field at offset 2 may be used later for further specifications
+		snapLen = (int) reader.getU32(4);
 		
 		if (data.length>8)
 		{
-			//parse set of options
-			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, 8,data.length), isBigEndian,type,false);
-			optionParser.decode();
-			this.options=(IOptionsDescriptionHeader) optionParser.getOption();
+			this.data=data;
+			this.isBigEndian=isBigEndian;
 		}
 	}
 	
@@ -84,8 +82,23 @@ public class InterfaceDescriptionHeader implements IDescriptionBlock,IPcapngType
 		return linkTypeStr;
 	}
 
+	@Override
+	public int getLinkTypeCode() {
+		return linkType;
+	}
+
+	/**
+	 * Options are decoded on first call
+	 */
 	@Override
 	public IOptionsDescriptionHeader getOptions() {
+		if (options==null && data!=null)
+		{
+			//parse set of options
+			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, 8,data.length), isBigEndian,BlockTypes.INTERFACE_DESCRIPTION_BLOCK,false);
+			optionParser.decode();
+			this.options=(IOptionsDescriptionHeader) optionParser.getOption();
+		}
 		return options;
 	}
 
@@ -7,7 +7,7 @@ import fr.bmartel.pcapdecoder.structure.options.OptionParser;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsStatisticsHeader;
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
 import fr.bmartel.pcapdecoder.structure.types.inter.IStatisticsBlock;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 /**
  * Implementation for INTERFACE STATISTICS SECTION
@@ -40,54 +40,28 @@ public class InterfaceStatisticsHeader implements IStatisticsBlock,IPcapngType{
 	
 	private int interfaceId = -1;
 	
-	private Long timestamp = -1l;
+	private long timestamp = -1l;
 	
-	private IOptionsStatisticsHeader options  = null;
+	private IOptionsStatisticsHeader options = null;
+	
+	/**
+	 * block data kept to decode options on demand (null if there is no option)
+	 */
+	private byte[] data = null;
+	
+	private boolean isBigEndian = true;
 	
 	public InterfaceStatisticsHeader(byte[] data,boolean isBigEndian,BlockTypes type) {
 		
-		if (isBigEndian)
-		{
-			interfaceId= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 0,4));
-			byte[] high_timestamp = Arrays.copyOfRange(data, 4,8);
-			byte[] low_timestamp  = Arrays.copyOfRange(data, 8,12);
-			
-			byte[] finalTimestamp = new byte[8];
-			for (int i = 0; i  <4;i++)
-			{
-				finalTimestamp[i]=high_timestamp[i];
-			}
-			for (int i = 0;i<4;i++)
-			{
-				finalTimestamp[i+4]=low_timestamp[i];
-			}
-
-			timestamp=(long) UtilFunctions.convertByteArrayToLong(finalTimestamp);
-		}
-		else
-		{
-			interfaceId= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 0,4)));
-			byte[] high_timestamp= UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 4,8));
-			byte[] low_timestamp = UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 8,12));
-			
-			byte[] finalTimestamp = new byte[8];
-			for (int i = 0; i  <4;i++)
-			{
-				finalTimestamp[i]=high_timestamp[i];
-			}
-			for (int i = 0;i<4;i++)
-			{
-				finalTimestamp[i+4]=low_timestamp[i];
-			}
-
-			timestamp=(long) UtilFunctions.convertByteArrayToLong(finalTimestamp);
-		}
+		ByteReader reader = new ByteReader(data,isBigEndian);
+		
+		interfaceId = (int) reader.getU32(0);
+		timestamp = reader.getTimestamp(4);
 		
 		if (data.length>12)
 		{
-			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, 12,data.length), isBigEndian,type,false);
-			optionParser.decode();
-			this.options=(IOptionsStatisticsHeader) optionParser.getOption();
+			this.data=data;
+			this.isBigEndian=isBigEndian;
 		}
 	}
 
@@ -101,8 +75,23 @@ public class InterfaceStatisticsHeader implements IStatisticsBlock,IPcapngType{
 		return timestamp;
 	}
 
+	@Override
+	public long getTimeStampValue() {
+		return timestamp;
+	}
+
+	/**
+	 * Options are decoded on first call
+	 */
 	@Override
 	public IOptionsStatisticsHeader getOptions() {
+		if (options==null && data!=null)
+		{
+			//parse set of options
+			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, 12,data.length), isBigEndian,BlockTypes.INTERFACE_STATISTICS_BLOCK,false);
+			optionParser.decode();
+			this.options=(IOptionsStatisticsHeader) optionParser.getOption();
+		}
 		return options;
 	}
 
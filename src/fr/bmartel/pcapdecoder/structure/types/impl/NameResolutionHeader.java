@@ -46,29 +46,60 @@ public class NameResolutionHeader implements INameResolutionBlock,IPcapngType {
 	
 	private IOptionsNameResolutionHeader options = null;
 	
+	/**
+	 * block data kept to decode options on demand and to read raw records
+	 */
+	private byte[] data = new byte[0];
+	
+	private boolean isBigEndian = true;
+	
+	/**
+	 * index of options in data (after end of records)
+	 */
+	private int optionsOffset = 0;
+	
 	public NameResolutionHeader(byte[] data,boolean isBigEndian,BlockTypes type) {
 		
+		this.isBigEndian=isBigEndian;
+		
 		if (data.length>0)
 		{
 			
-			//parse set of options
-			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data,0,data.length), isBigEndian,type,true);
+			//parse set of records
+			OptionParser optionParser = new OptionParser(data, isBigEndian,type,true);
 			int initIndex = optionParser.decode();
 			this.records=(IOptionsRecordNameResolution) optionParser.getOption();
 			
-			if ((data.length-initIndex)>0)
-			{
-				//parse set of options
-				OptionParser optionParser2 = new OptionParser(Arrays.copyOfRange(data, initIndex,data.length), isBigEndian,type,false);
-				optionParser2.decode();
-				this.options=(IOptionsNameResolutionHeader) optionParser2.getOption();
-				System.out.println(this.options==null);
-			}
+			this.data=data;
+			this.optionsOffset=initIndex;
 		}
 	}
 	
+	/**
+	 * Block body starting with records (see NameResolver), then options
+	 * 
+	 * @return
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	public boolean isBigEndian() {
+		return isBigEndian;
+	}
+	
+	/**
+	 * Options are decoded on first call
+	 */
 	@Override
 	public IOptionsNameResolutionHeader getOptions() {
+		if (options==null && optionsOffset<data.length)
+		{
+			//parse set of options
+			OptionParser optionParser = new OptionParser(Arrays.copyOfRange(data, optionsOffset,data.length), isBigEndian,BlockTypes.NAME_RESOLUTION_BLOCK,false);
+			optionParser.decode();
+			this.options=(IOptionsNameResolutionHeader) optionParser.getOption();
+		}
 		return options;
 	}
 
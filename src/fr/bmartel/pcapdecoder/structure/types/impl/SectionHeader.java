@@ -7,7 +7,7 @@ import fr.bmartel.pcapdecoder.structure.options.OptionParser;
 import fr.bmartel.pcapdecoder.structure.options.inter.IOptionSectionHeader;
 import fr.bmartel.pcapdecoder.structure.types.IPcapngType;
 import fr.bmartel.pcapdecoder.structure.types.inter.ISectionHeaderBlock;
-import fr.bmartel.pcapdecoder.utils.UtilFunctions;
+import fr.bmartel.pcapdecoder.utils.ByteReader;
 
 /**
  * 
@@ -51,18 +51,11 @@ public class SectionHeader implements ISectionHeaderBlock,IPcapngType{
 	
 	public SectionHeader(byte[] data,boolean isBigEndian,BlockTypes type) {
 		
-		if (isBigEndian)
-		{
-			minorVersion= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 0,2));
-			majorVersion= UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 2,4));
-			sectionLength = UtilFunctions.convertByteArrayToInt(Arrays.copyOfRange(data, 4,12));
-		}
-		else
-		{
-			minorVersion= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 0,2)));
-			majorVersion= UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 2,4)));
-			sectionLength = UtilFunctions.convertByteArrayToInt(UtilFunctions.convertLeToBe(Arrays.copyOfRange(data, 4,12)));
-		}
+		ByteReader reader = new ByteReader(data,isBigEndian);
+		
+		minorVersion = reader.getU16(0);
+		majorVersion = reader.getU16(2);
+		sectionLength = (int) reader.getU64(4);
 		
 		if (data.length>11)
 		{
@@ -30,12 +30,19 @@ import fr.bmartel.pcapdecoder.structure.options.inter.IOptionsDescriptionHeader;
 public interface IDescriptionBlock {
 
 	/**
-	 * Link layer string name (from fr.bmartel.pcapdecoder.constant.LinkLayerConstants)
+	 * Link layer string name (LINKTYPE_* name from fr.bmartel.pcapdecoder.constant.LinkType, empty if unknown)
 	 * 
 	 * @return
 	 */
 	public String getLinkType();
 	
+	/**
+	 * LinkType field value (see fr.bmartel.pcapdecoder.constant.LinkType)
+	 * 
+	 * @return
+	 */
+	public int getLinkTypeCode();
+	
 	/**
 	 * maximum number of bytes dumped from each packet in this pcap ng file
 	 * 
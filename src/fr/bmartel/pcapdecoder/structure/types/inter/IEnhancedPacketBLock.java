@@ -42,8 +42,25 @@ public interface IEnhancedPacketBLock {
 
 	public int getInterfaceId();
 	
+	/**
+	 * Description of the interface the packet has been captured on (link type, snap length,
+	 * timestamp resolution..)
+	 * 
+	 * @return
+	 * 		interface description or null if interface has not been described in packet section
+	 */
+	public IDescriptionBlock getInterfaceDescription();
+	
 	public Long getTimeStamp();
 	
+	/**
+	 * Timestamp as primitive value (see SectionContext.toNanos() for conversion to nanoseconds)
+	 * 
+	 * @return
+	 * 		timestamp in interface resolution unit
+	 */
+	public long getTimeStampValue();
+	
 	public int getCapturedLength();
 	
 	public int getPacketLength();
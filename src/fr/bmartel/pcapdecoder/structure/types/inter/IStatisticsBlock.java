@@ -33,6 +33,14 @@ public interface IStatisticsBlock {
 	public int getInterfaceId();
 	
 	public Long getTimeStamp();
+	
+	/**
+	 * Timestamp as primitive value (see SectionContext.toNanos() for conversion to nanoseconds)
+	 * 
+	 * @return
+	 * 		timestamp in interface resolution unit
+	 */
+	public long getTimeStampValue();
 
 	public  IOptionsStatisticsHeader getOptions();
 }
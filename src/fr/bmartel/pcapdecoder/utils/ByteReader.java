@@ -0,0 +1,135 @@
+package fr.bmartel.pcapdecoder.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Read unsigned fields at absolute offsets in the byte order of a section
+ *
+ * Values are read directly from the underlying array through a ByteBuffer set to the section byte
+ * order, so no intermediate array is allocated per field. Offsets are relative to the beginning of
+ * the wrapped data.
+ *
+ */
+public class ByteReader {
+
+	private ByteBuffer buffer = null;
+
+	/**
+	 * index of first byte of data in buffer
+	 */
+	private int base = 0;
+
+	private int length = 0;
+
+	/**
+	 * Build a reader over a byte array
+	 *
+	 * @param data
+	 * 		data to read
+	 * @param isBigEndian
+	 * 		endianness of data
+	 */
+	public ByteReader(byte[] data,boolean isBigEndian)
+	{
+		wrap(data,isBigEndian);
+	}
+
+	/**
+	 * Build a reader over a buffer region
+	 *
+	 * @param buffer
+	 * 		buffer to read (its own byte order is ignored)
+	 * @param offset
+	 * 		index of first byte of data in buffer
+	 * @param length
+	 * 		length of data
+	 * @param order
+	 * 		byte order of data
+	 */
+	public ByteReader(ByteBuffer buffer,int offset,int length,ByteOrder order)
+	{
+		wrap(buffer,offset,length,order);
+	}
+
+	/**
+	 * Point this reader at another byte array
+	 *
+	 * @param data
+	 * 		data to read
+	 * @param isBigEndian
+	 * 		endianness of data
+	 * @return
+	 * 		this reader
+	 */
+	public ByteReader wrap(byte[] data,boolean isBigEndian)
+	{
+		this.buffer=ByteBuffer.wrap(data).order(isBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		this.base=0;
+		this.length=data.length;
+		return this;
+	}
+
+	/**
+	 * Point this reader at another buffer region
+	 *
+	 * @param buffer
+	 * 		buffer to read (its own byte order is ignored)
+	 * @param offset
+	 * 		index of first byte of data in buffer
+	 * @param length
+	 * 		length of data
+	 * @param order
+	 * 		byte order of data
+	 * @return
+	 * 		this reader
+	 */
+	public ByteReader wrap(ByteBuffer buffer,int offset,int length,ByteOrder order)
+	{
+		this.buffer=(buffer.order()==order) ? buffer : buffer.duplicate().order(order);
+		this.base=offset;
+		this.length=length;
+		return this;
+	}
+
+	public int getU8(int offset)
+	{
+		return buffer.get(base + offset) & 0xFF;
+	}
+
+	public int getU16(int offset)
+	{
+		return buffer.getShort(base + offset) & 0xFFFF;
+	}
+
+	public long getU32(int offset)
+	{
+		return buffer.getInt(base + offset) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * read 64 bit field (values above Long.MAX_VALUE are returned negative)
+	 */
+	public long getU64(int offset)
+	{
+		return buffer.getLong(base + offset);
+	}
+
+	/**
+	 * read a timestamp stored as two 32 bit words, high word first, each in data byte order
+	 */
+	public long getTimestamp(int offset)
+	{
+		return (getU32(offset) << 32) | getU32(offset + 4);
+	}
+
+	public int length()
+	{
+		return length;
+	}
+
+	public boolean isBigEndian()
+	{
+		return buffer.order()==ByteOrder.BIG_ENDIAN;
+	}
+}
@@ -19,4 +19,9 @@ public class DecodeException extends Exception  {
 	{
 		super(customMessage);
 	}
+
+	public DecodeException(String customMessage, Throwable cause)
+	{
+		super(customMessage, cause);
+	}
 }